@@ -1,5 +1,8 @@
 package com.vibe;
 
+import com.vibe.audio.LoudnessScanner;
+import com.vibe.audio.WaveformCache;
+import com.vibe.db.AsyncDatabase;
 import com.vibe.db.DatabaseManager;
 import com.vibe.ui.LoginScene;
 import com.vibe.ui.ResizeHelper;
@@ -30,16 +33,28 @@ public class Main extends Application {
         scene.getStylesheets().add(getClass().getResource("/styles.css").toExternalForm());
         
         stage.setScene(scene);
-        ResizeHelper.addResizeListener(stage); // Enable resizing
+        ResizeHelper.addResizeListener(stage); // Enable resizing; follows later scene switches
         stage.show();
     }
     
+    @Override
+    public void stop() {
+        PlayerController.getInstance().shutdown();
+        WaveformCache.getInstance().shutdown();
+        LoudnessScanner.getInstance().stop();
+        AsyncDatabase db = AsyncDatabase.getInstance();
+        db.shutdown(); // lets queued writes finish before the pool closes
+        if (Boolean.getBoolean("vibe.db.stats")) { // -Dvibe.db.stats=true: per-query timings at exit
+            db.getStats().forEach((name, stats) -> System.err.println("db " + name + ": " + stats));
+        }
+        DatabaseManager.shutdown();
+    }
+
     public static void setScene(Scene scene) {
         primaryStage.setScene(scene);
         if (scene.getStylesheets().isEmpty()) {
             scene.getStylesheets().add(Main.class.getResource("/styles.css").toExternalForm());
         }
-        ResizeHelper.addResizeListener(primaryStage); // Re-apply resize listener
     }
     
     public static Stage getStage() {
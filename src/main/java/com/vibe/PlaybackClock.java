@@ -0,0 +1,122 @@
+package com.vibe;
+
+import java.util.function.DoubleConsumer;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.media.MediaPlayer;
+
+// Samples the playing MediaPlayer's position at a fixed UI rate instead of reacting
+// to every currentTime change (which fires per decoded buffer).
+// Only real changes reach the properties, and the text properties only change once a
+// second, using cached "m:ss" strings, so a playing track costs next to no FX-thread
+// work or garbage. The timeline only runs while the player is PLAYING, so a paused or
+// stopped track costs nothing at all. Rate: -Dvibe.ui.clockHz=<1..60> (default 5).
+public class PlaybackClock {
+    static final double DEFAULT_HZ = 5;
+
+    // "m:ss" for every second of the first few hours, filled in as they are needed
+    private static final String[] TEXT_CACHE = new String[6 * 3600];
+
+    private final Timeline timeline;
+    private final DoubleConsumer onSample;
+    private final ReadOnlyStringWrapper positionText = new ReadOnlyStringWrapper(format(0));
+    private final ReadOnlyStringWrapper durationText = new ReadOnlyStringWrapper(format(0));
+    private final ReadOnlyStringWrapper timeText = new ReadOnlyStringWrapper(format(0) + " / " + format(0));
+
+    private final ChangeListener<MediaPlayer.Status> onStatus = (obs, old, status) -> follow(status);
+
+    private MediaPlayer source;
+    private double position;
+    private long shownSecond = 0;
+
+    /** @param onSample called on the FX thread with each new position (seconds) */
+    public PlaybackClock(DoubleConsumer onSample) {
+        this(Double.parseDouble(System.getProperty("vibe.ui.clockHz", String.valueOf(DEFAULT_HZ))), onSample);
+    }
+
+    public PlaybackClock(double hz, DoubleConsumer onSample) {
+        this.onSample = onSample;
+        double rate = Math.max(1, Math.min(60, hz));
+        this.timeline = new Timeline(new KeyFrame(javafx.util.Duration.seconds(1 / rate), e -> sample()));
+        this.timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    /** Follows {@code player} from now on (null to stop); samples only while it is playing. */
+    public void setSource(MediaPlayer player) {
+        if (source != null) {
+            source.statusProperty().removeListener(onStatus);
+        }
+        source = player;
+        if (player == null) {
+            timeline.stop();
+        } else {
+            player.statusProperty().addListener(onStatus);
+            follow(player.getStatus());
+        }
+    }
+
+    private void follow(MediaPlayer.Status status) {
+        if (status == MediaPlayer.Status.PLAYING) {
+            timeline.play();
+        } else {
+            timeline.stop();
+            sample(); // publish where it came to rest
+        }
+    }
+
+    /** Forces the position to {@code seconds} (used for seeks before the player catches up). */
+    public void setPosition(double seconds) {
+        update(seconds);
+    }
+
+    public void setDuration(double seconds) {
+        durationText.set(format(seconds));
+        timeText.set(positionText.get() + " / " + durationText.get());
+    }
+
+    private void sample() {
+        MediaPlayer p = source;
+        if (p == null) {
+            return;
+        }
+        double seconds = p.getCurrentTime().toSeconds();
+        if (Double.isNaN(seconds) || seconds == position) {
+            return; // stalled: nothing to publish
+        }
+        update(seconds);
+        onSample.accept(seconds);
+    }
+
+    private void update(double seconds) {
+        position = seconds;
+        long whole = (long) seconds;
+        if (whole != shownSecond) {
+            shownSecond = whole;
+            positionText.set(format(seconds));
+            timeText.set(positionText.get() + " / " + durationText.get());
+        }
+    }
+
+    /** "m:ss"; cached for whole seconds below six hours. */
+    public static String format(double seconds) {
+        int s = seconds > 0 ? (int) seconds : 0;
+        if (s < TEXT_CACHE.length) {
+            String t = TEXT_CACHE[s];
+            if (t == null) {
+                t = String.format("%d:%02d", s / 60, s % 60);
+                TEXT_CACHE[s] = t; // benign race: same value either way
+            }
+            return t;
+        }
+        return String.format("%d:%02d", s / 60, s % 60);
+    }
+
+    public ReadOnlyStringProperty positionTextProperty() { return positionText.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty durationTextProperty() { return durationText.getReadOnlyProperty(); }
+    public ReadOnlyStringProperty timeTextProperty() { return timeText.getReadOnlyProperty(); }
+}
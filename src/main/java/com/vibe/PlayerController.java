@@ -1,15 +1,25 @@
 package com.vibe;
 
 import java.io.File;
+import java.nio.file.Path;
 
+import com.vibe.db.AsyncDatabase;
+import com.vibe.db.DatabaseManager;
+import com.vibe.model.PlayEvent;
+import com.vibe.model.ReplayGain;
 import com.vibe.model.Track;
-import com.vibe.structures.DoublyLinkedList;
 import com.vibe.structures.HistoryStack;
 import com.vibe.structures.PlayQueue;
+import com.vibe.structures.PlaybackContext;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.KeyValue;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
@@ -20,13 +30,34 @@ public class PlayerController {
     private static PlayerController instance;
 
     // State
-    private DoublyLinkedList<Track> playlist = new DoublyLinkedList<>(); // Main context
-    private DoublyLinkedList.Node<Track> currentNode;
+    private PlaybackContext<String, Track> context = PlaybackContext.empty(Track::getId); // Main context
     
     private PlayQueue<Track> queue = new PlayQueue<>(); // FR-4
-    private HistoryStack<Track> history = new HistoryStack<>(); // FR-5
+    private HistoryStack history = newHistory(); // FR-5
 
     private MediaPlayer mediaPlayer;
+    private DoubleProperty gain = new SimpleDoubleProperty(1); // fade factor of mediaPlayer
+    private boolean endReached; // current track played to the end (so leaving it is not a skip)
+
+    // Look-ahead: shortly before the end the next track's player is created so it is
+    // READY (opened and pre-rolled) when needed; switching is then just play().
+    // With a crossfade the next track starts early and the two overlap while fading.
+    // -Dvibe.playback.preloadSeconds=<s> (default 10), -Dvibe.playback.crossfadeMillis=<ms> (default 0: gapless)
+    private static final double PRELOAD_SECONDS = Integer.getInteger("vibe.playback.preloadSeconds", 10);
+    private static final long CROSSFADE_MILLIS = Math.max(0, Long.getLong("vibe.playback.crossfadeMillis", 0));
+    private MediaPlayer preloaded;
+    private Track preloadedTrack;
+    private DoubleProperty preloadedNormalisation;
+    private boolean preloadRequested;
+    private MediaPlayer fadingOut;
+    private Timeline fadeOut;
+
+    // Loudness normalisation from the stored analysis, applied on top of the user volume.
+    // -Dvibe.playback.replayGain=track|album|off (default track), -Dvibe.playback.replayGainPreamp=<dB>.
+    // MediaPlayer volume tops out at 1, so tracks quieter than the reference are not boosted.
+    private static final String REPLAY_GAIN_MODE = System.getProperty("vibe.playback.replayGain", "track");
+    private static final double REPLAY_GAIN_PREAMP =
+            Double.parseDouble(System.getProperty("vibe.playback.replayGainPreamp", "0"));
     
     // Properties for UI Binding
     private ObjectProperty<Track> currentTrack = new SimpleObjectProperty<>();
@@ -35,8 +66,18 @@ public class PlayerController {
     private DoubleProperty duration = new SimpleDoubleProperty(0);
     private DoubleProperty volume = new SimpleDoubleProperty(0.5);
 
+    // Throttled position sampling; currentTime and the time texts update at the clock rate
+    private final PlaybackClock clock = new PlaybackClock(this::onTick);
+
     private PlayerController() {}
 
+    // -Dvibe.history.capacity=<entries>, -Dvibe.history.spillFile=<path> to keep evicted entries
+    private static HistoryStack newHistory() {
+        int capacity = Integer.getInteger("vibe.history.capacity", HistoryStack.DEFAULT_CAPACITY);
+        String spill = System.getProperty("vibe.history.spillFile");
+        return new HistoryStack(capacity, spill != null ? Path.of(spill) : null);
+    }
+
     public static PlayerController getInstance() {
         if (instance == null) instance = new PlayerController();
         return instance;
@@ -48,60 +89,225 @@ public class PlayerController {
 
     // Overload: allow skipping adding the current track to history when set to false
     public void playTrack(Track track, boolean pushToHistory) {
+        playTrack(track, pushToHistory, 0);
+    }
+
+    // fadeMillis > 0 overlaps the outgoing and incoming tracks with a crossfade
+    private void playTrack(Track track, boolean pushToHistory, long fadeMillis) {
         // Stop previous
         if (mediaPlayer != null) {
-            mediaPlayer.stop();
-            mediaPlayer.dispose();
+            if (currentTrack.get() != null && !endReached) {
+                logEvent(currentTrack.get(), PlayEvent.Type.SKIPPED, currentTime.get());
+            }
+            retire(mediaPlayer, gain, fadeMillis);
+            mediaPlayer = null;
         }
 
         // Optionally add to history
         if (pushToHistory && currentTrack.get() != null) {
-            history.push(currentTrack.get());
+            history.push(currentTrack.get().getId());
         }
 
-        // Load new
+        // Load new (or take the pre-rolled one)
         try {
-            File file = new File(track.getFilepath());
-            Media media = new Media(file.toURI().toString());
-            mediaPlayer = new MediaPlayer(media);
-            
-            mediaPlayer.currentTimeProperty().addListener((obs, oldV, newV) -> {
-                currentTime.set(newV.toSeconds());
-            });
-            
-            mediaPlayer.setOnReady(() -> {
-                duration.set(mediaPlayer.getMedia().getDuration().toSeconds());
-                mediaPlayer.play();
+            MediaPlayer p;
+            DoubleProperty normalisation;
+            if (preloaded != null && preloadedTrack.getId().equals(track.getId())
+                    && preloaded.getStatus() != MediaPlayer.Status.HALTED) {
+                p = preloaded;
+                normalisation = preloadedNormalisation;
+                preloaded = null;
+                preloadedTrack = null;
+                preloadedNormalisation = null;
+            } else {
+                discardPreload();
+                p = newPlayer(track);
+                normalisation = normalisation(track);
+            }
+            mediaPlayer = p;
+            preloadRequested = false;
+            endReached = false;
+
+            currentTime.set(0);
+            clock.setPosition(0);
+            clock.setSource(p);
+
+            Runnable start = () -> {
+                duration.set(p.getMedia().getDuration().toSeconds());
+                clock.setDuration(duration.get());
+                p.play();
                 isPlaying.set(true);
+                logEvent(track, PlayEvent.Type.STARTED, 0);
+            };
+            if (p.getStatus() == MediaPlayer.Status.READY) {
+                start.run(); // pre-rolled: no gap
+            } else {
+                p.setOnReady(start);
+            }
+
+            p.setOnEndOfMedia(() -> {
+                endReached = true;
+                logEvent(track, PlayEvent.Type.COMPLETED, duration.get());
+                playNext();
             });
-            
-            mediaPlayer.setOnEndOfMedia(this::playNext);
-            
-            // Bind volume
-            mediaPlayer.volumeProperty().bind(volume);
+
+            // Bind volume, scaled by the track's normalisation and this player's fade
+            gain = new SimpleDoubleProperty(fadeMillis > 0 ? 0 : 1);
+            p.volumeProperty().bind(volume.multiply(gain).multiply(normalisation));
+            if (fadeMillis > 0) {
+                new Timeline(new KeyFrame(javafx.util.Duration.millis(fadeMillis),
+                        new KeyValue(gain, 1))).play();
+            }
 
             currentTrack.set(track);
         } catch (Exception e) {
             System.err.println("Error playing file: " + e.getMessage());
         }
     }
+
+    // Linear volume factor for the track's ReplayGain, looked up off the FX thread (the player
+    // is still opening meanwhile); 1 until it arrives, and if the track has not been analysed
+    private static DoubleProperty normalisation(Track track) {
+        DoubleProperty factor = new SimpleDoubleProperty(1);
+        if (!"off".equals(REPLAY_GAIN_MODE)) {
+            AsyncDatabase.getInstance().getReplayGain(track.getId()).thenAccept(rg -> {
+                double f = normalisation(rg);
+                Platform.runLater(() -> factor.set(f));
+            });
+        }
+        return factor;
+    }
+
+    private static double normalisation(ReplayGain rg) {
+        if (rg == null) {
+            return 1;
+        }
+        double db = "album".equals(REPLAY_GAIN_MODE) && !Double.isNaN(rg.getAlbumGain())
+                ? rg.getAlbumGain() : rg.getTrackGain();
+        if (Double.isNaN(db)) {
+            return 1;
+        }
+        return Math.min(1, Math.pow(10, (db + REPLAY_GAIN_PREAMP) / 20));
+    }
+
+    private static MediaPlayer newPlayer(Track track) {
+        File file = new File(track.getFilepath());
+        return new MediaPlayer(new Media(file.toURI().toString()));
+    }
+
+    private void onTick(double seconds) {
+        currentTime.set(seconds);
+        double remaining = duration.get() - seconds;
+        if (duration.get() <= 0) {
+            return;
+        }
+        if (!preloadRequested && remaining <= PRELOAD_SECONDS + CROSSFADE_MILLIS / 1000.0) {
+            preloadRequested = true;
+            preload(peekNext());
+        }
+        // Crossfade into the next track; too-short tracks just play out
+        if (CROSSFADE_MILLIS > 0 && !endReached && remaining <= CROSSFADE_MILLIS / 1000.0
+                && duration.get() * 1000 > 2 * CROSSFADE_MILLIS) {
+            Track next = nextTrack();
+            if (next != null) {
+                endReached = true;
+                logEvent(currentTrack.get(), PlayEvent.Type.COMPLETED, seconds);
+                playTrack(next, true, CROSSFADE_MILLIS);
+            }
+        }
+    }
+
+    private void preload(Track next) {
+        if (next == null || (preloadedTrack != null && preloadedTrack.getId().equals(next.getId()))) {
+            return;
+        }
+        discardPreload();
+        try {
+            preloaded = newPlayer(next); // opens and pre-rolls in the background
+            preloadedTrack = next;
+            preloadedNormalisation = normalisation(next);
+        } catch (Exception e) {
+            System.err.println("Preload failed: " + e.getMessage());
+        }
+    }
+
+    private void discardPreload() {
+        if (preloaded != null) {
+            preloaded.dispose();
+            preloaded = null;
+            preloadedTrack = null;
+            preloadedNormalisation = null;
+        }
+    }
+
+    // Stops a player now, or fades it out and disposes it afterwards
+    private void retire(MediaPlayer p, DoubleProperty g, long fadeMillis) {
+        p.setOnEndOfMedia(null);
+        finishFade();
+        if (fadeMillis <= 0) {
+            p.stop();
+            p.dispose();
+            return;
+        }
+        fadingOut = p;
+        fadeOut = new Timeline(new KeyFrame(javafx.util.Duration.millis(fadeMillis), new KeyValue(g, 0)));
+        fadeOut.setOnFinished(e -> finishFade());
+        fadeOut.play();
+    }
+
+    private void finishFade() {
+        if (fadeOut != null) {
+            fadeOut.stop();
+            fadeOut = null;
+        }
+        if (fadingOut != null) {
+            fadingOut.dispose();
+            fadingOut = null;
+        }
+    }
     
     // Set the main playlist context
     public void setPlaylistContext(java.util.List<Track> tracks, Track startTrack) {
-        playlist.clear();
-        currentNode = null;
-        for (Track t : tracks) {
-            playlist.add(t);
-            if (t.getId().equals(startTrack.getId())) {
-                currentNode = playlist.getTail(); // The one just added
-            }
+        int start = tracks.indexOf(startTrack);
+        setPlaylistContext(tracks, start >= 0 ? start : 0);
+    }
+
+    /** Plays {@code tracks[startIndex]}; the list is wrapped, not copied, so this is O(1). */
+    public void setPlaylistContext(java.util.List<Track> tracks, int startIndex) {
+        context = PlaybackContext.of(tracks, Track::getId);
+        if (context.moveTo(startIndex)) {
+            playTrack(context.current());
         }
-        playTrack(startTrack);
+    }
+
+    /** As above, for a list whose rows are loaded in the background ({@code rows}, usually the list itself). */
+    public void setPlaylistContext(java.util.List<Track> tracks, int startIndex, PlaybackContext.LazyView<String> rows) {
+        context = PlaybackContext.of(tracks, Track::getId, rows);
+        if (context.moveTo(startIndex)) {
+            playTrack(context.current());
+        }
+    }
+
+    /** Plays a track from the current context, moving the cursor to it. */
+    public void jumpTo(Track track) {
+        context.moveTo(track.getId());
+        playTrack(track);
+    }
+
+    /** Removes a track from the current context; "next" still continues after it if it was playing. */
+    public void removeFromContext(Track track) {
+        context.remove(track.getId());
+    }
+
+    /** Inserts a track into the context right after the one playing. */
+    public void insertAfterCurrent(Track track) {
+        context.insertAfterCurrent(track);
     }
 
     public void togglePlay() {
         if (mediaPlayer == null) return;
         if (isPlaying.get()) {
+            finishFade();
             mediaPlayer.pause();
             isPlaying.set(false);
         } else {
@@ -111,40 +317,70 @@ public class PlayerController {
     }
 
     public void playNext() {
-        // FR-4: Check Queue first
-        if (!queue.isEmpty()) {
-            Track next = queue.dequeue();
+        Track next = nextTrack();
+        if (next != null) {
             playTrack(next);
-            return;
+        } else if (!context.whenReady(unlessMovedOn(this::playNext))) {
+            isPlaying.set(false); // End of list
         }
+    }
 
-        // FR-2: Check LL
-        if (currentNode != null && currentNode.next != null) {
-            currentNode = currentNode.next;
-            playTrack(currentNode.value);
-        } else {
-            isPlaying.set(false); // End of list
+    // For a retry once the context's rows have loaded: dropped if another track was started meanwhile
+    private Runnable unlessMovedOn(Runnable action) {
+        Track waitingOn = currentTrack.get();
+        return () -> {
+            if (currentTrack.get() == waitingOn) {
+                action.run();
+            }
+        };
+    }
+
+    // FR-4: Queue first, then FR-2: step the context cursor
+    private Track nextTrack() {
+        if (!queue.isEmpty()) {
+            return queue.dequeue();
+        }
+        return context.next();
+    }
+
+    // What nextTrack() would return, without consuming it
+    private Track peekNext() {
+        if (!queue.isEmpty()) {
+            return queue.peek();
         }
+        return context.peekNext();
     }
 
     public void playPrevious() {
         // FR-5: Check History first (Back button behavior)
         if (!history.isEmpty()) {
-            Track prev = history.pop();
-            // Try to find and sync currentNode in playlist to keep the linked-list context consistent
-            DoublyLinkedList.Node<Track> iter = playlist.getHead();
-            while (iter != null) {
-                if (iter.value.getId().equals(prev.getId())) {
-                    currentNode = iter;
-                    break;
+            String id = history.pop();
+            // Sync the cursor so "next" continues from the track we went back to
+            if (context.moveTo(id)) {
+                // Play without pushing current track back into history
+                playTrack(context.current(), false);
+                return;
+            }
+            // A track from an earlier context: read off the FX thread, skipped if deleted since.
+            // Dropped if another track was started meanwhile
+            Track current = currentTrack.get();
+            AsyncDatabase.getInstance().getTrack(id).thenAccept(prev -> Platform.runLater(() -> {
+                if (currentTrack.get() != current) {
+                    return;
+                }
+                if (prev != null) {
+                    playTrack(prev, false);
+                } else {
+                    playPrevious();
                 }
-                iter = iter.next;
+            }));
+        } else {
+            Track prev = context.previous();
+            if (prev != null) {
+                playTrack(prev);
+            } else {
+                context.whenReady(unlessMovedOn(this::playPrevious));
             }
-            // Play without pushing current track back into history
-            playTrack(prev, false);
-        } else if (currentNode != null && currentNode.prev != null) {
-            currentNode = currentNode.prev;
-            playTrack(currentNode.value);
         }
     }
 
@@ -158,10 +394,32 @@ public class PlayerController {
     public DoubleProperty currentTimeProperty() { return currentTime; }
     public DoubleProperty durationProperty() { return duration; }
     public DoubleProperty volumeProperty() { return volume; }
+    /** "m:ss / m:ss", updated at most once a second. */
+    public ReadOnlyStringProperty timeTextProperty() { return clock.timeTextProperty(); }
+    public ReadOnlyStringProperty positionTextProperty() { return clock.positionTextProperty(); }
+    public ReadOnlyStringProperty durationTextProperty() { return clock.durationTextProperty(); }
+
+    // Buffered and written in batches by DatabaseManager's event writer
+    private void logEvent(Track track, PlayEvent.Type type, double position) {
+        DatabaseManager.recordPlayEvent(new PlayEvent(track.getId(), type, position));
+    }
+
+    /** Releases the media players and closes the history spill file. */
+    public void shutdown() {
+        clock.setSource(null);
+        finishFade();
+        discardPreload();
+        if (mediaPlayer != null) {
+            mediaPlayer.dispose();
+            mediaPlayer = null;
+        }
+        history.close();
+    }
 
     /** Pause playback (keeps current position). */
     public void pause() {
         if (mediaPlayer != null && isPlaying.get()) {
+            finishFade();
             mediaPlayer.pause();
             isPlaying.set(false);
         }
@@ -182,6 +440,7 @@ public class PlayerController {
             mediaPlayer.seek(javafx.util.Duration.seconds(seconds));
             // Update current time property immediately so UI reflects position
             currentTime.set(seconds);
+            clock.setPosition(seconds);
         } catch (Exception e) {
             System.err.println("Seek failed: " + e.getMessage());
         }
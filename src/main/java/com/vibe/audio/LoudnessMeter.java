@@ -0,0 +1,199 @@
+package com.vibe.audio;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.vibe.model.ReplayGain;
+
+// EBU R128 / ITU-R BS.1770 integrated loudness, fed a buffer at a time.
+// Samples go through the K-weighting filter (high shelf + high pass), are summed in
+// 100 ms steps, and every 400 ms window (75% overlap) lands in a histogram of 0.01 LU
+// bins. Gating then only needs the histogram, so memory is fixed however long the
+// track is.
+public class LoudnessMeter {
+    /** ReplayGain 2 reference level. */
+    public static final double REFERENCE_LUFS = -18;
+
+    static final double ABSOLUTE_GATE = -70;
+    static final double RELATIVE_GATE = -10;
+    private static final double MAX_LUFS = 5;
+    private static final int BINS_PER_LU = 100;
+    private static final int BINS = (int) ((MAX_LUFS - ABSOLUTE_GATE) * BINS_PER_LU);
+
+    private final int channels;
+    private final double[] weight; // per channel
+    private final double[][] z; // filter state per channel: 2 stages x 2 delays
+    private final double b0, b1, b2, a1, a2; // high shelf
+    private final double ha1, ha2; // high pass (numerator is 1, -2, 1)
+
+    private final int stepFrames; // 100 ms
+    private final double[] steps = new double[4]; // energy of the last four steps
+    private int stepCount;
+    private int stepFilled;
+    private double stepEnergy;
+
+    private final double[] binEnergy = new double[BINS];
+    private final long[] binBlocks = new long[BINS];
+    private double peak;
+
+    public LoudnessMeter(float sampleRate, int channels) {
+        this.channels = channels;
+        this.weight = new double[channels];
+        for (int c = 0; c < channels; c++) {
+            // 5.1: LFE is ignored, surrounds weigh +1.5 dB
+            weight[c] = channels == 6 && c == 3 ? 0 : channels == 6 && c >= 4 ? 1.41 : 1;
+        }
+        this.z = new double[channels][4];
+        this.stepFrames = Math.max(1, Math.round(sampleRate / 10));
+
+        // Coefficients re-derived for the actual rate (BS.1770 gives them for 48 kHz)
+        double k = Math.tan(Math.PI * 1681.974450955533 / sampleRate);
+        double q = 0.7071752369554196;
+        double vh = Math.pow(10, 3.999843853973347 / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        b0 = (vh + vb * k / q + k * k) / a0;
+        b1 = 2 * (k * k - vh) / a0;
+        b2 = (vh - vb * k / q + k * k) / a0;
+        a1 = 2 * (k * k - 1) / a0;
+        a2 = (1 - k / q + k * k) / a0;
+
+        k = Math.tan(Math.PI * 38.13547087602444 / sampleRate);
+        q = 0.5003270373238773;
+        a0 = 1 + k / q + k * k;
+        ha1 = 2 * (k * k - 1) / a0;
+        ha2 = (1 - k / q + k * k) / a0;
+    }
+
+    /** Measures a whole file, streaming it through a fixed buffer; null if no decoder reads its format. */
+    public static ReplayGain analyze(String trackId, Path path) throws IOException {
+        try (PcmStream pcm = PcmStream.open(path)) {
+            LoudnessMeter m = new LoudnessMeter(pcm.getSampleRate(), pcm.getChannels());
+            float[] buf = new float[PcmStream.BUFFER_BYTES / 2];
+            for (int n; (n = pcm.read(buf)) >= 0;) {
+                m.process(buf, n);
+            }
+            double l = m.integrated();
+            return new ReplayGain(trackId, l, m.gatedBlocks(), m.peak(), gainFor(l), Double.NaN);
+        } catch (UnsupportedAudioFileException e) {
+            return null; // no installed decoder reads it; javax.sound alone only does WAV/AIFF/AU
+        }
+    }
+
+    /** Feeds {@code n} interleaved samples. */
+    public void process(float[] samples, int n) {
+        for (int i = 0; i + channels <= n; i += channels) {
+            double sum = 0;
+            for (int c = 0; c < channels; c++) {
+                double x = samples[i + c];
+                double ax = Math.abs(x);
+                if (ax > peak) {
+                    peak = ax;
+                }
+                double[] s = z[c];
+                // Direct form II transposed, two stages
+                double y = b0 * x + s[0];
+                s[0] = b1 * x - a1 * y + s[1];
+                s[1] = b2 * x - a2 * y;
+                double w = y + s[2];
+                s[2] = -2 * y - ha1 * w + s[3];
+                s[3] = y - ha2 * w;
+                sum += weight[c] * w * w;
+            }
+            stepEnergy += sum;
+            if (++stepFilled == stepFrames) {
+                endStep();
+            }
+        }
+    }
+
+    private void endStep() {
+        steps[stepCount++ % 4] = stepEnergy;
+        stepEnergy = 0;
+        stepFilled = 0;
+        if (stepCount >= 4) {
+            double e = (steps[0] + steps[1] + steps[2] + steps[3]) / (4.0 * stepFrames);
+            double l = toLufs(e);
+            if (l >= ABSOLUTE_GATE) {
+                int bin = Math.min(BINS - 1, (int) ((l - ABSOLUTE_GATE) * BINS_PER_LU));
+                binEnergy[bin] += e;
+                binBlocks[bin]++;
+            }
+        }
+    }
+
+    /** Gated integrated loudness in LUFS; NaN if nothing was louder than the absolute gate. */
+    public double integrated() {
+        int from = relativeGateBin();
+        if (from < 0) {
+            return Double.NaN;
+        }
+        double e = 0;
+        long n = 0;
+        for (int b = from; b < BINS; b++) {
+            e += binEnergy[b];
+            n += binBlocks[b];
+        }
+        return n == 0 ? Double.NaN : toLufs(e / n);
+    }
+
+    /** Blocks that passed both gates: the track's weight when averaging an album. */
+    public long gatedBlocks() {
+        int from = relativeGateBin();
+        long n = 0;
+        for (int b = from; b >= 0 && b < BINS; b++) {
+            n += binBlocks[b];
+        }
+        return n;
+    }
+
+    public double peak() {
+        return peak;
+    }
+
+    private int relativeGateBin() {
+        double e = 0;
+        long n = 0;
+        for (int b = 0; b < BINS; b++) {
+            e += binEnergy[b];
+            n += binBlocks[b];
+        }
+        if (n == 0) {
+            return -1;
+        }
+        double gate = toLufs(e / n) + RELATIVE_GATE;
+        return Math.max(0, (int) Math.ceil((gate - ABSOLUTE_GATE) * BINS_PER_LU));
+    }
+
+    /** Gain in dB that brings {@code lufs} to the reference level; NaN stays NaN. */
+    public static double gainFor(double lufs) {
+        return REFERENCE_LUFS - lufs;
+    }
+
+    /**
+     * Loudness of several tracks played as one: their gated mean energies averaged,
+     * weighted by block count. Close to measuring the album in one pass, without
+     * keeping every track's blocks around.
+     */
+    public static double combine(double[] lufs, long[] blocks) {
+        double e = 0;
+        long n = 0;
+        for (int i = 0; i < lufs.length; i++) {
+            if (blocks[i] > 0 && !Double.isNaN(lufs[i])) {
+                e += blocks[i] * fromLufs(lufs[i]);
+                n += blocks[i];
+            }
+        }
+        return n == 0 ? Double.NaN : toLufs(e / n);
+    }
+
+    private static double toLufs(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    private static double fromLufs(double lufs) {
+        return Math.pow(10, (lufs + 0.691) / 10);
+    }
+}
@@ -0,0 +1,229 @@
+package com.vibe.audio;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vibe.db.DatabaseManager;
+import com.vibe.model.ReplayGain;
+import com.vibe.model.Track;
+
+// Measures the loudness of every track that has not been measured yet.
+// A driver thread walks the unanalysed tracks in id order a page at a time and splits
+// each page over a work-stealing pool, so one long track does not hold up the rest.
+// Results are committed per page: stopping (or quitting) loses at most the page in
+// flight, and the next start() simply continues with whatever is still NULL. Files no
+// installed decoder can read stay NULL (a decoder added later picks them up); the walk
+// moves past them, and they are not probed again this session.
+// After each page the album gains of the albums it touched are recomputed; a last pass
+// fills in albums that lost their gain because a track was retagged or moved.
+// Threads: -Dvibe.loudness.threads=<n> (default half the cores).
+public class LoudnessScanner {
+    static final int PAGE_SIZE = 64;
+    static final String UNKNOWN_ALBUM = "Unknown Album"; // LibraryScanner's placeholder
+
+    private static LoudnessScanner instance;
+
+    private final ForkJoinPool pool;
+    private final AtomicLong analysed = new AtomicLong();
+    private final Set<String> undecodable = ConcurrentHashMap.newKeySet();
+    private Thread driver; // guarded by this
+    private boolean again; // guarded by this: start() was called while running
+    private volatile boolean stopped;
+
+    public static synchronized LoudnessScanner getInstance() {
+        if (instance == null) {
+            instance = new LoudnessScanner(Integer.getInteger("vibe.loudness.threads",
+                    Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+        }
+        return instance;
+    }
+
+    public LoudnessScanner(int threads) {
+        this.pool = new ForkJoinPool(Math.max(1, threads), p -> {
+            var t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("loudness-" + t.getPoolIndex());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }, null, false);
+    }
+
+    /** Starts (or, if running, re-checks for) unanalysed tracks. Returns at once. */
+    public synchronized void start() {
+        if (stopped) {
+            return;
+        }
+        if (driver != null) {
+            again = true;
+            return;
+        }
+        driver = new Thread(this::run, "loudness-scan");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    /** Stops after the current track(s); unfinished tracks are picked up by the next run. */
+    public void stop() {
+        stopped = true;
+        pool.shutdownNow();
+        Thread d;
+        synchronized (this) {
+            d = driver;
+        }
+        if (d != null) {
+            try {
+                d.join(5000); // let a page that is being saved finish before the database closes
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return driver != null;
+    }
+
+    /** Tracks measured since startup. */
+    public long getAnalysed() {
+        return analysed.get();
+    }
+
+    private void run() {
+        try {
+            while (!stopped && measurePending() && updatePendingAlbums()) {
+                synchronized (this) {
+                    if (!again) {
+                        return;
+                    }
+                    again = false;
+                }
+            }
+        } catch (RuntimeException e) {
+            if (!stopped) {
+                e.printStackTrace();
+            }
+        } finally {
+            synchronized (this) {
+                driver = null;
+            }
+        }
+    }
+
+    // One walk over the unanalysed tracks; false if stopped or a page could not be saved
+    private boolean measurePending() {
+        String after = "";
+        while (!stopped) {
+            List<Track> page = DatabaseManager.getTracksNeedingLoudness(after, PAGE_SIZE);
+            if (page.isEmpty()) {
+                return true;
+            }
+            after = page.get(page.size() - 1).getId();
+            List<ReplayGain> results = pool.invoke(new Measure(this, page, 0, page.size()));
+            if (stopped || !DatabaseManager.saveLoudness(results)) {
+                return false; // on a write error, retry on the next start() rather than spin
+            }
+            analysed.addAndGet(results.size());
+            updateAlbums(page);
+        }
+        return false;
+    }
+
+    private boolean updatePendingAlbums() {
+        String after = "";
+        while (!stopped) {
+            List<Track> page = DatabaseManager.getTracksNeedingAlbumGain(after, PAGE_SIZE);
+            if (page.isEmpty()) {
+                return true;
+            }
+            after = page.get(page.size() - 1).getId();
+            updateAlbums(page);
+        }
+        return false;
+    }
+
+    // An album is its title within one folder: "Greatest Hits" by two artists is two albums
+    private static void updateAlbums(List<Track> page) {
+        Set<List<String>> albums = new LinkedHashSet<>();
+        for (Track t : page) {
+            if (t.getAlbum() != null && !t.getAlbum().isBlank() && !UNKNOWN_ALBUM.equals(t.getAlbum())) {
+                String folder = folderOf(t.getFilepath());
+                if (folder != null) {
+                    albums.add(List.of(folder, t.getAlbum()));
+                }
+            }
+        }
+        for (List<String> album : albums) {
+            List<ReplayGain> tracks = DatabaseManager.getAlbumLoudness(album.get(0), album.get(1));
+            double[] lufs = new double[tracks.size()];
+            long[] blocks = new long[tracks.size()];
+            for (int i = 0; i < lufs.length; i++) {
+                lufs[i] = tracks.get(i).getLoudness();
+                blocks[i] = tracks.get(i).getBlocks();
+            }
+            DatabaseManager.setAlbumGain(album.get(0), album.get(1),
+                    LoudnessMeter.gainFor(LoudnessMeter.combine(lufs, blocks)));
+        }
+    }
+
+    // The path up to and including its last separator; null for a bare file name
+    private static String folderOf(String filepath) {
+        int i = Math.max(filepath.lastIndexOf('/'), filepath.lastIndexOf('\\'));
+        return i < 0 ? null : filepath.substring(0, i + 1);
+    }
+
+    // Halves the range until single tracks; idle workers steal the other halves.
+    // Never serialised: the fields are transient only because ForkJoinTask is Serializable
+    private static final class Measure extends RecursiveTask<List<ReplayGain>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient LoudnessScanner scanner;
+        private final transient List<Track> tracks;
+        private final int from;
+        private final int to;
+
+        Measure(LoudnessScanner scanner, List<Track> tracks, int from, int to) {
+            this.scanner = scanner;
+            this.tracks = tracks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<ReplayGain> compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                Measure right = new Measure(scanner, tracks, mid, to);
+                right.fork();
+                List<ReplayGain> out = new Measure(scanner, tracks, from, mid).compute();
+                out.addAll(right.join());
+                return out;
+            }
+            List<ReplayGain> out = new ArrayList<>(1);
+            Track t = tracks.get(from);
+            if (scanner.stopped || scanner.undecodable.contains(t.getId())) {
+                return out;
+            }
+            try {
+                ReplayGain result = LoudnessMeter.analyze(t.getId(), Path.of(t.getFilepath()));
+                if (result != null) {
+                    out.add(result);
+                } else {
+                    scanner.undecodable.add(t.getId()); // left unanalysed
+                }
+            } catch (IOException e) {
+                // Unreadable: record it as such so it is not retried until the file changes
+                System.err.println("Loudness analysis failed for " + t.getFilepath() + ": " + e.getMessage());
+                out.add(new ReplayGain(t.getId(), Double.NaN, 0, Double.NaN, Double.NaN, Double.NaN));
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.vibe.audio;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Streams a file's audio as interleaved float samples in [-1, 1], a fixed-size buffer
+// at a time, so analysis never holds more than one buffer of a track in memory.
+// Decoding goes through javax.sound.sampled: WAV/AIFF/AU work out of the box, other
+// formats (MP3, FLAC, ...) as soon as a decoder SPI for them is on the classpath.
+public class PcmStream implements AutoCloseable {
+    static final int BUFFER_BYTES = 64 * 1024;
+
+    private final AudioInputStream in;
+    private final float sampleRate;
+    private final int channels;
+    private final byte[] bytes = new byte[BUFFER_BYTES];
+
+    private PcmStream(AudioInputStream in) {
+        this.in = in;
+        this.sampleRate = in.getFormat().getSampleRate();
+        this.channels = in.getFormat().getChannels();
+    }
+
+    /** @throws UnsupportedAudioFileException if no installed decoder understands the file */
+    public static PcmStream open(Path path) throws IOException, UnsupportedAudioFileException {
+        InputStream file = new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES);
+        try {
+            AudioInputStream src = AudioSystem.getAudioInputStream(file);
+            AudioFormat f = src.getFormat();
+            // Everything is converted to 16-bit little-endian PCM, which every decoder offers
+            AudioFormat pcm = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, f.getSampleRate(), 16,
+                    f.getChannels(), f.getChannels() * 2, f.getSampleRate(), false);
+            if (!f.matches(pcm)) {
+                src = AudioSystem.getAudioInputStream(pcm, src);
+            }
+            return new PcmStream(src);
+        } catch (IOException | UnsupportedAudioFileException | IllegalArgumentException e) {
+            file.close();
+            if (e instanceof IllegalArgumentException) {
+                throw new UnsupportedAudioFileException("No PCM conversion: " + e.getMessage());
+            }
+            throw e;
+        }
+    }
+
+    public float getSampleRate() { return sampleRate; }
+    public int getChannels() { return channels; }
+
+    /**
+     * Reads up to {@code out.length} samples (whole frames only, interleaved).
+     * @return the number of samples read, or -1 at the end of the stream
+     */
+    public int read(float[] out) throws IOException {
+        int frameBytes = channels * 2;
+        int want = Math.min(bytes.length, out.length * 2) / frameBytes * frameBytes;
+        if (want == 0) {
+            return 0;
+        }
+        int got = 0;
+        while (got < want) {
+            int n = in.read(bytes, got, want - got);
+            if (n < 0) {
+                break;
+            }
+            got += n;
+        }
+        got = got / frameBytes * frameBytes;
+        if (got == 0) {
+            return -1;
+        }
+        int samples = got / 2;
+        for (int i = 0, b = 0; i < samples; i++, b += 2) {
+            out[i] = (short) ((bytes[b] & 0xFF) | (bytes[b + 1] << 8)) / 32768f;
+        }
+        return samples;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,27 @@
+package com.vibe.audio;
+
+import java.nio.ByteBuffer;
+
+// A track's peaks: for each of size() equal slices of the track, the lowest and
+// highest sample, quantised to a signed byte. Usually a view over a memory-mapped
+// cache file, so holding one costs no heap beyond this object.
+public class Waveform {
+    private final ByteBuffer peaks; // min, max, min, max, ...
+
+    Waveform(ByteBuffer peaks) {
+        this.peaks = peaks;
+    }
+
+    /** Number of min/max pairs; 0 if the file could not be decoded. */
+    public int size() {
+        return peaks.limit() / 2;
+    }
+
+    public float min(int i) {
+        return peaks.get(2 * i) / 127f;
+    }
+
+    public float max(int i) {
+        return peaks.get(2 * i + 1) / 127f;
+    }
+}
@@ -0,0 +1,475 @@
+package com.vibe.audio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import com.vibe.db.DatabaseManager;
+import com.vibe.db.TrackOrder;
+import com.vibe.db.TrackPage;
+import com.vibe.library.FileFingerprint;
+import com.vibe.model.Track;
+
+// Waveform overviews for the seek bar, decoded once and kept on disk.
+// Each track gets a small sidecar "<trackId>-<fingerprint>.peaks" (an 8-byte header
+// and RESOLUTION min/max byte pairs), so a re-encoded or replaced file gets new peaks.
+// Cache hits are memory-mapped rather than read; misses are decoded by a small pool
+// of low-priority threads, where a track that is about to play jumps the batch queue.
+// Batch work stops once the cache is at its size limit; only plays evict, least
+// recently used first (recency is the file's modified time).
+// Tunables: -Dvibe.waveform.dir, .maxBytes (default 64 MiB), .threads (default cores/4).
+public class WaveformCache {
+    public static final int RESOLUTION = 2048;
+    static final int MAGIC = 0x56504B31; // "VPK1"
+    static final int HEADER_BYTES = 8; // magic, pair count
+    static final int ENTRY_BYTES = HEADER_BYTES + 2 * RESOLUTION;
+    static final String SUFFIX = ".peaks";
+    static final int FEED_PAGE_SIZE = 256;
+
+    private static final int URGENT = 0;
+    private static final int BATCH = 1;
+
+    private static WaveformCache instance;
+
+    private final Path dir;
+    private final long maxBytes;
+    private final ThreadPoolExecutor pool;
+    private final Map<String, Job> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private long usedBytes = -1; // guarded by this; -1 until the directory is first measured
+    private TrackPage.Cursor fedUpTo; // guarded by this: last library row precomputeLibrary() queued
+    private boolean feeding; // guarded by this
+    private boolean feedAgain; // guarded by this
+
+    public static synchronized WaveformCache getInstance() {
+        if (instance == null) {
+            instance = new WaveformCache(
+                    Path.of(System.getProperty("vibe.waveform.dir", "waveforms")),
+                    Long.getLong("vibe.waveform.maxBytes", 64L * 1024 * 1024),
+                    Integer.getInteger("vibe.waveform.threads",
+                            Math.max(1, Runtime.getRuntime().availableProcessors() / 4)));
+        }
+        return instance;
+    }
+
+    public WaveformCache(Path dir, long maxBytes, int threads) {
+        this.dir = dir;
+        this.maxBytes = Math.max(ENTRY_BYTES, maxBytes);
+        int n = Math.max(1, threads);
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "waveform-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Hands {@code track}'s waveform to {@code callback} on a pool thread, decoding it
+     * first if it is not cached. The callback gets null if the file could not be read.
+     */
+    public void request(Track track, Consumer<Waveform> callback) {
+        while (true) {
+            Job job = pending.computeIfAbsent(track.getId(), k -> new Job(track, URGENT));
+            if (job.attach(callback)) {
+                // Already queued as batch work: move it to the front
+                if (job.priority == BATCH && pool.getQueue().remove(job)) {
+                    job.priority = URGENT;
+                    pool.execute(job);
+                } else if (job.priority == URGENT && !job.queued) {
+                    job.queued = true;
+                    pool.execute(job);
+                }
+                return;
+            }
+            pending.remove(track.getId(), job); // finished as we attached; go again
+        }
+    }
+
+    /** Queues {@code tracks} for background decoding, behind any plays. */
+    public void precompute(Collection<Track> tracks) {
+        for (Track t : tracks) {
+            Job job = new Job(t, BATCH);
+            if (pending.putIfAbsent(t.getId(), job) == null) {
+                job.queued = true;
+                pool.execute(job);
+            }
+        }
+    }
+
+    /**
+     * Queues every library track for background decoding, a page at a time, so the queue
+     * never holds more than a page. Later calls continue after the last track queued, so
+     * after an import only the new tracks are visited.
+     */
+    public synchronized void precomputeLibrary() {
+        if (feeding) {
+            feedAgain = true;
+            return;
+        }
+        feeding = true;
+        pool.execute(new Feeder(fedUpTo));
+    }
+
+    /** Number of tracks waiting to be decoded or looked up. */
+    public int getPending() {
+        return pool.getQueue().size();
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private Waveform load(Track track, boolean urgent) throws IOException {
+        Path path = Path.of(track.getFilepath());
+        long fp = FileFingerprint.compute(path, Files.size(path));
+        Path file = dir.resolve(track.getId() + "-" + Long.toHexString(fp) + SUFFIX);
+        if (Files.exists(file)) {
+            if (!urgent) {
+                return null; // batch: nothing to do, and don't disturb the LRU order
+            }
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            Waveform w = map(file);
+            if (w != null) {
+                return w;
+            }
+        }
+        // Batch work claims its space first, so parallel workers cannot overshoot the limit
+        long reserved = urgent ? 0 : reserve();
+        if (reserved < 0) {
+            return null;
+        }
+        boolean written = false;
+        try {
+            byte[] peaks = computePeaks(path);
+            if (peaks == null) {
+                return null; // not cached: a decoder installed later may read it
+            }
+            write(file, track.getId(), peaks, reserved);
+            written = true;
+        } finally {
+            if (!written) {
+                removed(reserved);
+            }
+        }
+        return urgent ? map(file) : null;
+    }
+
+    // Null (and the file removed) if it is not a peaks file we wrote
+    private Waveform map(Path file) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size >= HEADER_BYTES) {
+                MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                int pairs = m.getInt(4);
+                // Empty entries were once written for unreadable formats; they are retried now
+                if (m.getInt(0) == MAGIC && pairs > 0 && HEADER_BYTES + 2L * pairs == size) {
+                    return new Waveform(m.slice(HEADER_BYTES, 2 * pairs));
+                }
+            }
+        }
+        System.err.println("Discarding bad waveform cache file: " + file);
+        removed(delete(file));
+        return null;
+    }
+
+    /**
+     * Decodes {@code path} into at most RESOLUTION min/max pairs; null if no installed
+     * decoder reads it or it has no frames. Nulls are not cached.
+     */
+    static byte[] computePeaks(Path path) throws IOException {
+        try (PcmStream pcm = PcmStream.open(path)) {
+            int channels = pcm.getChannels();
+            float[] buf = new float[PcmStream.BUFFER_BYTES / 2];
+            // Buckets of `span` frames; whenever they fill up, neighbours are merged and
+            // span doubles, so the track length need not be known up front
+            float[] lo = new float[2 * RESOLUTION];
+            float[] hi = new float[2 * RESOLUTION];
+            int count = 0;
+            long span = 1;
+            long filled = 0;
+            float curLo = Float.POSITIVE_INFINITY;
+            float curHi = Float.NEGATIVE_INFINITY;
+            for (int n; (n = pcm.read(buf)) >= 0;) {
+                for (int i = 0; i < n; i += channels) {
+                    for (int c = 0; c < channels; c++) {
+                        float v = buf[i + c];
+                        if (v < curLo) curLo = v;
+                        if (v > curHi) curHi = v;
+                    }
+                    if (++filled == span) {
+                        lo[count] = curLo;
+                        hi[count] = curHi;
+                        count++;
+                        filled = 0;
+                        curLo = Float.POSITIVE_INFINITY;
+                        curHi = Float.NEGATIVE_INFINITY;
+                        if (count == lo.length) {
+                            for (int j = 0; j < RESOLUTION; j++) {
+                                lo[j] = Math.min(lo[2 * j], lo[2 * j + 1]);
+                                hi[j] = Math.max(hi[2 * j], hi[2 * j + 1]);
+                            }
+                            count = RESOLUTION;
+                            span *= 2;
+                        }
+                    }
+                }
+            }
+            if (filled > 0) {
+                lo[count] = curLo;
+                hi[count] = curHi;
+                count++;
+            }
+
+            if (count == 0) {
+                return null;
+            }
+            int out = Math.min(RESOLUTION, count);
+            byte[] peaks = new byte[2 * out];
+            for (int j = 0; j < out; j++) {
+                int from = (int) ((long) j * count / out);
+                int to = (int) ((long) (j + 1) * count / out);
+                float a = lo[from];
+                float b = hi[from];
+                for (int k = from + 1; k < to; k++) {
+                    a = Math.min(a, lo[k]);
+                    b = Math.max(b, hi[k]);
+                }
+                peaks[2 * j] = quantise(a);
+                peaks[2 * j + 1] = quantise(b);
+            }
+            return peaks;
+        } catch (UnsupportedAudioFileException e) {
+            return null;
+        }
+    }
+
+    private static byte quantise(float v) {
+        return (byte) Math.round(Math.max(-1f, Math.min(1f, v)) * 127);
+    }
+
+    // `reserved` bytes were already counted by reserve()
+    private void write(Path file, String trackId, byte[] peaks, long reserved) throws IOException {
+        Files.createDirectories(dir);
+        synchronized (this) {
+            measure(); // before this entry exists, so it is not counted twice
+        }
+        // Peaks for an older version of the file are dead weight now
+        long freed = 0;
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(dir, trackId + "-*" + SUFFIX)) {
+            for (Path p : old) {
+                freed += delete(p);
+            }
+        }
+        removed(freed);
+
+        ByteBuffer b = ByteBuffer.allocate(HEADER_BYTES + peaks.length);
+        b.putInt(MAGIC).putInt(peaks.length / 2).put(peaks);
+        Path tmp = Files.createTempFile(dir, trackId, ".tmp");
+        try {
+            Files.write(tmp, b.array());
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        added(b.capacity() - reserved);
+    }
+
+    // ENTRY_BYTES if they fit under the limit, -1 if the cache is full
+    private synchronized long reserve() {
+        measure();
+        if (usedBytes + ENTRY_BYTES > maxBytes) {
+            return -1;
+        }
+        usedBytes += ENTRY_BYTES;
+        return ENTRY_BYTES;
+    }
+
+    private synchronized void added(long bytes) {
+        measure();
+        usedBytes += bytes;
+        if (usedBytes > maxBytes) {
+            evict();
+        }
+    }
+
+    private synchronized void removed(long bytes) {
+        if (usedBytes >= 0) {
+            usedBytes -= bytes;
+        }
+    }
+
+    private void measure() {
+        if (usedBytes >= 0) {
+            return;
+        }
+        usedBytes = 0;
+        for (Path p : list("*")) {
+            if (p.toString().endsWith(SUFFIX)) {
+                usedBytes += size(p);
+            } else if (p.toString().endsWith(".tmp")) {
+                delete(p); // left over from an interrupted write
+            }
+        }
+    }
+
+    // Drop the least recently used entries until there is some headroom again
+    private void evict() {
+        List<Path> files = list("*" + SUFFIX);
+        Map<Path, Long> touched = new HashMap<>();
+        for (Path p : files) {
+            try {
+                touched.put(p, Files.getLastModifiedTime(p).toMillis());
+            } catch (IOException e) {
+                touched.put(p, 0L);
+            }
+        }
+        files.sort(Comparator.comparing(touched::get));
+        long target = maxBytes - maxBytes / 10;
+        for (Path p : files) {
+            if (usedBytes <= target) {
+                break;
+            }
+            usedBytes -= delete(p);
+        }
+    }
+
+    private List<Path> list(String glob) {
+        List<Path> out = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return out;
+        }
+        try (DirectoryStream<Path> s = Files.newDirectoryStream(dir, glob)) {
+            s.forEach(out::add);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return out;
+    }
+
+    private static long size(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Bytes freed; 0 if the file is gone already or still in use (mapped, on Windows)
+    private static long delete(Path p) {
+        long size = size(p);
+        try {
+            return Files.deleteIfExists(p) ? size : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // Queue entries: plays before batch work, otherwise first come, first served
+    private abstract class Work implements Runnable, Comparable<Work> {
+        final long seq = sequence.incrementAndGet();
+        volatile int priority;
+
+        @Override
+        public int compareTo(Work o) {
+            return priority != o.priority ? Integer.compare(priority, o.priority) : Long.compare(seq, o.seq);
+        }
+    }
+
+    // Queues one page of the library, then itself again for the next page (behind that page's jobs)
+    private final class Feeder extends Work {
+        private final TrackPage.Cursor from;
+
+        Feeder(TrackPage.Cursor from) {
+            this.from = from;
+            this.priority = BATCH;
+        }
+
+        @Override
+        public void run() {
+            TrackPage page = DatabaseManager.getTrackPage(TrackOrder.DEFAULT, from, FEED_PAGE_SIZE);
+            precompute(page.getTracks());
+            synchronized (WaveformCache.this) {
+                if (page.getNext() != null) {
+                    fedUpTo = page.getNext();
+                }
+                if (page.getTracks().size() == FEED_PAGE_SIZE || feedAgain) {
+                    feedAgain = false;
+                    pool.execute(new Feeder(fedUpTo));
+                } else {
+                    feeding = false;
+                }
+            }
+        }
+    }
+
+    private final class Job extends Work {
+        final Track track;
+        volatile boolean queued;
+        private final List<Consumer<Waveform>> callbacks = new ArrayList<>();
+        private boolean done;
+
+        Job(Track track, int priority) {
+            this.track = track;
+            this.priority = priority;
+        }
+
+        synchronized boolean attach(Consumer<Waveform> callback) {
+            if (done) {
+                return false;
+            }
+            callbacks.add(callback);
+            return true;
+        }
+
+        @Override
+        public void run() {
+            boolean urgent = priority == URGENT;
+            Waveform w = null;
+            List<Consumer<Waveform>> toNotify;
+            while (true) {
+                try {
+                    w = load(track, urgent);
+                } catch (IOException e) {
+                    System.err.println("Waveform failed for " + track.getFilepath() + ": " + e.getMessage());
+                }
+                synchronized (this) {
+                    if (urgent || callbacks.isEmpty()) {
+                        done = true;
+                        toNotify = new ArrayList<>(callbacks);
+                        break;
+                    }
+                }
+                urgent = true; // a play asked for it while it ran as batch work
+            }
+            pending.remove(track.getId(), this);
+            for (Consumer<Waveform> c : toNotify) {
+                c.accept(w);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.vibe.db;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.vibe.model.Playlist;
+import com.vibe.model.ReplayGain;
+import com.vibe.model.Track;
+
+// DatabaseManager calls for the UI, run off the calling thread.
+// Writes go to one thread, so they apply in the order they were submitted (and never
+// queue behind each other for the single writer connection); reads go to a pool the
+// size of the reader connections, so they run side by side. Every call is timed from
+// submission: time spent queued and time spent running, per query name. Calls slower
+// than -Dvibe.db.slowQueryMillis are logged.
+// Futures complete on the database threads; UI code hands results back itself.
+public class AsyncDatabase {
+
+    /** Counters for one kind of query. */
+    public static class QueryStats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong waitNanos = new AtomicLong();
+        final AtomicLong runNanos = new AtomicLong();
+        final AtomicLong maxRunNanos = new AtomicLong();
+
+        public long getCalls() { return calls.get(); }
+
+        /** Mean time between submission and starting, in milliseconds. */
+        public double getMeanWaitMillis() {
+            long n = calls.get();
+            return n == 0 ? 0 : waitNanos.get() / 1e6 / n;
+        }
+
+        public double getMeanRunMillis() {
+            long n = calls.get();
+            return n == 0 ? 0 : runNanos.get() / 1e6 / n;
+        }
+
+        public double getMaxRunMillis() { return maxRunNanos.get() / 1e6; }
+
+        @Override
+        public String toString() {
+            return String.format("%d calls, %.1f ms queued, %.1f ms run (max %.1f)",
+                    getCalls(), getMeanWaitMillis(), getMeanRunMillis(), getMaxRunMillis());
+        }
+    }
+
+    private static AsyncDatabase instance;
+
+    private final ThreadPoolExecutor writer;
+    private final ThreadPoolExecutor readers;
+    private final long slowNanos;
+    private final Map<String, QueryStats> stats = new ConcurrentHashMap<>();
+
+    public static synchronized AsyncDatabase getInstance() {
+        if (instance == null) {
+            DatabaseConfig cfg = DatabaseConfig.fromSystemProperties();
+            instance = new AsyncDatabase(cfg.getReaders(), cfg.getSlowQueryMillis());
+        }
+        return instance;
+    }
+
+    public AsyncDatabase(int readerThreads, long slowQueryMillis) {
+        this.writer = executor("db-write", 1);
+        this.readers = executor("db-read", Math.max(1, readerThreads));
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    private static ThreadPoolExecutor executor(String name, int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, threads == 1 ? name : name + "-" + n.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Runs a read-only query on a reader thread. */
+    public <T> CompletableFuture<T> read(String name, Supplier<T> query) {
+        return submit(readers, name, query);
+    }
+
+    /** Runs an update on the writer thread, after every write submitted before it. */
+    public <T> CompletableFuture<T> write(String name, Supplier<T> update) {
+        return submit(writer, name, update);
+    }
+
+    private <T> CompletableFuture<T> submit(ThreadPoolExecutor executor, String name, Supplier<T> call) {
+        long queued = System.nanoTime();
+        CompletableFuture<T> f = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    f.complete(call.get());
+                } catch (Throwable e) {
+                    f.completeExceptionally(e);
+                } finally {
+                    record(name, start - queued, System.nanoTime() - start, executor.getQueue().size());
+                }
+            });
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e); // shut down
+        }
+        return f;
+    }
+
+    private void record(String name, long wait, long run, int stillQueued) {
+        QueryStats s = stats.computeIfAbsent(name, k -> new QueryStats());
+        s.calls.incrementAndGet();
+        s.waitNanos.addAndGet(wait);
+        s.runNanos.addAndGet(run);
+        s.maxRunNanos.accumulateAndGet(run, Math::max);
+        if (wait + run >= slowNanos) {
+            System.err.printf("Slow query %s: %.1f ms queued, %.1f ms run, %d behind it%n",
+                    name, wait / 1e6, run / 1e6, stillQueued);
+        }
+    }
+
+    // --- Queries used by the UI ---
+
+    public CompletableFuture<Boolean> loginUser(String username, String password) {
+        return read("loginUser", () -> DatabaseManager.loginUser(username, password));
+    }
+
+    public CompletableFuture<Boolean> registerUser(String username, String password) {
+        return write("registerUser", () -> DatabaseManager.registerUser(username, password));
+    }
+
+    public CompletableFuture<List<Track>> searchTracks(String query, int limit, int offset) {
+        return read("searchTracks", () -> DatabaseManager.searchTracks(query, limit, offset));
+    }
+
+    /**
+     * The library sorted by {@code keys}, the first deciding most. The columns are read
+     * on a reader; the sorting, which is CPU work, runs on the common fork-join pool.
+     */
+    public CompletableFuture<SortedLibrary> sortLibrary(List<TrackOrder> keys) {
+        return read("readSortColumns", () -> DatabaseManager.readSortColumns(keys))
+                .thenApplyAsync(columns -> SortedLibrary.sort(keys, columns));
+    }
+
+    public CompletableFuture<Boolean> deleteTrack(String trackId) {
+        return write("deleteTrack", () -> DatabaseManager.deleteTrack(trackId));
+    }
+
+    public CompletableFuture<List<DuplicateGroup>> getDuplicateGroups() {
+        return read("getDuplicateGroups", DatabaseManager::getDuplicateGroups);
+    }
+
+    public CompletableFuture<Integer> mergeAllDuplicates() {
+        return write("mergeAllDuplicates", DatabaseManager::mergeAllDuplicates);
+    }
+
+    public CompletableFuture<List<Playlist>> getAllPlaylists() {
+        return read("getAllPlaylists", DatabaseManager::getAllPlaylists);
+    }
+
+    public CompletableFuture<List<Track>> getTracksForPlaylist(String playlistId) {
+        return read("getTracksForPlaylist", () -> DatabaseManager.getTracksForPlaylist(playlistId));
+    }
+
+    public CompletableFuture<Map<String, Integer>> getPlaylistSongCounts(List<String> playlistIds) {
+        return read("getPlaylistSongCounts", () -> DatabaseManager.getPlaylistSongCounts(playlistIds));
+    }
+
+    /**
+     * Creates {@code playlist} holding {@code track}. False if a playlist of that name
+     * already exists or it could not be saved. Checked on the writer, so two creates of
+     * the same name cannot both pass the check.
+     */
+    public CompletableFuture<Boolean> createPlaylist(Playlist playlist, Track track) {
+        return write("createPlaylist", () -> {
+            if (DatabaseManager.checkPlaylistExists(playlist.getName()) || !DatabaseManager.createPlaylist(playlist)) {
+                return false;
+            }
+            DatabaseManager.addTrackToPlaylist(playlist.getId(), track.getId());
+            return true;
+        });
+    }
+
+    public CompletableFuture<Void> addTrackToPlaylist(String playlistId, String trackId) {
+        return write("addTrackToPlaylist", () -> {
+            DatabaseManager.addTrackToPlaylist(playlistId, trackId);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Boolean> removeTrackFromPlaylist(String playlistId, String trackId) {
+        return write("removeTrackFromPlaylist", () -> DatabaseManager.removeTrackFromPlaylist(playlistId, trackId));
+    }
+
+    public CompletableFuture<Boolean> deletePlaylist(String playlistId) {
+        return write("deletePlaylist", () -> DatabaseManager.deletePlaylist(playlistId));
+    }
+
+    public CompletableFuture<Track> getTrack(String trackId) {
+        return read("getTrack", () -> DatabaseManager.getTrack(trackId));
+    }
+
+    public CompletableFuture<ReplayGain> getReplayGain(String trackId) {
+        return read("getReplayGain", () -> DatabaseManager.getReplayGain(trackId));
+    }
+
+    // --- Instrumentation ---
+
+    /** Calls submitted but not started yet. */
+    public int getQueueDepth() {
+        return writer.getQueue().size() + readers.getQueue().size();
+    }
+
+    public int getWriteQueueDepth() {
+        return writer.getQueue().size();
+    }
+
+    /** Per query name, sorted by name. */
+    public Map<String, QueryStats> getStats() {
+        return new TreeMap<>(stats);
+    }
+
+    /** Finishes queued writes (so nothing the user did is lost) and drops queued reads. */
+    public void shutdown() {
+        readers.shutdownNow();
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
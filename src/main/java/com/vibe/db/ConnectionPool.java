@@ -0,0 +1,182 @@
+package com.vibe.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Long-lived SQLite connections: one writer plus a few readers.
+// SQLite only allows a single writer at a time, so all mutations go through the
+// writer handle, while WAL mode lets the readers run concurrently with it.
+// Each handle keeps its own PreparedStatement cache so the SQL is parsed once.
+// Closing the pool closes the idle connections at once and borrowed ones as they come back.
+public class ConnectionPool {
+
+    /** A pooled connection. Closing it returns it to the pool instead of closing the JDBC connection. */
+    public static class Handle implements AutoCloseable {
+        private final Connection conn;
+        private final ConnectionPool pool;
+        private final BlockingQueue<Handle> home;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        Handle(Connection conn, ConnectionPool pool, BlockingQueue<Handle> home) {
+            this.conn = conn;
+            this.pool = pool;
+            this.home = home;
+        }
+
+        public Connection connection() {
+            return conn;
+        }
+
+        /** Returns a cached statement for this connection. Callers must not close it. */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null || ps.isClosed()) {
+                ps = conn.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            ps.clearParameters();
+            return ps;
+        }
+
+        @Override
+        public void close() {
+            try {
+                // Never hand a connection back in the middle of a transaction
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            pool.release(this);
+        }
+
+        void dispose() {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statements.clear();
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private final BlockingQueue<Handle> writer = new ArrayBlockingQueue<>(1);
+    private final BlockingQueue<Handle> readers;
+    private final List<Handle> all = new ArrayList<>(); // open connections, idle or borrowed
+    private boolean closed; // guarded by all
+
+    private ConnectionPool(int readerCount) {
+        readers = new ArrayBlockingQueue<>(readerCount);
+    }
+
+    /** Opens the writer and {@code config.getReaders()} readers on {@code url}. */
+    public static ConnectionPool open(String url, DatabaseConfig config) throws SQLException {
+        ConnectionPool pool = new ConnectionPool(config.getReaders());
+        try {
+            pool.writer.add(pool.connect(url, config, pool.writer, false));
+            for (int i = 0; i < config.getReaders(); i++) {
+                pool.readers.add(pool.connect(url, config, pool.readers, true));
+            }
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+        return pool;
+    }
+
+    private Handle connect(String url, DatabaseConfig config, BlockingQueue<Handle> home, boolean readOnly)
+            throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA busy_timeout=" + config.getBusyTimeoutMillis());
+            stmt.execute("PRAGMA mmap_size=" + config.getMmapSize());
+            // Negative cache_size is in KiB rather than pages
+            stmt.execute("PRAGMA cache_size=-" + config.getCacheSizeKb());
+            stmt.execute("PRAGMA temp_store=MEMORY");
+            if (readOnly) {
+                stmt.execute("PRAGMA query_only=1");
+            }
+        }
+        Handle h = new Handle(conn, this, home);
+        synchronized (all) {
+            all.add(h);
+        }
+        return h;
+    }
+
+    /** Borrows the single writer connection, blocking until it is free. */
+    public Handle writer() throws SQLException {
+        return take(writer);
+    }
+
+    /** Borrows one of the read-only connections, blocking until one is free. */
+    public Handle reader() throws SQLException {
+        return take(readers);
+    }
+
+    // Waits for a free handle, giving up once the pool is closed
+    private Handle take(BlockingQueue<Handle> queue) throws SQLException {
+        try {
+            while (true) {
+                synchronized (all) {
+                    if (closed) {
+                        throw new SQLException("Connection pool is closed");
+                    }
+                }
+                Handle h = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (h != null) {
+                    return h;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+    }
+
+    // A returned handle goes back to its queue, or is closed if the pool was closed meanwhile
+    private void release(Handle h) {
+        synchronized (all) {
+            if (!closed) {
+                h.home.offer(h);
+                return;
+            }
+            all.remove(h);
+        }
+        h.dispose();
+    }
+
+    /** Closes the idle connections now; borrowed ones are closed when they are returned. */
+    public void close() {
+        List<Handle> idle = new ArrayList<>();
+        synchronized (all) {
+            closed = true;
+            writer.drainTo(idle);
+            readers.drainTo(idle);
+            all.removeAll(idle);
+        }
+        for (Handle h : idle) {
+            h.dispose();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vibe.db;
+
+// Tunables for the SQLite connection layer.
+// Defaults suit a desktop library; override with -Dvibe.db.<name>=<value>.
+public class DatabaseConfig {
+    private int readers = 3;
+    private long mmapSize = 256L * 1024 * 1024; // bytes
+    private long cacheSizeKb = 64 * 1024; // 64 MiB page cache per connection
+    private int busyTimeoutMillis = 5000;
+    private int importBatchSize = 500; // rows per transaction for bulk imports
+    private int eventQueueSize = 100_000; // play events buffered before new ones are dropped
+    private long eventFlushMillis = 2000;
+    private int eventBatchSize = 1000;
+    private long slowQueryMillis = 100; // AsyncDatabase logs calls slower than this
+
+    public static DatabaseConfig fromSystemProperties() {
+        DatabaseConfig c = new DatabaseConfig();
+        c.readers = Math.max(1, Integer.getInteger("vibe.db.readers", c.readers));
+        c.mmapSize = Math.max(0, Long.getLong("vibe.db.mmapSize", c.mmapSize));
+        c.cacheSizeKb = Math.max(0, Long.getLong("vibe.db.cacheSizeKb", c.cacheSizeKb));
+        c.busyTimeoutMillis = Math.max(0, Integer.getInteger("vibe.db.busyTimeoutMillis", c.busyTimeoutMillis));
+        c.importBatchSize = Math.max(1, Integer.getInteger("vibe.db.importBatchSize", c.importBatchSize));
+        c.eventQueueSize = Math.max(1, Integer.getInteger("vibe.db.eventQueueSize", c.eventQueueSize));
+        c.eventFlushMillis = Math.max(1, Long.getLong("vibe.db.eventFlushMillis", c.eventFlushMillis));
+        c.eventBatchSize = Math.max(1, Integer.getInteger("vibe.db.eventBatchSize", c.eventBatchSize));
+        c.slowQueryMillis = Math.max(0, Long.getLong("vibe.db.slowQueryMillis", c.slowQueryMillis));
+        return c;
+    }
+
+    public int getReaders() { return readers; }
+    public long getMmapSize() { return mmapSize; }
+    public long getCacheSizeKb() { return cacheSizeKb; }
+    public int getBusyTimeoutMillis() { return busyTimeoutMillis; }
+    public int getImportBatchSize() { return importBatchSize; }
+    public int getEventQueueSize() { return eventQueueSize; }
+    public long getEventFlushMillis() { return eventFlushMillis; }
+    public int getEventBatchSize() { return eventBatchSize; }
+    public long getSlowQueryMillis() { return slowQueryMillis; }
+}
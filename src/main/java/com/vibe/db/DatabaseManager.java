@@ -1,54 +1,82 @@
 package com.vibe.db;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Types;
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
+import com.vibe.model.FileState;
+import com.vibe.model.PlayEvent;
+import com.vibe.model.ReplayGain;
 import com.vibe.model.Track;
+import com.vibe.model.TrackStats;
 
 public class DatabaseManager {
     private static final String OB_URL = "jdbc:sqlite:vibe_music.db";
 
+    // Opened once in initialize(); every DAO method borrows from it instead of reconnecting.
+    private static volatile ConnectionPool pool;
+    private static DatabaseConfig config = new DatabaseConfig();
+    private static volatile PlayEventLog playEvents;
+
     public static void initialize() {
-        try (Connection conn = DriverManager.getConnection(OB_URL)) {
-            Statement stmt = conn.createStatement();
+        initialize(DatabaseConfig.fromSystemProperties());
+    }
 
-            // Users
-            stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
-                    "id TEXT PRIMARY KEY, " +
-                    "username TEXT UNIQUE, " +
-                    "password TEXT)");
+    public static synchronized void initialize(DatabaseConfig cfg) {
+        if (pool != null) {
+            return;
+        }
+        config = cfg;
+        try {
+            pool = ConnectionPool.open(OB_URL, cfg);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return;
+        }
 
-            // Tracks
-            stmt.execute("CREATE TABLE IF NOT EXISTS tracks (" +
-                    "id TEXT PRIMARY KEY, " +
-                    "filepath TEXT UNIQUE, " +
-                    "title TEXT, " +
-                    "artist TEXT, " +
-                    "album TEXT, " +
-                    "duration INTEGER)");
+        try (ConnectionPool.Handle h = pool.writer()) {
+            SchemaMigrations.migrate(h.connection());
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        playEvents = new PlayEventLog(pool, cfg.getEventQueueSize(), cfg.getEventFlushMillis(),
+                cfg.getEventBatchSize());
+    }
 
-            // Playlists
-            stmt.execute("CREATE TABLE IF NOT EXISTS playlists (" +
-                    "id TEXT PRIMARY KEY, " +
-                    "name TEXT UNIQUE)");
+    /** Closes all pooled connections. Safe to call more than once. */
+    public static synchronized void shutdown() {
+        if (playEvents != null) {
+            playEvents.close(); // flush pending history while the pool is still open
+            playEvents = null;
+        }
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
 
-            // Playlist Songs
-            stmt.execute("CREATE TABLE IF NOT EXISTS playlist_songs (" +
-                    "playlist_id TEXT, " +
-                    "track_id TEXT, " +
-                    "FOREIGN KEY(playlist_id) REFERENCES playlists(id), " +
-                    "FOREIGN KEY(track_id) REFERENCES tracks(id))");
+    private static ConnectionPool.Handle reader() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("DatabaseManager not initialized");
+        }
+        return pool.reader();
+    }
 
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private static ConnectionPool.Handle writer() throws SQLException {
+        if (pool == null) {
+            throw new SQLException("DatabaseManager not initialized");
         }
+        return pool.writer();
     }
 
     public static boolean registerUser(String username, String password) {
@@ -57,8 +85,8 @@ public class DatabaseManager {
         }
 
         String sql = "INSERT INTO users(id, username, password) VALUES(?,?,?)";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, UUID.randomUUID().toString());
             pstmt.setString(2, username);
             pstmt.setString(3, password); // In real app, hash this!
@@ -72,11 +100,12 @@ public class DatabaseManager {
 
     public static boolean checkUserExists(String username) {
         String sql = "SELECT 1 FROM users WHERE username = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, username);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -85,12 +114,13 @@ public class DatabaseManager {
 
     public static boolean loginUser(String username, String password) {
         String sql = "SELECT id FROM users WHERE username = ? AND password = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, username);
             pstmt.setString(2, password);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -98,36 +128,436 @@ public class DatabaseManager {
     }
 
     public static void addTrack(Track track) {
-        String sql = "INSERT OR IGNORE INTO tracks(id, filepath, title, artist, album, duration) VALUES(?,?,?,?,?,?)";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, track.getId());
-            pstmt.setString(2, track.getFilepath());
-            pstmt.setString(3, track.getTitle());
-            pstmt.setString(4, track.getArtist());
-            pstmt.setString(5, track.getAlbum());
-            pstmt.setLong(6, track.getDuration());
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare(TrackSink.INSERT_SQL);
+            TrackSink.bind(pstmt, track, null);
             pstmt.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    public static List<Track> getAllTracks() {
+    /** Bulk insert using the configured batch size. See {@link #addTracks(Iterable, int)}. */
+    public static ImportResult addTracks(Iterable<Track> tracks) {
+        return addTracks(tracks, config.getImportBatchSize());
+    }
+
+    /**
+     * Inserts tracks in chunked transactions of {@code batchSize} rows.
+     * Rows whose filepath already exists are counted as skipped.
+     */
+    public static ImportResult addTracks(Iterable<Track> tracks, int batchSize) {
+        TrackSink sink;
+        try {
+            sink = openTrackSink(batchSize);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ImportResult(0, 0);
+        }
+        try (sink) {
+            for (Track t : tracks) {
+                sink.accept(t);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return sink.result();
+    }
+
+    /** Opens a streaming sink for imports; close it to write the final partial batch. */
+    public static TrackSink openTrackSink() throws SQLException {
+        return openTrackSink(config.getImportBatchSize());
+    }
+
+    public static TrackSink openTrackSink(int batchSize) throws SQLException {
+        if (pool == null) {
+            throw new SQLException("DatabaseManager not initialized");
+        }
+        return new TrackSink(pool, batchSize);
+    }
+
+    // --- Incremental sync ---
+
+    public static void addLibraryRoot(String path) {
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare("INSERT OR IGNORE INTO library_roots(path) VALUES(?)");
+            pstmt.setString(1, path);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public static List<String> getLibraryRoots() {
+        List<String> list = new ArrayList<>();
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare("SELECT path FROM library_roots").executeQuery()) {
+            while (rs.next()) {
+                list.add(rs.getString("path"));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /**
+     * Last known file state of every track under {@code rootDir}, keyed by filepath.
+     * Uses a range scan on the filepath index rather than LIKE.
+     */
+    public static Map<String, FileState> getFileStates(String rootDir) {
+        Map<String, FileState> map = new HashMap<>();
+        String prefix = rootDir.endsWith(File.separator) ? rootDir : rootDir + File.separator;
+        String upper = prefix.substring(0, prefix.length() - 1) + (char) (prefix.charAt(prefix.length() - 1) + 1);
+        String sql = "SELECT id, filepath, file_size, file_mtime, fingerprint, content_hash FROM tracks " +
+                "WHERE filepath >= ? AND filepath < ?";
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            pstmt.setString(1, prefix);
+            pstmt.setString(2, upper);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    FileState st = readFileState(rs);
+                    map.put(st.getFilepath(), st);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return map;
+    }
+
+    /** Last known file state for each of the given paths that is in the library. */
+    public static Map<String, FileState> getFileStatesFor(Collection<String> paths) {
+        Map<String, FileState> map = new HashMap<>();
+        String sql = "SELECT id, filepath, file_size, file_mtime, fingerprint, content_hash FROM tracks " +
+                "WHERE filepath = ?";
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            for (String path : paths) {
+                pstmt.setString(1, path);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        map.put(path, readFileState(rs));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return map;
+    }
+
+    private static FileState readFileState(ResultSet rs) throws SQLException {
+        // Rows imported before fingerprints existed read back as -1 and are always rescanned
+        long size = rs.getLong("file_size");
+        if (rs.wasNull()) size = -1;
+        long mtime = rs.getLong("file_mtime");
+        if (rs.wasNull()) mtime = -1;
+        long fp = rs.getLong("fingerprint");
+        return new FileState(rs.getString("id"), rs.getString("filepath"), size, mtime, fp,
+                rs.getString("content_hash"));
+    }
+
+    /** Rewrites metadata, path and file state of existing tracks, keeping their ids. */
+    public static int updateTracks(List<Track> tracks, List<FileState> states) {
+        // A merged duplicate whose audio changed is no longer a duplicate, so it becomes visible again;
+        // changed audio also needs its loudness measured again. IS, not =: two NULL hashes are the same audio.
+        // Album gain belongs to the album the track was in: a new tag, folder or audio means computing it again
+        String sql = "UPDATE tracks SET " +
+                "album_gain = CASE WHEN content_hash IS ? AND album IS ? AND filepath IS ? THEN album_gain END, " +
+                "filepath = ?, title = ?, artist = ?, album = ?, duration = ?, " +
+                "file_size = ?, file_mtime = ?, fingerprint = ?, track_no = ?, year = ?, genre = ?, " +
+                "duplicate_of = CASE WHEN content_hash IS ? THEN duplicate_of END, " +
+                "loudness_blocks = CASE WHEN content_hash IS ? THEN loudness_blocks END, " +
+                "track_gain = CASE WHEN content_hash IS ? THEN track_gain END, " +
+                "content_hash = ? WHERE id = ?";
+        int updated = 0;
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement pstmt = h.prepare(sql);
+            for (int i = 0; i < tracks.size(); i++) {
+                Track t = tracks.get(i);
+                FileState st = states.get(i);
+                pstmt.setString(1, st.getContentHash());
+                pstmt.setString(2, t.getAlbum());
+                pstmt.setString(3, t.getFilepath());
+                pstmt.setString(4, t.getFilepath());
+                pstmt.setString(5, t.getTitle());
+                pstmt.setString(6, t.getArtist());
+                pstmt.setString(7, t.getAlbum());
+                pstmt.setLong(8, t.getDuration());
+                pstmt.setLong(9, st.getSize());
+                pstmt.setLong(10, st.getLastModified());
+                pstmt.setLong(11, st.getFingerprint());
+                pstmt.setInt(12, t.getTrackNumber());
+                pstmt.setInt(13, t.getYear());
+                pstmt.setString(14, t.getGenre());
+                pstmt.setString(15, st.getContentHash());
+                pstmt.setString(16, st.getContentHash());
+                pstmt.setString(17, st.getContentHash());
+                pstmt.setString(18, st.getContentHash());
+                pstmt.setString(19, t.getId());
+                pstmt.addBatch();
+            }
+            for (int c : pstmt.executeBatch()) {
+                if (c > 0) updated++;
+            }
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return updated;
+    }
+
+    /** Deletes tracks and their playlist entries in one transaction. */
+    public static int deleteTracks(List<String> trackIds) {
+        int deleted = 0;
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement songs = h.prepare("DELETE FROM playlist_songs WHERE track_id = ?");
+            PreparedStatement orphans = h.prepare("UPDATE tracks SET duplicate_of = NULL WHERE duplicate_of = ?");
+            PreparedStatement stats = h.prepare("DELETE FROM track_stats WHERE track_id = ?");
+            PreparedStatement tracks = h.prepare("DELETE FROM tracks WHERE id = ?");
+            for (String id : trackIds) {
+                songs.setString(1, id);
+                songs.addBatch();
+                stats.setString(1, id);
+                stats.addBatch();
+                orphans.setString(1, id);
+                orphans.addBatch();
+                tracks.setString(1, id);
+                tracks.addBatch();
+            }
+            songs.executeBatch();
+            stats.executeBatch();
+            orphans.executeBatch();
+            for (int c : tracks.executeBatch()) {
+                if (c > 0) deleted++;
+            }
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return deleted;
+    }
+
+    // --- Listening history ---
+
+    /** Queues a play event for the background writer; cheap enough for the FX thread. */
+    public static void recordPlayEvent(PlayEvent event) {
+        PlayEventLog log = playEvents;
+        if (log != null) {
+            log.record(event);
+        }
+    }
+
+    /** Counters for one track; all zero if it was never played. */
+    public static TrackStats getTrackStats(String trackId) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare("SELECT * FROM track_stats WHERE track_id = ?");
+            pstmt.setString(1, trackId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    return readTrackStats(rs);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new TrackStats(trackId, 0, 0, 0, 0, 0);
+    }
+
+    /** The most played tracks, most plays first. */
+    public static List<TrackStats> getMostPlayed(int limit) {
+        List<TrackStats> list = new ArrayList<>();
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(
+                    "SELECT * FROM track_stats ORDER BY plays DESC, last_played DESC LIMIT ?");
+            pstmt.setInt(1, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(readTrackStats(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    private static TrackStats readTrackStats(ResultSet rs) throws SQLException {
+        return new TrackStats(
+                rs.getString("track_id"),
+                rs.getLong("plays"),
+                rs.getLong("completions"),
+                rs.getLong("skips"),
+                rs.getLong("last_played"),
+                rs.getDouble("seconds_played"));
+    }
+
+    // --- Loudness ---
+
+    /** Up to {@code limit} tracks that have not been analysed yet, in id order after {@code afterId}. */
+    public static List<Track> getTracksNeedingLoudness(String afterId, int limit) {
+        return getTracksAfter("SELECT * FROM tracks INDEXED BY idx_tracks_loudness_pending " +
+                "WHERE loudness_blocks IS NULL AND id > ? ORDER BY id LIMIT ?", afterId, limit);
+    }
+
+    /** Up to {@code limit} analysed tracks on an album with no album gain yet, in id order after {@code afterId}. */
+    public static List<Track> getTracksNeedingAlbumGain(String afterId, int limit) {
+        return getTracksAfter("SELECT * FROM tracks INDEXED BY idx_tracks_album_gain_pending " +
+                "WHERE " + SchemaMigrations.ALBUM_GAIN_PENDING + " AND id > ? ORDER BY id LIMIT ?", afterId, limit);
+    }
+
+    private static List<Track> getTracksAfter(String sql, String afterId, int limit) {
         List<Track> list = new ArrayList<>();
-        String sql = "SELECT * FROM tracks";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            pstmt.setString(1, afterId);
+            pstmt.setInt(2, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(readTrack(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
 
+    /** Stores analysis results (album gain is set separately) in one transaction. */
+    public static boolean saveLoudness(List<ReplayGain> results) {
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement pstmt = h.prepare("UPDATE tracks SET loudness = ?, loudness_blocks = ?, peak = ?, " +
+                    "track_gain = ? WHERE id = ?");
+            for (ReplayGain r : results) {
+                setNullableDouble(pstmt, 1, r.getLoudness());
+                pstmt.setLong(2, r.getBlocks());
+                setNullableDouble(pstmt, 3, r.getPeak());
+                setNullableDouble(pstmt, 4, r.getTrackGain());
+                pstmt.setString(5, r.getTrackId());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+            return true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // One album: the tracks with its title directly inside its folder, so the "Greatest Hits"
+    // of two artists are two albums. The folder ends in its separator; the range keeps the
+    // filepath index usable for the prefix, instr() leaves out subfolders
+    private static final String ALBUM_TRACKS = "album = ? AND filepath >= ? AND filepath < ? " +
+            "AND instr(substr(filepath, length(?) + 1), ?) = 0";
+
+    private static void bindAlbum(PreparedStatement pstmt, int index, String folder, String album) throws SQLException {
+        int last = folder.length() - 1;
+        pstmt.setString(index, album);
+        pstmt.setString(index + 1, folder);
+        pstmt.setString(index + 2, folder.substring(0, last) + (char) (folder.charAt(last) + 1));
+        pstmt.setString(index + 3, folder);
+        pstmt.setString(index + 4, folder.substring(last));
+    }
+
+    /** Analysed tracks tagged with {@code album} in {@code folder} (which ends in a separator). */
+    public static List<ReplayGain> getAlbumLoudness(String folder, String album) {
+        List<ReplayGain> list = new ArrayList<>();
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare("SELECT * FROM tracks WHERE " + ALBUM_TRACKS + " AND loudness_blocks > 0");
+            bindAlbum(pstmt, 1, folder, album);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(readReplayGain(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    public static void setAlbumGain(String folder, String album, double gain) {
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare("UPDATE tracks SET album_gain = ? WHERE " + ALBUM_TRACKS);
+            setNullableDouble(pstmt, 1, gain);
+            bindAlbum(pstmt, 2, folder, album);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** Analysis results for one track, or null if it has not been analysed. */
+    public static ReplayGain getReplayGain(String trackId) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare("SELECT * FROM tracks WHERE id = ? AND loudness_blocks IS NOT NULL");
+            pstmt.setString(1, trackId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readReplayGain(rs) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static ReplayGain readReplayGain(ResultSet rs) throws SQLException {
+        return new ReplayGain(
+                rs.getString("id"),
+                getNullableDouble(rs, "loudness"),
+                rs.getLong("loudness_blocks"),
+                getNullableDouble(rs, "peak"),
+                getNullableDouble(rs, "track_gain"),
+                getNullableDouble(rs, "album_gain"));
+    }
+
+    // Unknown (NaN) is stored as NULL
+    private static void setNullableDouble(PreparedStatement pstmt, int index, double value) throws SQLException {
+        if (Double.isNaN(value)) {
+            pstmt.setNull(index, Types.REAL);
+        } else {
+            pstmt.setDouble(index, value);
+        }
+    }
+
+    private static double getNullableDouble(ResultSet rs, String column) throws SQLException {
+        double v = rs.getDouble(column);
+        return rs.wasNull() ? Double.NaN : v;
+    }
+
+    /** Track by id (hidden duplicates included), or null if it no longer exists. */
+    public static Track getTrack(String id) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare("SELECT * FROM tracks WHERE id = ?");
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readTrack(rs) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public static List<Track> getAllTracks() {
+        List<Track> list = new ArrayList<>();
+        // Merged duplicates stay in the table (so rescans do not re-import them) but are hidden
+        String sql = "SELECT * FROM tracks WHERE duplicate_of IS NULL";
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare(sql).executeQuery()) {
             while (rs.next()) {
-                list.add(new Track(
-                        rs.getString("id"),
-                        rs.getString("filepath"),
-                        rs.getString("title"),
-                        rs.getString("artist"),
-                        rs.getString("album"),
-                        rs.getLong("duration")));
+                list.add(readTrack(rs));
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -135,15 +565,411 @@ public class DatabaseManager {
         return list;
     }
 
+    // --- Paged library ---
+
+    /** Number of visible (not merged-away) tracks. */
+    public static int countTracks() {
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare("SELECT COUNT(*) FROM tracks WHERE duplicate_of IS NULL").executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+    }
+
+    /** Up to {@code limit} visible tracks in {@code order}, starting after {@code after} (null: from the top). */
+    public static TrackPage getTrackPage(TrackOrder order, TrackPage.Cursor after, int limit) {
+        String sql = "SELECT *, " + order.cursorColumns() + " FROM " + order.source() + " WHERE duplicate_of IS NULL" +
+                (after != null ? " AND " + order.after() : "") +
+                " ORDER BY " + order.orderBy() + " LIMIT ?";
+        List<Track> list = new ArrayList<>(limit);
+        TrackPage.Cursor last = null;
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            int i = 1;
+            if (after != null) {
+                if (order.getKey() != TrackOrder.Key.INSERTION) {
+                    pstmt.setObject(i++, after.key);
+                    pstmt.setObject(i++, after.key);
+                }
+                pstmt.setLong(i++, after.rowid);
+            }
+            pstmt.setInt(i, limit);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int n = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    list.add(readTrack(rs));
+                    last = new TrackPage.Cursor(rs.getObject(n - 1), rs.getLong(n));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return new TrackPage(list, last);
+    }
+
+    /**
+     * Cursor just before the visible track at {@code offset} in {@code order}, for jumping
+     * into the middle without reading the rows above it (only their index entries).
+     * Null for offset 0, and past the end.
+     */
+    public static TrackPage.Cursor getCursorBefore(TrackOrder order, int offset) {
+        if (offset <= 0) {
+            return null;
+        }
+        String sql = "SELECT " + order.cursorColumns() + " FROM " + order.source() + " WHERE duplicate_of IS NULL " +
+                "ORDER BY " + order.orderBy() + " LIMIT 1 OFFSET ?";
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            pstmt.setInt(1, offset - 1);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new TrackPage.Cursor(rs.getObject(1), rs.getLong(2)) : null;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Where every page of {@code pageSize} rows starts in {@code order}: element p is the
+     * cursor just before row p * pageSize (element 0 is null). One pass over the order's
+     * index, about what a single deep {@link #getCursorBefore} costs. Empty on error.
+     */
+    public static List<TrackPage.Cursor> getPageStarts(TrackOrder order, int pageSize) {
+        String sql = "SELECT " + order.cursorColumns() + " FROM " + order.source() + " WHERE duplicate_of IS NULL " +
+                "ORDER BY " + order.orderBy();
+        List<TrackPage.Cursor> starts = new ArrayList<>();
+        starts.add(null);
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare(sql).executeQuery()) {
+            for (int i = 1; rs.next(); i++) {
+                if (i % pageSize == 0) {
+                    starts.add(new TrackPage.Cursor(rs.getObject(1), rs.getLong(2)));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return List.of();
+        }
+        return starts;
+    }
+
+    /** Index of the visible track {@code id} in {@code order}; -1 if it is hidden or gone. */
+    public static int getTrackPosition(TrackOrder order, String id) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement find = h.prepare("SELECT " + order.cursorColumns() + " FROM tracks " +
+                    "WHERE id = ? AND duplicate_of IS NULL");
+            find.setString(1, id);
+            Object key;
+            long rowid;
+            try (ResultSet rs = find.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                key = rs.getObject(1);
+                rowid = rs.getLong(2);
+            }
+            // Counting the rows before it only reads the order's index
+            PreparedStatement count = h.prepare(order.countBefore());
+            int i = 1;
+            if (order.getKey() != TrackOrder.Key.INSERTION) {
+                count.setObject(i++, key);
+                count.setObject(i++, key);
+            }
+            count.setLong(i, rowid);
+            try (ResultSet rs = count.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /** Counter bumped by every change to the visible library (see SchemaMigrations); -1 if unreadable. */
+    public static long getLibraryVersion() {
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare("SELECT version FROM library_meta").executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /** Every visible track in insertion order, with the version they are current for; null on error. */
+    static LibrarySnapshot.Writer readLibrarySnapshot() {
+        TrackOrder order = TrackOrder.DEFAULT;
+        try (ConnectionPool.Handle h = reader()) {
+            Connection conn = h.connection();
+            conn.setAutoCommit(false); // one read transaction, so the rows match the version
+            try {
+                LibrarySnapshot.Writer w;
+                try (ResultSet rs = h.prepare("SELECT version FROM library_meta").executeQuery()) {
+                    w = new LibrarySnapshot.Writer(rs.next() ? rs.getLong(1) : -1);
+                }
+                String sql = "SELECT id, filepath, title, artist, album, duration, track_no, year, genre FROM " +
+                        order.source() + " WHERE duplicate_of IS NULL ORDER BY " + order.orderBy();
+                try (ResultSet rs = h.prepare(sql).executeQuery()) {
+                    while (rs.next()) {
+                        w.add(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5),
+                                rs.getLong(6), rs.getInt(7), rs.getInt(8), rs.getString(9));
+                    }
+                }
+                conn.commit();
+                return w;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** The columns {@code keys} sort on, for every visible track, with the version they are current for. */
+    static SortedLibrary.Columns readSortColumns(List<TrackOrder> keys) {
+        StringBuilder sql = new StringBuilder("SELECT rowid");
+        for (TrackOrder k : keys) {
+            sql.append(", ").append(k.getKey().expr == null ? "rowid" : k.getKey().expr);
+        }
+        sql.append(" FROM ").append(TrackOrder.DEFAULT.source())
+                .append(" WHERE duplicate_of IS NULL ORDER BY ").append(TrackOrder.DEFAULT.orderBy());
+        long[] rowids = new long[1024];
+        Object[][] values = new Object[keys.size()][1024];
+        int n = 0;
+        long version = -1;
+        try (ConnectionPool.Handle h = reader()) {
+            Connection conn = h.connection();
+            conn.setAutoCommit(false); // one read transaction, so the rows match the version
+            try {
+                try (ResultSet rs = h.prepare("SELECT version FROM library_meta").executeQuery()) {
+                    version = rs.next() ? rs.getLong(1) : -1;
+                }
+                try (ResultSet rs = h.prepare(sql.toString()).executeQuery()) {
+                    while (rs.next()) {
+                        if (n == rowids.length) {
+                            rowids = Arrays.copyOf(rowids, n * 2);
+                            for (int k = 0; k < values.length; k++) {
+                                values[k] = Arrays.copyOf(values[k], n * 2);
+                            }
+                        }
+                        rowids[n] = rs.getLong(1);
+                        for (int k = 0; k < values.length; k++) {
+                            values[k][n] = rs.getObject(k + 2);
+                        }
+                        n++;
+                    }
+                }
+                conn.commit();
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        for (int k = 0; k < values.length; k++) {
+            values[k] = Arrays.copyOf(values[k], n);
+        }
+        return new SortedLibrary.Columns(version, Arrays.copyOf(rowids, n), values);
+    }
+
+    /**
+     * The visible tracks with these rowids, in the order given: element i is rowids[i]'s
+     * track, or null if it is gone or hidden since (so later rows keep their places).
+     */
+    static List<Track> getTracksByRowid(long[] rowids) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < rowids.length; i++) {
+            json.append(i == 0 ? "" : ",").append(rowids[i]);
+        }
+        json.append(']');
+        // json_each drives the join, so each row is one rowid lookup
+        String sql = "SELECT t.* FROM json_each(?) j LEFT JOIN tracks t " +
+                "ON t.rowid = j.value AND t.duplicate_of IS NULL ORDER BY j.key";
+        List<Track> list = new ArrayList<>(rowids.length);
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            pstmt.setString(1, json.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(rs.getString("id") != null ? readTrack(rs) : null);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    /** Rowid of the visible track {@code id}; -1 if it is hidden or gone. */
+    static long getRowid(String id) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare("SELECT rowid FROM tracks WHERE id = ? AND duplicate_of IS NULL");
+            pstmt.setString(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    // --- Search ---
+
+    /**
+     * Visible tracks matching every word of {@code query} as a prefix, in title, artist,
+     * album or file name; best matches first (a title hit outranks an artist hit, and so on).
+     * An empty query lists the library in insertion order.
+     */
+    public static List<Track> searchTracks(String query, int limit, int offset) {
+        String match = toMatchExpression(query);
+        String sql = match.isEmpty()
+                ? "SELECT * FROM tracks WHERE duplicate_of IS NULL LIMIT ? OFFSET ?"
+                : "SELECT t.* FROM tracks_fts f JOIN tracks t ON t.rowid = f.rowid " +
+                        "WHERE tracks_fts MATCH ? AND t.duplicate_of IS NULL " +
+                        "ORDER BY bm25(tracks_fts, 10.0, 5.0, 3.0, 1.0) LIMIT ? OFFSET ?";
+        List<Track> list = new ArrayList<>();
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            int i = 1;
+            if (!match.isEmpty()) {
+                pstmt.setString(i++, match);
+            }
+            pstmt.setInt(i++, limit);
+            pstmt.setInt(i, offset);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(readTrack(rs));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return list;
+    }
+
+    // User text to an FTS5 query: each word quoted (so operators and punctuation are inert)
+    // and prefix-matched, all words required. Empty if there is nothing to search for.
+    static String toMatchExpression(String query) {
+        StringBuilder sb = new StringBuilder();
+        if (query != null) {
+            for (String word : query.split("[^\\p{L}\\p{N}\\p{M}]+")) {
+                if (!word.isEmpty()) {
+                    if (sb.length() > 0) {
+                        sb.append(' ');
+                    }
+                    sb.append('"').append(word).append("\"*");
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    // --- Duplicates ---
+
+    /**
+     * Visible tracks that share an audio payload hash, grouped by hash. Within a
+     * group the track imported first comes first and is the suggested canonical copy.
+     */
+    public static List<DuplicateGroup> getDuplicateGroups() {
+        List<DuplicateGroup> groups = new ArrayList<>();
+        String sql = "SELECT * FROM tracks WHERE duplicate_of IS NULL AND content_hash IN (" +
+                "SELECT content_hash FROM tracks WHERE duplicate_of IS NULL AND content_hash IS NOT NULL " +
+                "AND content_hash <> '' GROUP BY content_hash HAVING COUNT(*) > 1) " +
+                "ORDER BY content_hash, rowid";
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare(sql).executeQuery()) {
+            String hash = null;
+            List<Track> tracks = null;
+            while (rs.next()) {
+                String hh = rs.getString("content_hash");
+                if (!hh.equals(hash)) {
+                    hash = hh;
+                    tracks = new ArrayList<>();
+                    groups.add(new DuplicateGroup(hash, tracks));
+                }
+                tracks.add(readTrack(rs));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return groups;
+    }
+
+    /**
+     * Folds duplicates into a canonical track in one transaction: their playlist
+     * entries are re-pointed to it (without adding a second copy to a playlist that
+     * already has it) and they are hidden from the library. The files stay on disk.
+     */
+    public static int mergeDuplicates(String canonicalId, Collection<String> duplicateIds) {
+        int merged = 0;
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement repoint = h.prepare("UPDATE playlist_songs SET track_id = ? WHERE track_id = ? " +
+                    "AND playlist_id NOT IN (SELECT playlist_id FROM playlist_songs WHERE track_id = ?)");
+            PreparedStatement leftovers = h.prepare("DELETE FROM playlist_songs WHERE track_id = ?");
+            PreparedStatement chained = h.prepare("UPDATE tracks SET duplicate_of = ? WHERE duplicate_of = ?");
+            PreparedStatement hide = h.prepare("UPDATE tracks SET duplicate_of = ? WHERE id = ? AND id <> ?");
+            for (String id : duplicateIds) {
+                repoint.setString(1, canonicalId);
+                repoint.setString(2, id);
+                repoint.setString(3, canonicalId);
+                repoint.executeUpdate(); // not batched: each one must see the previous re-points
+                leftovers.setString(1, id);
+                leftovers.executeUpdate();
+                chained.setString(1, canonicalId);
+                chained.setString(2, id);
+                chained.executeUpdate();
+                hide.setString(1, canonicalId);
+                hide.setString(2, id);
+                hide.setString(3, canonicalId);
+                merged += hide.executeUpdate();
+            }
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return 0;
+        }
+        return merged;
+    }
+
+    /** Merges every duplicate group into its first-imported track. Returns tracks hidden. */
+    public static int mergeAllDuplicates() {
+        int merged = 0;
+        for (DuplicateGroup g : getDuplicateGroups()) {
+            merged += mergeDuplicates(g.getCanonical().getId(), g.getDuplicateIds());
+        }
+        return merged;
+    }
+
+    private static Track readTrack(ResultSet rs) throws SQLException {
+        return new Track(
+                rs.getString("id"),
+                rs.getString("filepath"),
+                rs.getString("title"),
+                rs.getString("artist"),
+                rs.getString("album"),
+                rs.getLong("duration"),
+                rs.getInt("track_no"),
+                rs.getInt("year"),
+                rs.getString("genre"));
+    }
+
     // --- Playlist DAO Methods ---
 
     public static boolean checkPlaylistExists(String name) {
         String sql = "SELECT 1 FROM playlists WHERE name = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, name);
-            ResultSet rs = pstmt.executeQuery();
-            return rs.next();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -152,8 +978,8 @@ public class DatabaseManager {
 
     public static boolean createPlaylist(com.vibe.model.Playlist playlist) {
         String sql = "INSERT INTO playlists(id, name) VALUES(?,?)";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, playlist.getId());
             pstmt.setString(2, playlist.getName());
             pstmt.executeUpdate();
@@ -167,9 +993,8 @@ public class DatabaseManager {
     public static List<com.vibe.model.Playlist> getAllPlaylists() {
         List<com.vibe.model.Playlist> list = new ArrayList<>();
         String sql = "SELECT * FROM playlists";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                Statement stmt = conn.createStatement();
-                ResultSet rs = stmt.executeQuery(sql)) {
+        try (ConnectionPool.Handle h = reader();
+                ResultSet rs = h.prepare(sql).executeQuery()) {
             while (rs.next()) {
                 list.add(new com.vibe.model.Playlist(
                         rs.getString("id"),
@@ -181,35 +1006,105 @@ public class DatabaseManager {
         return list;
     }
 
+    /** Appends the track to the playlist; a song already in it stays where it is. */
     public static void addTrackToPlaylist(String playlistId, String trackId) {
-        String sql = "INSERT INTO playlist_songs(playlist_id, track_id) VALUES(?,?)";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String sql = "INSERT OR IGNORE INTO playlist_songs(playlist_id, track_id, position) " +
+                "SELECT ?, ?, ifnull(MAX(position), 0) + " + SchemaMigrations.POSITION_GAP + " " +
+                "FROM playlist_songs WHERE playlist_id = ?";
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, playlistId);
             pstmt.setString(2, trackId);
+            pstmt.setString(3, playlistId);
             pstmt.executeUpdate();
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Moves a song to just before {@code beforeTrackId} (to the end if that is null or not in
+     * the playlist). Only the moved row is rewritten: it takes a position between its new
+     * neighbours. The playlist is renumbered only once two neighbours have no gap left.
+     */
+    public static boolean moveTrackInPlaylist(String playlistId, String trackId, String beforeTrackId) {
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            Long position = freePosition(h, playlistId, trackId, beforeTrackId);
+            if (position == null) {
+                renumberPlaylist(h, playlistId);
+                position = freePosition(h, playlistId, trackId, beforeTrackId);
+            }
+            PreparedStatement move = h.prepare("UPDATE playlist_songs SET position = ? " +
+                    "WHERE playlist_id = ? AND track_id = ?");
+            move.setLong(1, position);
+            move.setString(2, playlistId);
+            move.setString(3, trackId);
+            int affected = move.executeUpdate();
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+            return affected > 0;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // A free position just before beforeTrackId (or at the end), not counting trackId's own row.
+    // Null if the song before it sits right next to it.
+    private static Long freePosition(ConnectionPool.Handle h, String playlistId, String trackId,
+            String beforeTrackId) throws SQLException {
+        Long next = null;
+        if (beforeTrackId != null) {
+            PreparedStatement find = h.prepare("SELECT position FROM playlist_songs " +
+                    "WHERE playlist_id = ? AND track_id = ?");
+            find.setString(1, playlistId);
+            find.setString(2, beforeTrackId);
+            try (ResultSet rs = find.executeQuery()) {
+                next = rs.next() ? rs.getLong(1) : null;
+            }
+        }
+        PreparedStatement prev = h.prepare("SELECT MAX(position) FROM playlist_songs " +
+                "WHERE playlist_id = ? AND position < ? AND track_id <> ?");
+        prev.setString(1, playlistId);
+        prev.setLong(2, next != null ? next : Long.MAX_VALUE);
+        prev.setString(3, trackId);
+        Long before;
+        try (ResultSet rs = prev.executeQuery()) {
+            before = rs.next() && rs.getObject(1) != null ? rs.getLong(1) : null; // MAX() of no rows is NULL
+        }
+        if (next == null) {
+            return (before != null ? before : 0) + SchemaMigrations.POSITION_GAP;
+        }
+        if (before == null) {
+            return next - SchemaMigrations.POSITION_GAP; // new first song; positions may go negative
+        }
+        return next - before >= 2 ? before + (next - before) / 2 : null;
+    }
+
+    // Spreads the playlist's positions POSITION_GAP apart again, keeping the order
+    private static void renumberPlaylist(ConnectionPool.Handle h, String playlistId) throws SQLException {
+        PreparedStatement renumber = h.prepare("UPDATE playlist_songs SET position = r.n * " +
+                SchemaMigrations.POSITION_GAP + " FROM (SELECT track_id, " +
+                "ROW_NUMBER() OVER (ORDER BY position, track_id) AS n FROM playlist_songs WHERE playlist_id = ?) r " +
+                "WHERE playlist_songs.playlist_id = ? AND playlist_songs.track_id = r.track_id");
+        renumber.setString(1, playlistId);
+        renumber.setString(2, playlistId);
+        renumber.executeUpdate();
+    }
+
     public static List<Track> getTracksForPlaylist(String playlistId) {
         List<Track> list = new ArrayList<>();
-        String sql = "SELECT t.* FROM tracks t " +
-                "JOIN playlist_songs ps ON t.id = ps.track_id " +
-                "WHERE ps.playlist_id = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        String sql = "SELECT t.* FROM playlist_songs ps " +
+                "JOIN tracks t ON t.id = ps.track_id " +
+                "WHERE ps.playlist_id = ? ORDER BY ps.position";
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, playlistId);
-            ResultSet rs = pstmt.executeQuery();
-            while (rs.next()) {
-                list.add(new Track(
-                        rs.getString("id"),
-                        rs.getString("filepath"),
-                        rs.getString("title"),
-                        rs.getString("artist"),
-                        rs.getString("album"),
-                        rs.getLong("duration")));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    list.add(readTrack(rs));
+                }
             }
         } catch (SQLException e) {
             e.printStackTrace();
@@ -217,19 +1112,64 @@ public class DatabaseManager {
         return list;
     }
 
+    /** Number of songs in each of the given playlists; playlists with none are left out. */
+    public static Map<String, Integer> getPlaylistSongCounts(Collection<String> playlistIds) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (playlistIds.isEmpty()) {
+            return counts;
+        }
+        // One statement for any number of ids (an IN list of ?s would be a new statement, cached, per count)
+        String sql = "SELECT s.playlist_id, COUNT(*) FROM json_each(?) j " +
+                "CROSS JOIN playlist_songs s ON s.playlist_id = j.value GROUP BY s.playlist_id";
+        try (ConnectionPool.Handle h = reader()) {
+            PreparedStatement pstmt = h.prepare(sql);
+            pstmt.setString(1, jsonStrings(playlistIds));
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getString(1), rs.getInt(2));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return counts;
+    }
+
+    // A JSON array of the strings, for json_each()
+    private static String jsonStrings(Collection<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String v : values) {
+            json.append(json.length() == 1 ? "\"" : ",\"");
+            for (int i = 0; i < v.length(); i++) {
+                char c = v.charAt(i);
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+            json.append('"');
+        }
+        return json.append(']').toString();
+    }
+
     public static boolean deletePlaylist(String playlistId) {
         String sql1 = "DELETE FROM playlist_songs WHERE playlist_id = ?";
         String sql2 = "DELETE FROM playlists WHERE id = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL)) {
-            try (PreparedStatement pstmt = conn.prepareStatement(sql1)) {
-                pstmt.setString(1, playlistId);
-                pstmt.executeUpdate();
-            }
-            try (PreparedStatement pstmt2 = conn.prepareStatement(sql2)) {
-                pstmt2.setString(1, playlistId);
-                int affected = pstmt2.executeUpdate();
-                return affected > 0;
-            }
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement pstmt = h.prepare(sql1);
+            pstmt.setString(1, playlistId);
+            pstmt.executeUpdate();
+
+            PreparedStatement pstmt2 = h.prepare(sql2);
+            pstmt2.setString(1, playlistId);
+            int affected = pstmt2.executeUpdate();
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+            return affected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
@@ -238,8 +1178,8 @@ public class DatabaseManager {
 
     public static boolean removeTrackFromPlaylist(String playlistId, String trackId) {
         String sql = "DELETE FROM playlist_songs WHERE playlist_id = ? AND track_id = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL);
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
+        try (ConnectionPool.Handle h = writer()) {
+            PreparedStatement pstmt = h.prepare(sql);
             pstmt.setString(1, playlistId);
             pstmt.setString(2, trackId);
             int affected = pstmt.executeUpdate();
@@ -254,16 +1194,27 @@ public class DatabaseManager {
         // First remove from all playlists
         String sql1 = "DELETE FROM playlist_songs WHERE track_id = ?";
         String sql2 = "DELETE FROM tracks WHERE id = ?";
-        try (Connection conn = DriverManager.getConnection(OB_URL)) {
-            try (PreparedStatement pstmt = conn.prepareStatement(sql1)) {
-                pstmt.setString(1, trackId);
-                pstmt.executeUpdate();
-            }
-            try (PreparedStatement pstmt2 = conn.prepareStatement(sql2)) {
-                pstmt2.setString(1, trackId);
-                int affected = pstmt2.executeUpdate();
-                return affected > 0;
-            }
+        try (ConnectionPool.Handle h = writer()) {
+            h.connection().setAutoCommit(false);
+            PreparedStatement pstmt = h.prepare(sql1);
+            pstmt.setString(1, trackId);
+            pstmt.executeUpdate();
+
+            // Duplicates merged into this track become regular tracks again
+            PreparedStatement orphans = h.prepare("UPDATE tracks SET duplicate_of = NULL WHERE duplicate_of = ?");
+            orphans.setString(1, trackId);
+            orphans.executeUpdate();
+
+            PreparedStatement stats = h.prepare("DELETE FROM track_stats WHERE track_id = ?");
+            stats.setString(1, trackId);
+            stats.executeUpdate();
+
+            PreparedStatement pstmt2 = h.prepare(sql2);
+            pstmt2.setString(1, trackId);
+            int affected = pstmt2.executeUpdate();
+            h.connection().commit();
+            h.connection().setAutoCommit(true);
+            return affected > 0;
         } catch (SQLException e) {
             e.printStackTrace();
             return false;
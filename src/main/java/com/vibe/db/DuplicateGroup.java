@@ -0,0 +1,37 @@
+package com.vibe.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.vibe.model.Track;
+
+// Tracks whose audio payload hashes are identical (same recording, possibly different tags or paths).
+// The first track is the one imported earliest and is used as the canonical copy when merging.
+public class DuplicateGroup {
+    private final String contentHash;
+    private final List<Track> tracks;
+
+    public DuplicateGroup(String contentHash, List<Track> tracks) {
+        this.contentHash = contentHash;
+        this.tracks = Collections.unmodifiableList(tracks);
+    }
+
+    public String getContentHash() { return contentHash; }
+    public List<Track> getTracks() { return tracks; }
+    public Track getCanonical() { return tracks.get(0); }
+
+    /** Ids of every track but the canonical one. */
+    public List<String> getDuplicateIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 1; i < tracks.size(); i++) {
+            ids.add(tracks.get(i).getId());
+        }
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        return tracks.size() + " copies of " + getCanonical().getTitle();
+    }
+}
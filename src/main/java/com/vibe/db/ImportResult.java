@@ -0,0 +1,22 @@
+package com.vibe.db;
+
+// Row counts reported by a bulk import.
+// "skipped" are rows rejected by INSERT OR IGNORE because the filepath already exists.
+public class ImportResult {
+    private final long inserted;
+    private final long skipped;
+
+    public ImportResult(long inserted, long skipped) {
+        this.inserted = inserted;
+        this.skipped = skipped;
+    }
+
+    public long getInserted() { return inserted; }
+    public long getSkipped() { return skipped; }
+    public long getTotal() { return inserted + skipped; }
+
+    @Override
+    public String toString() {
+        return inserted + " inserted, " + skipped + " skipped";
+    }
+}
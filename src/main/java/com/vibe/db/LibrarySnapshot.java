@@ -0,0 +1,430 @@
+package com.vibe.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import com.vibe.model.Track;
+
+// A read-only copy of the visible library in insertion order, in one memory-mapped file,
+// so the library table can show rows at startup without waiting on SQLite.
+// The file is columnar: UUID halves and small ints (folder, artist, album and genre codes,
+// duration, track number, year) in fixed-width arrays, and titles, file names and any
+// non-UUID ids in a UTF-8 heap. Artists, albums, genres and folders are dictionaries
+// stored once; entries and rows are decoded only when asked for, so opening is instant.
+// Each file records the library version it was taken at (see SchemaMigrations, version 3)
+// and is only trusted while the database still has that version. New snapshots are taken
+// in the background under a new generation number, since a file that is mapped cannot be
+// replaced on every platform; older generations are deleted once they can be.
+// Directory: -Dvibe.snapshot.dir (default "snapshot").
+public final class LibrarySnapshot {
+    static final int MAGIC = 0x564C5331; // "VLS1"
+    static final int FORMAT = 1;
+    static final String PREFIX = "library-";
+    static final String SUFFIX = ".snap";
+
+    // Dictionaries, and the int columns that hold their codes
+    static final int DIRECTORY = 0, ARTIST = 1, ALBUM = 2, GENRE = 3;
+    static final int DICTIONARIES = 4;
+    // Further int columns
+    static final int DURATION = 4, TRACK_NO = 5, YEAR = 6;
+    static final int INT_COLUMNS = 7;
+    // Heap strings per row
+    static final int RAW_ID = 0, TITLE = 1, FILE_NAME = 2;
+    static final int STRINGS = 3;
+
+    private static LibrarySnapshot current; // guarded by the class
+    private static boolean loaded; // guarded by the class
+    private static Thread rebuilder; // guarded by the class
+    private static boolean rebuildAgain; // guarded by the class
+
+    private final ByteBuffer buf;
+    private final int generation;
+    private final long version;
+    private final int rows;
+    private final int[] dictionaryAt = new int[DICTIONARIES]; // offsets of each dictionary's entries
+    private final String[][] dictionaries = new String[DICTIONARIES][]; // entries decoded so far
+    private final int idsAt;
+    private final int columnsAt;
+    private final int startsAt;
+    private final int lengthsAt;
+    private final int heapAt;
+
+    private LibrarySnapshot(ByteBuffer buf, int generation) throws IOException {
+        this.buf = buf;
+        this.generation = generation;
+        if (buf.capacity() < 20 || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT) {
+            throw new IOException("not a library snapshot");
+        }
+        version = buf.getLong(8);
+        rows = buf.getInt(16);
+        int at = 20;
+        for (int d = 0; d < DICTIONARIES; d++) {
+            int n = buf.getInt(at);
+            dictionaryAt[d] = at + 4;
+            dictionaries[d] = new String[n];
+            at += 4 + 4 * (n + 1);
+            at += buf.getInt(at - 4); // past the bytes
+        }
+        idsAt = at;
+        columnsAt = idsAt + 16 * rows;
+        startsAt = columnsAt + 4 * INT_COLUMNS * rows;
+        lengthsAt = startsAt + 4 * STRINGS * rows;
+        heapAt = lengthsAt + 4 * STRINGS * rows;
+        if (rows < 0 || heapAt > buf.capacity()) {
+            throw new IOException("truncated library snapshot");
+        }
+    }
+
+    private static LibrarySnapshot open(Path file, int generation) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new LibrarySnapshot(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()), generation);
+        }
+    }
+
+    /** Library version this snapshot was taken at. */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return rows;
+    }
+
+    /** The visible track at {@code index} in insertion order, as of {@link #getVersion()}. */
+    public Track get(int index) {
+        Objects.checkIndex(index, rows);
+        String id = string(index, RAW_ID);
+        if (id == null) {
+            id = new UUID(buf.getLong(idsAt + 16 * index), buf.getLong(idsAt + 16 * index + 8)).toString();
+        }
+        String name = string(index, FILE_NAME);
+        String dir = lookup(DIRECTORY, index);
+        return new Track(id, dir == null ? name : dir + name, string(index, TITLE),
+                lookup(ARTIST, index), lookup(ALBUM, index), column(DURATION, index),
+                column(TRACK_NO, index), column(YEAR, index), lookup(GENRE, index));
+    }
+
+    private int column(int c, int index) {
+        return buf.getInt(columnsAt + 4 * (c * rows + index));
+    }
+
+    private String lookup(int d, int index) {
+        int code = column(d, index);
+        if (code < 0) {
+            return null;
+        }
+        // Decoded on first use; a race only decodes an entry twice
+        String value = dictionaries[d][code];
+        if (value == null) {
+            int offsets = dictionaryAt[d];
+            int bytesAt = offsets + 4 * (dictionaries[d].length + 1);
+            int start = buf.getInt(offsets + 4 * code);
+            value = decode(bytesAt + start, buf.getInt(offsets + 4 * code + 4) - start);
+            dictionaries[d][code] = value;
+        }
+        return value;
+    }
+
+    private String string(int index, int s) {
+        int k = STRINGS * index + s;
+        int len = buf.getInt(lengthsAt + 4 * k);
+        return len < 0 ? null : decode(heapAt + buf.getInt(startsAt + 4 * k), len);
+    }
+
+    private String decode(int at, int len) {
+        byte[] b = new byte[len];
+        buf.get(at, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // --- The current snapshot ---
+
+    static Path directory() {
+        return Path.of(System.getProperty("vibe.snapshot.dir", "snapshot"));
+    }
+
+    /** The newest readable snapshot on disk, mapped on first use; null if there is none. */
+    public static synchronized LibrarySnapshot current() {
+        if (!loaded) {
+            loaded = true;
+            current = loadNewest(directory());
+        }
+        return current;
+    }
+
+    /**
+     * Takes a new snapshot in the background unless the current one was taken at
+     * {@code liveVersion}. Calls while one is being taken are folded into one more.
+     */
+    public static synchronized void rebuildIfStale(long liveVersion) {
+        LibrarySnapshot s = current();
+        if (liveVersion < 0 || (s != null && s.version == liveVersion)) {
+            return;
+        }
+        if (rebuilder != null) {
+            rebuildAgain = true;
+            return;
+        }
+        rebuilder = new Thread(LibrarySnapshot::rebuild, "library-snapshot");
+        rebuilder.setDaemon(true);
+        rebuilder.setPriority(Thread.MIN_PRIORITY);
+        rebuilder.start();
+    }
+
+    private static void rebuild() {
+        try {
+            while (true) {
+                LibrarySnapshot s = current();
+                if (s == null || s.version != DatabaseManager.getLibraryVersion()) {
+                    s = take(directory(), s == null ? 0 : s.generation + 1);
+                }
+                synchronized (LibrarySnapshot.class) {
+                    if (s != null) {
+                        current = s;
+                    }
+                    if (!rebuildAgain) {
+                        return;
+                    }
+                    rebuildAgain = false;
+                }
+            }
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (LibrarySnapshot.class) {
+                rebuilder = null;
+            }
+        }
+    }
+
+    private static LibrarySnapshot take(Path dir, int generation) {
+        Writer w = DatabaseManager.readLibrarySnapshot();
+        if (w == null) {
+            return null;
+        }
+        Path tmp = dir.resolve(PREFIX + generation + ".tmp");
+        Path file = dir.resolve(PREFIX + generation + SUFFIX);
+        try {
+            Files.createDirectories(dir);
+            w.writeTo(tmp);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LibrarySnapshot s = open(file, generation);
+            deleteOthers(dir, generation);
+            return s;
+        } catch (IOException e) {
+            System.err.println("Could not write library snapshot: " + e.getMessage());
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+    }
+
+    static LibrarySnapshot loadNewest(Path dir) {
+        List<Integer> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path f : files) {
+                int g = generationOf(f);
+                if (g >= 0) {
+                    generations.add(g);
+                }
+            }
+        } catch (IOException e) {
+            return null; // no snapshot yet
+        }
+        generations.sort((a, b) -> Integer.compare(b, a));
+        for (int g : generations) {
+            try {
+                LibrarySnapshot s = open(dir.resolve(PREFIX + g + SUFFIX), g);
+                deleteOthers(dir, g);
+                return s;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring library snapshot " + g + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    // Best effort: a file still mapped by this process cannot be deleted everywhere, so it is retried next time
+    private static void deleteOthers(Path dir, int keep) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for (Path f : files) {
+                if (generationOf(f) != keep) {
+                    try {
+                        Files.deleteIfExists(f);
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static int generationOf(Path f) {
+        String name = f.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Collects rows for a new snapshot, column by column, then writes the file in one pass.
+    // The file is read through one mapped buffer with int offsets, so it must stay under
+    // MAX_SIZE; a library that does not fit gets no snapshot (and is paged by SQL instead).
+    static final class Writer {
+        static final int MAX_SIZE = Integer.MAX_VALUE - 8; // also the largest array the heap can be
+        private final long version;
+        private int rows;
+        private long[] ids = new long[2 * 1024];
+        private int[][] columns = new int[INT_COLUMNS][1024];
+        private int[] starts = new int[STRINGS * 1024];
+        private int[] lengths = new int[STRINGS * 1024];
+        private byte[] heap = new byte[1 << 16];
+        private int heapSize;
+        private boolean tooLarge; // the strings went past MAX_SIZE: nothing can be written
+        private final List<Map<String, Integer>> codes = new ArrayList<>();
+        private final List<List<String>> values = new ArrayList<>();
+
+        Writer(long version) {
+            this.version = version;
+            for (int d = 0; d < DICTIONARIES; d++) {
+                codes.add(new HashMap<>());
+                values.add(new ArrayList<>());
+            }
+        }
+
+        void add(String id, String filepath, String title, String artist, String album, long duration,
+                int trackNumber, int year, String genre) {
+            if (rows == columns[0].length) {
+                int n = rows * 2;
+                ids = Arrays.copyOf(ids, 2 * n);
+                for (int c = 0; c < INT_COLUMNS; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], n);
+                }
+                starts = Arrays.copyOf(starts, STRINGS * n);
+                lengths = Arrays.copyOf(lengths, STRINGS * n);
+            }
+            long[] uuid = Track.parseUuid(id);
+            ids[2 * rows] = uuid != null ? uuid[0] : 0;
+            ids[2 * rows + 1] = uuid != null ? uuid[1] : 0;
+            putString(RAW_ID, uuid != null ? null : id);
+
+            int slash = filepath == null ? -1 : Math.max(filepath.lastIndexOf('/'), filepath.lastIndexOf('\\'));
+            columns[DIRECTORY][rows] = slash < 0 ? -1 : code(DIRECTORY, filepath.substring(0, slash + 1));
+            putString(FILE_NAME, slash < 0 ? filepath : filepath.substring(slash + 1));
+            putString(TITLE, title);
+            columns[ARTIST][rows] = code(ARTIST, artist);
+            columns[ALBUM][rows] = code(ALBUM, album);
+            columns[GENRE][rows] = code(GENRE, genre);
+            columns[DURATION][rows] = (int) Math.min(Integer.MAX_VALUE, duration);
+            columns[TRACK_NO][rows] = trackNumber;
+            columns[YEAR][rows] = year;
+            rows++;
+        }
+
+        private int code(int d, String s) {
+            if (s == null) {
+                return -1;
+            }
+            return codes.get(d).computeIfAbsent(s, k -> {
+                values.get(d).add(k);
+                return values.get(d).size() - 1;
+            });
+        }
+
+        private void putString(int s, String value) {
+            int k = STRINGS * rows + s;
+            if (value == null) {
+                starts[k] = 0;
+                lengths[k] = -1;
+                return;
+            }
+            byte[] b = value.getBytes(StandardCharsets.UTF_8);
+            if (tooLarge || (long) heapSize + b.length > MAX_SIZE) {
+                tooLarge = true;
+                return;
+            }
+            if (heapSize + b.length > heap.length) {
+                heap = Arrays.copyOf(heap, (int) Math.min(MAX_SIZE, Math.max(2L * heap.length, heapSize + b.length)));
+            }
+            System.arraycopy(b, 0, heap, heapSize, b.length);
+            starts[k] = heapSize;
+            lengths[k] = b.length;
+            heapSize += b.length;
+        }
+
+        void writeTo(Path file) throws IOException {
+            // Sized up front, in longs: once the whole file fits, no int offset in it can overflow
+            List<List<byte[]>> dictionaries = new ArrayList<>();
+            long size = 20 + (16L + 4L * INT_COLUMNS + 8L * STRINGS) * rows + heapSize;
+            for (int d = 0; d < DICTIONARIES; d++) {
+                List<byte[]> encoded = new ArrayList<>();
+                for (String v : values.get(d)) {
+                    byte[] b = v.getBytes(StandardCharsets.UTF_8);
+                    encoded.add(b);
+                    size += 4 + b.length;
+                }
+                size += 8;
+                dictionaries.add(encoded);
+            }
+            if (tooLarge || size > MAX_SIZE) {
+                throw new IOException("library too large for a snapshot (over 2 GiB)");
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(version);
+                out.writeInt(rows);
+                for (List<byte[]> encoded : dictionaries) {
+                    out.writeInt(encoded.size());
+                    int offset = 0;
+                    out.writeInt(offset);
+                    for (byte[] b : encoded) {
+                        offset += b.length;
+                        out.writeInt(offset);
+                    }
+                    for (byte[] b : encoded) {
+                        out.write(b);
+                    }
+                }
+                for (int i = 0; i < 2 * rows; i++) {
+                    out.writeLong(ids[i]);
+                }
+                for (int c = 0; c < INT_COLUMNS; c++) {
+                    for (int i = 0; i < rows; i++) {
+                        out.writeInt(columns[c][i]);
+                    }
+                }
+                for (int i = 0; i < STRINGS * rows; i++) {
+                    out.writeInt(starts[i]);
+                }
+                for (int i = 0; i < STRINGS * rows; i++) {
+                    out.writeInt(lengths[i]);
+                }
+                out.write(heap, 0, heapSize);
+            }
+        }
+    }
+}
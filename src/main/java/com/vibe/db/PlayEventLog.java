@@ -0,0 +1,169 @@
+package com.vibe.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.vibe.model.PlayEvent;
+
+// Write-behind listening history.
+// record() only enqueues, so the FX thread never touches SQLite; a background thread
+// drains the queue every flush interval (or sooner once a batch has built up) and
+// writes the raw events plus the per-track counters in one transaction. Counters
+// are pre-aggregated per batch, so a batch costs one upsert per distinct track.
+// If the writer falls far behind, new events are dropped and counted rather than
+// blocking playback.
+public class PlayEventLog implements AutoCloseable {
+    static final String INSERT_EVENT_SQL =
+            "INSERT INTO play_events(track_id, type, position, played_at) VALUES(?,?,?,?)";
+    static final String UPSERT_STATS_SQL =
+            "INSERT INTO track_stats(track_id, plays, completions, skips, last_played, seconds_played) " +
+                    "VALUES(?,?,?,?,?,?) ON CONFLICT(track_id) DO UPDATE SET " +
+                    "plays = plays + excluded.plays, " +
+                    "completions = completions + excluded.completions, " +
+                    "skips = skips + excluded.skips, " +
+                    "last_played = MAX(last_played, excluded.last_played), " +
+                    "seconds_played = seconds_played + excluded.seconds_played";
+
+    private static final PlayEvent POISON = new PlayEvent(null, null, 0, 0);
+
+    private final ConnectionPool pool;
+    private final long flushMillis;
+    private final int batchSize;
+    private final BlockingQueue<PlayEvent> queue;
+    private final Thread thread;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    PlayEventLog(ConnectionPool pool, int capacity, long flushMillis, int batchSize) {
+        this.pool = pool;
+        this.flushMillis = Math.max(1, flushMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.thread = new Thread(this::run, "play-event-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /** Queues an event; never blocks. */
+    public void record(PlayEvent event) {
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getWritten() { return written.get(); }
+    public long getDropped() { return dropped.get(); }
+    public int getPending() { return queue.size(); }
+
+    private void run() {
+        List<PlayEvent> batch = new ArrayList<>(batchSize);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushMillis);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    PlayEvent e = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (e == null) {
+                        break;
+                    }
+                    if (e == POISON) {
+                        closing = true;
+                        break;
+                    }
+                    batch.add(e);
+                }
+            } catch (InterruptedException e) {
+                closing = true;
+            }
+            if (closing) {
+                // Drain what is left; anything queued after close() is lost
+                for (PlayEvent e; (e = queue.poll()) != null;) {
+                    if (e != POISON) {
+                        batch.add(e);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    write(batch);
+                    written.addAndGet(batch.size());
+                } catch (SQLException e) {
+                    System.err.println("Dropping " + batch.size() + " play events: " + e.getMessage());
+                    dropped.addAndGet(batch.size());
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PlayEvent> batch) throws SQLException {
+        // Fold the batch into one counter row per track
+        Map<String, long[]> counts = new HashMap<>(); // plays, completions, skips, lastPlayed
+        Map<String, Double> seconds = new HashMap<>();
+        for (PlayEvent e : batch) {
+            long[] c = counts.computeIfAbsent(e.getTrackId(), k -> new long[4]);
+            switch (e.getType()) {
+                case STARTED -> c[0]++;
+                case COMPLETED -> c[1]++;
+                case SKIPPED -> c[2]++;
+            }
+            c[3] = Math.max(c[3], e.getTimestamp());
+            if (e.getType() != PlayEvent.Type.STARTED) {
+                seconds.merge(e.getTrackId(), e.getPosition(), Double::sum);
+            }
+        }
+
+        try (ConnectionPool.Handle h = pool.writer()) {
+            Connection conn = h.connection();
+            conn.setAutoCommit(false);
+            PreparedStatement events = h.prepare(INSERT_EVENT_SQL);
+            for (PlayEvent e : batch) {
+                events.setString(1, e.getTrackId());
+                events.setString(2, e.getType().name());
+                events.setDouble(3, e.getPosition());
+                events.setLong(4, e.getTimestamp());
+                events.addBatch();
+            }
+            events.executeBatch();
+
+            PreparedStatement stats = h.prepare(UPSERT_STATS_SQL);
+            for (Map.Entry<String, long[]> entry : counts.entrySet()) {
+                long[] c = entry.getValue();
+                stats.setString(1, entry.getKey());
+                stats.setLong(2, c[0]);
+                stats.setLong(3, c[1]);
+                stats.setLong(4, c[2]);
+                stats.setLong(5, c[3]);
+                stats.setDouble(6, seconds.getOrDefault(entry.getKey(), 0.0));
+                stats.addBatch();
+            }
+            stats.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /** Writes everything queued so far and stops the writer thread. */
+    @Override
+    public void close() {
+        while (!queue.offer(POISON)) {
+            queue.poll(); // full: give up the oldest event rather than hang on exit
+            dropped.incrementAndGet();
+        }
+        try {
+            thread.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
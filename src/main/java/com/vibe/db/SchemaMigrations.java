@@ -0,0 +1,303 @@
+package com.vibe.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Versioned schema changes, applied in order by DatabaseManager.initialize().
+// The version is kept in PRAGMA user_version. Each migration commits together with its
+// version bump, so one that fails is rolled back and retried whole on the next start.
+// Version 1 is the schema as it stood before versioning; older databases can have any
+// part of it, so its steps are idempotent. Later migrations can rely on what came before:
+// add a new one to the end of MIGRATIONS, never edit one that has shipped.
+final class SchemaMigrations {
+
+    interface Migration {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    /** Gap between consecutive playlist positions, so a song can be moved between two without renumbering. */
+    static final long POSITION_GAP = 1 << 16;
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            SchemaMigrations::baseline,
+            SchemaMigrations::orderedPlaylistSongs,
+            SchemaMigrations::libraryVersion,
+            SchemaMigrations::albumGainByFolder,
+            SchemaMigrations::stableRowids);
+
+    private SchemaMigrations() {
+    }
+
+    static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /** Brings the database on {@code conn} up to the latest version. */
+    static void migrate(Connection conn) throws SQLException {
+        int version;
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version > latestVersion()) {
+            System.err.println("Database schema version " + version + " is newer than this build ("
+                    + latestVersion() + "); leaving it as is");
+            return;
+        }
+        for (int v = version + 1; v <= latestVersion(); v++) {
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                MIGRATIONS.get(v - 1).apply(stmt);
+                stmt.execute("PRAGMA user_version = " + v);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration to version " + v + " failed", e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // --- 1: everything up to versioning ---
+
+    private static void baseline(Statement stmt) throws SQLException {
+        // Users
+        stmt.execute("CREATE TABLE IF NOT EXISTS users (" +
+                "id TEXT PRIMARY KEY, " +
+                "username TEXT UNIQUE, " +
+                "password TEXT)");
+
+        // Tracks
+        stmt.execute("CREATE TABLE IF NOT EXISTS tracks (" +
+                "id TEXT PRIMARY KEY, " +
+                "filepath TEXT UNIQUE, " +
+                "title TEXT, " +
+                "artist TEXT, " +
+                "album TEXT, " +
+                "duration INTEGER)");
+
+        // Playlists
+        stmt.execute("CREATE TABLE IF NOT EXISTS playlists (" +
+                "id TEXT PRIMARY KEY, " +
+                "name TEXT UNIQUE)");
+
+        // Playlist Songs
+        stmt.execute("CREATE TABLE IF NOT EXISTS playlist_songs (" +
+                "playlist_id TEXT, " +
+                "track_id TEXT, " +
+                "FOREIGN KEY(playlist_id) REFERENCES playlists(id), " +
+                "FOREIGN KEY(track_id) REFERENCES tracks(id))");
+
+        // Folders the user imported, rescanned by incremental sync
+        stmt.execute("CREATE TABLE IF NOT EXISTS library_roots (" +
+                "path TEXT PRIMARY KEY)");
+
+        // On-disk state of each track, for incremental rescans
+        ensureColumn(stmt, "tracks", "file_size", "INTEGER");
+        ensureColumn(stmt, "tracks", "file_mtime", "INTEGER");
+        ensureColumn(stmt, "tracks", "fingerprint", "INTEGER");
+
+        // Tag fields beyond title/artist/album
+        ensureColumn(stmt, "tracks", "track_no", "INTEGER DEFAULT 0");
+        ensureColumn(stmt, "tracks", "year", "INTEGER DEFAULT 0");
+        ensureColumn(stmt, "tracks", "genre", "TEXT");
+
+        // Duplicate detection: audio payload hash, and the canonical track a duplicate was merged into
+        ensureColumn(stmt, "tracks", "content_hash", "TEXT");
+        ensureColumn(stmt, "tracks", "duplicate_of", "TEXT");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tracks_content_hash ON tracks(content_hash)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tracks_duplicate_of ON tracks(duplicate_of)");
+
+        // Loudness analysis; loudness_blocks stays NULL until a track has been analysed
+        ensureColumn(stmt, "tracks", "loudness", "REAL");
+        ensureColumn(stmt, "tracks", "loudness_blocks", "INTEGER");
+        ensureColumn(stmt, "tracks", "peak", "REAL");
+        ensureColumn(stmt, "tracks", "track_gain", "REAL");
+        ensureColumn(stmt, "tracks", "album_gain", "REAL");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tracks_loudness_pending ON tracks(id) " +
+                "WHERE loudness_blocks IS NULL");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_tracks_album ON tracks(album)");
+
+        createSearchIndex(stmt);
+
+        // Keyset paging of the visible library in each sortable order
+        for (String index : TrackOrder.indexDefinitions()) {
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + index);
+        }
+
+        // Listening history: raw events, plus counters kept up to date by the same writer
+        stmt.execute("CREATE TABLE IF NOT EXISTS play_events (" +
+                "id INTEGER PRIMARY KEY, " +
+                "track_id TEXT, " +
+                "type TEXT, " +
+                "position REAL, " +
+                "played_at INTEGER)");
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_play_events_track ON play_events(track_id, played_at)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS track_stats (" +
+                "track_id TEXT PRIMARY KEY, " +
+                "plays INTEGER DEFAULT 0, " +
+                "completions INTEGER DEFAULT 0, " +
+                "skips INTEGER DEFAULT 0, " +
+                "last_played INTEGER DEFAULT 0, " +
+                "seconds_played REAL DEFAULT 0)");
+    }
+
+    // Full-text index over title, artist, album and file name, keyed by the tracks rowid.
+    // Triggers keep it in step with every insert, update and delete on tracks; an index
+    // created for an existing library is filled from it once.
+    private static void createSearchIndex(Statement stmt) throws SQLException {
+        boolean exists;
+        try (ResultSet rs = stmt.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'tracks_fts'")) {
+            exists = rs.next();
+        }
+        stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS tracks_fts USING fts5(" +
+                "title, artist, album, filename, " +
+                "tokenize = 'unicode61 remove_diacritics 2')");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tracks_fts_insert AFTER INSERT ON tracks BEGIN " +
+                "INSERT INTO tracks_fts(rowid, title, artist, album, filename) " +
+                "VALUES (new.rowid, new.title, new.artist, new.album, " + fileName("new.filepath") + "); END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tracks_fts_delete AFTER DELETE ON tracks BEGIN " +
+                "DELETE FROM tracks_fts WHERE rowid = old.rowid; END");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS tracks_fts_update " +
+                "AFTER UPDATE OF title, artist, album, filepath ON tracks BEGIN " +
+                "UPDATE tracks_fts SET title = new.title, artist = new.artist, album = new.album, " +
+                "filename = " + fileName("new.filepath") + " WHERE rowid = old.rowid; END");
+        if (!exists) {
+            stmt.execute("INSERT INTO tracks_fts(rowid, title, artist, album, filename) " +
+                    "SELECT rowid, title, artist, album, " + fileName("filepath") + " FROM tracks");
+        }
+    }
+
+    // SQL for the last path segment of `path` (either separator): strip everything up to the last slash
+    private static String fileName(String path) {
+        String p = "replace(" + path + ", '\\', '/')";
+        return "replace(" + p + ", rtrim(" + p + ", replace(" + p + ", '/', '')), '')";
+    }
+
+    // SQLite has no ADD COLUMN IF NOT EXISTS
+    private static void ensureColumn(Statement stmt, String table, String column, String type) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return;
+                }
+            }
+        }
+        stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+    }
+
+    // --- 2: ordered, keyed playlist entries ---
+
+    // playlist_songs had no key, no index and no order: listing or editing a playlist, and
+    // deleting a track, scanned the whole table. Rebuilt as a clustered table keyed by
+    // (playlist, track), with positions POSITION_GAP apart in the order songs were added.
+    // A song was only ever meant to be in a playlist once; stray repeats keep their first slot.
+    private static void orderedPlaylistSongs(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE playlist_songs_v2 (" +
+                "playlist_id TEXT NOT NULL REFERENCES playlists(id), " +
+                "track_id TEXT NOT NULL REFERENCES tracks(id), " +
+                "position INTEGER NOT NULL, " +
+                "PRIMARY KEY (playlist_id, track_id)) WITHOUT ROWID");
+        stmt.execute("INSERT INTO playlist_songs_v2(playlist_id, track_id, position) " +
+                "SELECT playlist_id, track_id, " +
+                POSITION_GAP + " * ROW_NUMBER() OVER (PARTITION BY playlist_id ORDER BY MIN(rowid)) " +
+                "FROM playlist_songs WHERE playlist_id IS NOT NULL AND track_id IS NOT NULL " +
+                "GROUP BY playlist_id, track_id");
+        stmt.execute("DROP TABLE playlist_songs");
+        stmt.execute("ALTER TABLE playlist_songs_v2 RENAME TO playlist_songs");
+        // Index entries carry the key, so both indexes cover their queries
+        stmt.execute("CREATE INDEX idx_playlist_songs_order ON playlist_songs(playlist_id, position)");
+        stmt.execute("CREATE INDEX idx_playlist_songs_track ON playlist_songs(track_id)");
+    }
+
+    // --- 3: a version stamp for the library ---
+
+    // Bumped by triggers on every change to what the library table shows, so a copy taken
+    // at some version (LibrarySnapshot) can tell whether it is still accurate. It starts at
+    // a random value, so a copy never matches a recreated database by accident.
+    private static void libraryVersion(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE library_meta (" +
+                "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                "version INTEGER NOT NULL)");
+        stmt.execute("INSERT INTO library_meta(id, version) VALUES (1, abs(random() / 4))");
+        String bump = " ON tracks BEGIN UPDATE library_meta SET version = version + 1; END";
+        stmt.execute("CREATE TRIGGER library_version_insert AFTER INSERT" + bump);
+        stmt.execute("CREATE TRIGGER library_version_delete AFTER DELETE" + bump);
+        stmt.execute("CREATE TRIGGER library_version_update AFTER UPDATE OF " +
+                "id, filepath, title, artist, album, duration, track_no, year, genre, duplicate_of" + bump);
+    }
+
+    // --- 4: album gain per folder, undecodable files left unanalysed ---
+
+    /** Analysed tracks on a real album whose album gain has not been computed. */
+    static final String ALBUM_GAIN_PENDING = "album_gain IS NULL AND loudness_blocks > 0 " +
+            "AND trim(album) NOT IN ('', 'Unknown Album')";
+
+    // Album gain was computed over every track sharing an album title, so each "Greatest Hits"
+    // in the library got one gain; it is now per album title within a folder, recomputed from
+    // scratch. Files javax.sound could not decode were stored as analysed with no blocks and
+    // never retried; they are unanalysed again, so a decoder installed later picks them up.
+    private static void albumGainByFolder(Statement stmt) throws SQLException {
+        stmt.execute("UPDATE tracks SET album_gain = NULL");
+        stmt.execute("UPDATE tracks SET loudness = NULL, loudness_blocks = NULL, peak = NULL, track_gain = NULL " +
+                "WHERE loudness_blocks = 0");
+        stmt.execute("CREATE INDEX idx_tracks_album_gain_pending ON tracks(id) WHERE " + ALBUM_GAIN_PENDING);
+    }
+
+    // --- 5: rowids that survive VACUUM ---
+
+    // tracks was keyed by its TEXT id, so its rowids were implicit, and VACUUM may renumber
+    // those. The search index, the library snapshot and the multi-column sort all refer to
+    // tracks by rowid. Rebuilt with an explicit INTEGER PRIMARY KEY (an alias of the rowid,
+    // which VACUUM keeps) holding the same numbers, so none of them has to be rebuilt.
+    // Dropping the old table drops its indexes and triggers; they are created again.
+    private static void stableRowids(Statement stmt) throws SQLException {
+        String columns = "id, filepath, title, artist, album, duration, file_size, file_mtime, fingerprint, " +
+                "track_no, year, genre, content_hash, duplicate_of, " +
+                "loudness, loudness_blocks, peak, track_gain, album_gain";
+        stmt.execute("CREATE TABLE tracks_v5 (" +
+                "id TEXT UNIQUE, " +
+                "filepath TEXT UNIQUE, " +
+                "title TEXT, " +
+                "artist TEXT, " +
+                "album TEXT, " +
+                "duration INTEGER, " +
+                "file_size INTEGER, " +
+                "file_mtime INTEGER, " +
+                "fingerprint INTEGER, " +
+                "track_no INTEGER DEFAULT 0, " +
+                "year INTEGER DEFAULT 0, " +
+                "genre TEXT, " +
+                "content_hash TEXT, " +
+                "duplicate_of TEXT, " +
+                "loudness REAL, " +
+                "loudness_blocks INTEGER, " +
+                "peak REAL, " +
+                "track_gain REAL, " +
+                "album_gain REAL, " +
+                "seq INTEGER PRIMARY KEY)");
+        stmt.execute("INSERT INTO tracks_v5(" + columns + ", seq) SELECT " + columns + ", rowid FROM tracks");
+        stmt.execute("DROP TABLE tracks");
+        stmt.execute("ALTER TABLE tracks_v5 RENAME TO tracks");
+
+        stmt.execute("CREATE INDEX idx_tracks_content_hash ON tracks(content_hash)");
+        stmt.execute("CREATE INDEX idx_tracks_duplicate_of ON tracks(duplicate_of)");
+        stmt.execute("CREATE INDEX idx_tracks_loudness_pending ON tracks(id) WHERE loudness_blocks IS NULL");
+        stmt.execute("CREATE INDEX idx_tracks_album ON tracks(album)");
+        stmt.execute("CREATE INDEX idx_tracks_album_gain_pending ON tracks(id) WHERE " + ALBUM_GAIN_PENDING);
+        for (String index : TrackOrder.indexDefinitions()) {
+            stmt.execute("CREATE INDEX " + index);
+        }
+        createSearchIndex(stmt); // the index itself is kept; this restores its triggers
+        String bump = " ON tracks BEGIN UPDATE library_meta SET version = version + 1; END";
+        stmt.execute("CREATE TRIGGER library_version_insert AFTER INSERT" + bump);
+        stmt.execute("CREATE TRIGGER library_version_delete AFTER DELETE" + bump);
+        stmt.execute("CREATE TRIGGER library_version_update AFTER UPDATE OF " +
+                "id, filepath, title, artist, album, duration, track_no, year, genre, duplicate_of" + bump);
+    }
+}
@@ -0,0 +1,202 @@
+package com.vibe.db;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vibe.model.Track;
+
+// The visible library sorted by several columns at once, which no single index can page.
+// Built off the FX thread from one read of the sort columns. Each column becomes an int
+// collation key per row: its value's rank among the column's distinct values, ordered as
+// the SQL page indexes order them (text case-folded like NOCASE, then by code point), so
+// comparing two rows is comparing ints. Columns are folded in one at a time by
+// parallel-sorting packed (keys so far, next key) longs into dense ranks; a last sort
+// with the row's insertion index breaks ties, so rows equal on every column keep
+// insertion order. What is kept is the rowids in order, for reading pages by position,
+// and each row's position in rowid order, for finding a track without a scan.
+public final class SortedLibrary {
+    private final List<TrackOrder> keys;
+    private final long version;
+    private final long[] rowids;
+    private final long[] byRowid; // the same rowids, ascending
+    private final int[] positions; // positions[i]: where byRowid[i] is in rowids
+
+    private SortedLibrary(List<TrackOrder> keys, long version, long[] rowids, long[] byRowid, int[] positions) {
+        this.keys = keys;
+        this.version = version;
+        this.rowids = rowids;
+        this.byRowid = byRowid;
+        this.positions = positions;
+    }
+
+    // The sort columns of every visible track, in ascending rowid order, as read in one transaction
+    static final class Columns {
+        final long version;
+        final long[] rowids;
+        final Object[][] values; // per key, per row: String or Number
+
+        Columns(long version, long[] rowids, Object[][] values) {
+            this.version = version;
+            this.rowids = rowids;
+            this.values = values;
+        }
+    }
+
+    // Sorts the rows of c by keys, the first deciding most
+    static SortedLibrary sort(List<TrackOrder> keys, Columns c) {
+        int n = c.rowids.length;
+        int[] combined = null;
+        for (int k = 0; k < keys.size(); k++) {
+            int[] key = collationKeys(c.values[k]);
+            if (keys.get(k).isDescending()) {
+                for (int i = 0; i < n; i++) {
+                    key[i] = Integer.MAX_VALUE - key[i];
+                }
+            }
+            if (combined == null) {
+                combined = key;
+            } else {
+                long[] packed = new long[n];
+                for (int i = 0; i < n; i++) {
+                    packed[i] = (long) combined[i] << 32 | key[i];
+                }
+                combined = denseRanks(packed);
+            }
+        }
+        long[] order = new long[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = (combined == null ? 0 : (long) combined[i] << 32) | i;
+        }
+        Arrays.parallelSort(order);
+        long[] sorted = new long[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            int row = (int) order[i];
+            sorted[i] = c.rowids[row];
+            positions[row] = i;
+        }
+        return new SortedLibrary(List.copyOf(keys), c.version, sorted, c.rowids, positions);
+    }
+
+    // Rank of each value among the distinct values, in the order the page indexes use
+    private static int[] collationKeys(Object[] values) {
+        int n = values.length;
+        int[] key = new int[n];
+        if (n == 0) {
+            return key;
+        }
+        if (Arrays.stream(values).allMatch(v -> v instanceof Number)) {
+            long[] numbers = new long[n];
+            for (int i = 0; i < n; i++) {
+                numbers[i] = ((Number) values[i]).longValue();
+            }
+            return denseRanks(numbers);
+        }
+        // Artists and albums repeat a lot: collate each distinct value once
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> distinct = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            String folded = fold(values[i]);
+            Integer id = ids.putIfAbsent(folded, distinct.size());
+            if (id == null) {
+                id = distinct.size();
+                distinct.add(folded);
+            }
+            key[i] = id;
+        }
+        Integer[] byValue = new Integer[distinct.size()];
+        Arrays.setAll(byValue, i -> i);
+        Arrays.parallelSort(byValue, (x, y) -> CODE_POINT_ORDER.compare(distinct.get(x), distinct.get(y)));
+        int[] rank = new int[byValue.length];
+        for (int r = 0; r < byValue.length; r++) {
+            rank[byValue[r]] = r;
+        }
+        for (int i = 0; i < n; i++) {
+            key[i] = rank[key[i]];
+        }
+        return key;
+    }
+
+    private static int[] denseRanks(long[] values) {
+        long[] distinct = values.clone();
+        Arrays.parallelSort(distinct);
+        int m = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (m == 0 || distinct[i] != distinct[m - 1]) {
+                distinct[m++] = distinct[i];
+            }
+        }
+        int size = m;
+        int[] ranks = new int[values.length];
+        Arrays.parallelSetAll(ranks, i -> Arrays.binarySearch(distinct, 0, size, values[i]));
+        return ranks;
+    }
+
+    // NOCASE folds A-Z only
+    private static String fold(Object value) {
+        String s = value == null ? "" : value.toString();
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                char[] out = s.toCharArray();
+                for (int j = i; j < out.length; j++) {
+                    if (out[j] >= 'A' && out[j] <= 'Z') {
+                        out[j] += 'a' - 'A';
+                    }
+                }
+                return new String(out);
+            }
+        }
+        return s;
+    }
+
+    // SQLite compares text as UTF-8 bytes, which is code point order; String.compareTo is
+    // UTF-16 order, which differs for chars above U+FFFF (surrogates sort before U+E000)
+    static final Comparator<String> CODE_POINT_ORDER = (a, b) -> {
+        int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                boolean sx = Character.isSurrogate(x);
+                boolean sy = Character.isSurrogate(y);
+                return sx == sy ? x - y : sx ? 1 : -1;
+            }
+        }
+        return a.length() - b.length();
+    };
+
+    public List<TrackOrder> getKeys() {
+        return keys;
+    }
+
+    /** Library version the rows were read at. */
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return rowids.length;
+    }
+
+    /** Tracks at positions {@code from} (inclusive) to {@code to}; null in the places of tracks deleted since. */
+    public List<Track> getPage(int from, int to) {
+        return DatabaseManager.getTracksByRowid(Arrays.copyOfRange(rowids, from, Math.min(to, rowids.length)));
+    }
+
+    /** Position of the track with {@code id}; -1 if it is not in this sort. Looks the id up in SQL. */
+    public int indexOfId(String id) {
+        long rowid = DatabaseManager.getRowid(id);
+        return rowid < 0 ? -1 : indexOfRowid(rowid);
+    }
+
+    /** Position of the track with {@code rowid}; -1 if it is not in this sort. */
+    int indexOfRowid(long rowid) {
+        int i = Arrays.binarySearch(byRowid, rowid);
+        return i < 0 ? -1 : positions[i];
+    }
+}
@@ -0,0 +1,97 @@
+package com.vibe.db;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// An ordering of the visible library that pages can be read in by key (keyset
+// pagination) rather than by OFFSET: the sort expression, then rowid to break ties.
+// Each key has a partial index over visible tracks, so a page is an index range read.
+// The index is named in the query: without statistics SQLite prefers the duplicate_of
+// index (every visible row matches it) and sorts the whole library for each page.
+public final class TrackOrder {
+    public enum Key {
+        INSERTION(null, null),
+        TITLE("ifnull(title, '') COLLATE NOCASE", "idx_tracks_page_title"),
+        ARTIST("ifnull(artist, '') COLLATE NOCASE", "idx_tracks_page_artist"),
+        ALBUM("ifnull(album, '') COLLATE NOCASE", "idx_tracks_page_album"),
+        DURATION("ifnull(duration, 0)", "idx_tracks_page_duration");
+
+        final String expr; // null: rowid alone
+        final String index;
+
+        Key(String expr, String index) {
+            this.expr = expr;
+            this.index = index;
+        }
+    }
+
+    public static final TrackOrder DEFAULT = new TrackOrder(Key.INSERTION, false);
+
+    private final Key key;
+    private final boolean descending;
+
+    public TrackOrder(Key key, boolean descending) {
+        this.key = key;
+        this.descending = descending;
+    }
+
+    public Key getKey() { return key; }
+    public boolean isDescending() { return descending; }
+
+    // The table to read pages from, tied to this order's index (rowid order: the table itself)
+    String source() {
+        return key.index == null ? "tracks NOT INDEXED" : "tracks INDEXED BY " + key.index;
+    }
+
+    String orderBy() {
+        String dir = descending ? " DESC" : "";
+        return key.expr == null ? "rowid" + dir : key.expr + dir + ", rowid" + dir;
+    }
+
+    // Rows strictly after the cursor (?, ?) = (key, rowid). Spelled out instead of a row
+    // value comparison, which SQLite does not turn into a range on an expression index.
+    String after() {
+        String op = descending ? "<" : ">";
+        if (key.expr == null) {
+            return "rowid " + op + " ?";
+        }
+        return key.expr + " " + op + "= ? AND (" + key.expr + " " + op + " ? OR rowid " + op + " ?)";
+    }
+
+    // Number of rows before the row (?, ?) = (key, rowid): those with a smaller key, then
+    // its ties with a smaller rowid, each counted as one plain index range
+    String countBefore() {
+        String op = descending ? ">" : "<";
+        if (key.expr == null) {
+            return "SELECT COUNT(*) FROM " + source() + " WHERE duplicate_of IS NULL AND rowid " + op + " ?";
+        }
+        return "SELECT (SELECT COUNT(*) FROM " + source() + " WHERE duplicate_of IS NULL AND " + key.expr + " " + op + " ?)"
+                + " + (SELECT COUNT(*) FROM " + source() + " WHERE duplicate_of IS NULL AND " + key.expr + " = ?"
+                + " AND rowid " + op + " ?)";
+    }
+
+    // Columns read back for the cursor of the last row
+    String cursorColumns() {
+        return key.expr == null ? "NULL, rowid" : key.expr + ", rowid";
+    }
+
+    static List<String> indexDefinitions() {
+        List<String> out = new ArrayList<>();
+        for (Key k : Key.values()) {
+            if (k.index != null) {
+                out.add(k.index + " ON tracks(" + k.expr + ") WHERE duplicate_of IS NULL");
+            }
+        }
+        return out;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TrackOrder other && other.key == key && other.descending == descending;
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode() * 2 + (descending ? 1 : 0);
+    }
+}
@@ -0,0 +1,33 @@
+package com.vibe.db;
+
+import java.util.List;
+
+import com.vibe.model.Track;
+
+// One page of the library in some TrackOrder, plus where the next page starts.
+public class TrackPage {
+
+    // Position just after a row: its sort key and rowid. Opaque to callers.
+    public static final class Cursor {
+        final Object key;
+        final long rowid;
+
+        Cursor(Object key, long rowid) {
+            this.key = key;
+            this.rowid = rowid;
+        }
+    }
+
+    private final List<Track> tracks;
+    private final Cursor next;
+
+    TrackPage(List<Track> tracks, Cursor next) {
+        this.tracks = tracks;
+        this.next = next;
+    }
+
+    public List<Track> getTracks() { return tracks; }
+
+    /** Cursor after this page's last row; null if the page is empty. */
+    public Cursor getNext() { return next; }
+}
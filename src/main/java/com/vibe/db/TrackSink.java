@@ -0,0 +1,129 @@
+package com.vibe.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.vibe.model.FileState;
+import com.vibe.model.Track;
+
+// Streaming bulk insert for folder imports.
+// Tracks are buffered and written with JDBC batching, one transaction per chunk,
+// so a large import costs one commit per batch instead of one per file.
+// The writer connection is only held while a chunk is being flushed.
+// Not thread-safe: feed it from one thread or synchronize externally.
+public class TrackSink implements AutoCloseable {
+    static final String INSERT_SQL =
+            "INSERT OR IGNORE INTO tracks(id, filepath, title, artist, album, duration, " +
+                    "file_size, file_mtime, fingerprint, track_no, year, genre, content_hash) " +
+                    "VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?)";
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final List<Track> buffer;
+    private final List<FileState> states;
+
+    private long inserted;
+    private long skipped;
+    private BiConsumer<Track, FileState> onInserted;
+
+    TrackSink(ConnectionPool pool, int batchSize) {
+        this.pool = pool;
+        this.batchSize = Math.max(1, batchSize);
+        this.buffer = new ArrayList<>(this.batchSize);
+        this.states = new ArrayList<>(this.batchSize);
+    }
+
+    public void accept(Track track) throws SQLException {
+        accept(track, null);
+    }
+
+    /** Queues a track along with the on-disk state it was read from (may be null). */
+    public void accept(Track track, FileState state) throws SQLException {
+        buffer.add(track);
+        states.add(state);
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Called after each commit for every track whose row was actually written; tracks
+     * whose path or id was already in the DB (say, added by a concurrent import) are not passed.
+     */
+    public void setOnInserted(BiConsumer<Track, FileState> onInserted) {
+        this.onInserted = onInserted;
+    }
+
+    /**
+     * Writes any buffered tracks in a single transaction. If that fails the transaction is
+     * rolled back and the tracks stay buffered, so the next flush (or close) tries them again.
+     */
+    public void flush() throws SQLException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try (ConnectionPool.Handle h = pool.writer()) {
+            Connection conn = h.connection();
+            conn.setAutoCommit(false);
+            PreparedStatement pstmt = h.prepare(INSERT_SQL);
+            for (int i = 0; i < buffer.size(); i++) {
+                bind(pstmt, buffer.get(i), states.get(i));
+                pstmt.addBatch();
+            }
+            int[] counts = pstmt.executeBatch();
+            conn.commit();
+            conn.setAutoCommit(true);
+
+            for (int i = 0; i < counts.length; i++) {
+                int c = counts[i];
+                if (c == 0) {
+                    skipped++;
+                } else if (c > 0 || c == Statement.SUCCESS_NO_INFO) {
+                    inserted++;
+                    if (onInserted != null) {
+                        onInserted.accept(buffer.get(i), states.get(i));
+                    }
+                }
+            }
+            buffer.clear();
+            states.clear();
+        }
+    }
+
+    static void bind(PreparedStatement pstmt, Track t, FileState state) throws SQLException {
+        pstmt.setString(1, t.getId());
+        pstmt.setString(2, t.getFilepath());
+        pstmt.setString(3, t.getTitle());
+        pstmt.setString(4, t.getArtist());
+        pstmt.setString(5, t.getAlbum());
+        pstmt.setLong(6, t.getDuration());
+        if (state != null) {
+            pstmt.setLong(7, state.getSize());
+            pstmt.setLong(8, state.getLastModified());
+            pstmt.setLong(9, state.getFingerprint());
+        } else {
+            pstmt.setNull(7, Types.INTEGER);
+            pstmt.setNull(8, Types.INTEGER);
+            pstmt.setNull(9, Types.INTEGER);
+        }
+        pstmt.setInt(10, t.getTrackNumber());
+        pstmt.setInt(11, t.getYear());
+        pstmt.setString(12, t.getGenre());
+        pstmt.setString(13, state != null ? state.getContentHash() : null);
+    }
+
+    public ImportResult result() {
+        return new ImportResult(inserted, skipped);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        flush();
+    }
+}
@@ -0,0 +1,230 @@
+package com.vibe.library;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import com.vibe.metadata.ContentHasher;
+import com.vibe.metadata.TagReader;
+import com.vibe.metadata.TrackMetadata;
+import com.vibe.model.FileState;
+
+// Parallel directory traversal shared by the import and sync tasks.
+// Each directory is listed on its own virtual thread, and each file that needs reading
+// (fingerprint, content hash, tags) is read on its own too, so a flat folder of
+// thousands of files is not read one file at a time. Listings and reads are bounded by
+// separate semaphores so a NAS is not flooded with requests; a listing does not hold
+// its permit while files are read. Audio files come out of a bounded queue.
+// Directories that could not be listed are remembered, so a sync can tell "gone" from "unseen".
+class DirectoryWalker implements AutoCloseable {
+
+    // Handed from the walkers to the consumer
+    static final class FoundFile {
+        final Path path;
+        final BasicFileAttributes attrs;
+        // Filled in on the reader thread when the file needs reading
+        FileState state;
+        TrackMetadata meta;
+
+        FoundFile(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+    }
+
+    private final List<Path> roots;
+    private final Semaphore permits; // directory listings
+    private final Semaphore reads; // file reads
+    private final ScanStats stats;
+    private final BooleanSupplier cancelled;
+    private final Predicate<FoundFile> needsRead;
+
+    private final BlockingQueue<FoundFile> found = new ArrayBlockingQueue<>(4096);
+    private final AtomicInteger pending;
+    private final AtomicBoolean walkDone;
+    private final Set<Path> failed = ConcurrentHashMap.newKeySet();
+    private final ExecutorService walkers = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param needsRead decides, per file, whether to open it for a fingerprint and tags.
+     *                  Runs on the walker threads; the reads it asks for run in parallel.
+     */
+    DirectoryWalker(List<Path> roots, int concurrency, ScanStats stats, BooleanSupplier cancelled,
+            Predicate<FoundFile> needsRead) {
+        this.roots = List.copyOf(roots);
+        this.needsRead = needsRead;
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.reads = new Semaphore(Math.max(1, concurrency));
+        this.stats = stats;
+        this.cancelled = cancelled;
+        this.pending = new AtomicInteger(this.roots.size());
+        this.walkDone = new AtomicBoolean(this.roots.isEmpty());
+    }
+
+    static boolean isAudioFile(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".mp3") || name.endsWith(".wav") || name.endsWith(".m4a")
+                || name.endsWith(".flac");
+    }
+
+    void start() {
+        for (Path root : roots) {
+            walkers.submit(() -> walk(root));
+        }
+    }
+
+    /**
+     * Next discovered file, or null if none arrived within the timeout.
+     * Check {@link #isFinished()} after a null to tell "slow" from "done".
+     */
+    FoundFile poll(long timeoutMillis) throws InterruptedException {
+        return found.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** True once every directory has been listed and the queue is drained. */
+    boolean isFinished() {
+        // walkDone is set after the last put, so an empty queue then means we are finished
+        return walkDone.get() && found.isEmpty();
+    }
+
+    /**
+     * Absolute paths of the directories whose listing failed. Nothing under them was
+     * seen, so a file missing from the walk there may still exist.
+     */
+    Set<Path> getFailedDirectories() {
+        return failed;
+    }
+
+    // Seam for tests that need a listing to fail
+    DirectoryStream<Path> list(Path dir) throws IOException {
+        return Files.newDirectoryStream(dir);
+    }
+
+    private void walk(Path dir) {
+        try {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            permits.acquire();
+            try (DirectoryStream<Path> entries = list(dir)) {
+                stats.directories.incrementAndGet();
+                for (Path p : entries) {
+                    if (cancelled.getAsBoolean()) {
+                        return;
+                    }
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isSymbolicLink()) {
+                            // Follow links to files, but never descend into linked dirs (avoids cycles)
+                            attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                            if (!attrs.isRegularFile()) {
+                                continue;
+                            }
+                        }
+                    } catch (IOException e) {
+                        continue; // dangling link or entry removed mid-scan
+                    }
+                    if (attrs.isDirectory()) {
+                        pending.incrementAndGet();
+                        walkers.submit(() -> walk(p));
+                    } else if (attrs.isRegularFile() && isAudioFile(p)) {
+                        stats.filesSeen.incrementAndGet();
+                        FoundFile f = new FoundFile(p, attrs);
+                        if (needsRead.test(f)) {
+                            pending.incrementAndGet();
+                            walkers.submit(() -> readAndPut(f));
+                        } else {
+                            found.put(f);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                failed.add(dir.toAbsolutePath());
+                System.err.println("Scan failed for " + dir + ": " + e.getMessage());
+            } finally {
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // RejectedExecution after shutdown, or an unreadable entry
+            if (!cancelled.getAsBoolean()) {
+                e.printStackTrace();
+            }
+        } finally {
+            finished();
+        }
+    }
+
+    private void readAndPut(FoundFile f) {
+        try {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            reads.acquire();
+            try {
+                read(f);
+            } finally {
+                reads.release();
+            }
+            found.put(f);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            if (!cancelled.getAsBoolean()) {
+                e.printStackTrace();
+            }
+        } finally {
+            finished();
+        }
+    }
+
+    // One directory listing or file read is done; the walk is over when none are left
+    private void finished() {
+        if (pending.decrementAndGet() == 0) {
+            walkDone.set(true);
+        }
+    }
+
+    /** Takes the fingerprint and content hash and parses the tags of a file. */
+    static FoundFile read(FoundFile f) {
+        f.state = readState(f);
+        f.meta = TagReader.read(f.path);
+        return f;
+    }
+
+    static FileState readState(FoundFile f) {
+        long size = f.attrs.size();
+        long fp;
+        try {
+            fp = FileFingerprint.compute(f.path, size);
+        } catch (IOException e) {
+            fp = 0;
+        }
+        return new FileState(null, f.path.toAbsolutePath().toString(), size,
+                f.attrs.lastModifiedTime().toMillis(), fp, ContentHasher.hash(f.path));
+    }
+
+    @Override
+    public void close() {
+        walkers.shutdownNow();
+    }
+}
@@ -0,0 +1,44 @@
+package com.vibe.library;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Cheap content fingerprint: CRC32C over the first and last few KB plus the size.
+// Good enough to recognise a moved or renamed file without reading it fully;
+// it is not a duplicate detector (tag edits change it, identical audio may not match).
+public final class FileFingerprint {
+    static final int SAMPLE = 4096;
+
+    private FileFingerprint() {}
+
+    public static long compute(Path path, long size) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buf = ByteBuffer.allocate(SAMPLE);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            readAt(ch, buf, 0);
+            crc.update(buf);
+            if (size > SAMPLE) {
+                buf.clear();
+                readAt(ch, buf, Math.max(SAMPLE, size - SAMPLE));
+                crc.update(buf);
+            }
+        }
+        // Fold the size into the high bits so equal samples of different lengths differ
+        return (size << 32) ^ crc.getValue();
+    }
+
+    private static void readAt(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) {
+                break;
+            }
+            pos += n;
+        }
+        buf.flip();
+    }
+}
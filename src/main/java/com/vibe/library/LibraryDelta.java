@@ -0,0 +1,59 @@
+package com.vibe.library;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.vibe.model.FileState;
+import com.vibe.model.Track;
+
+// Changes found by an incremental rescan.
+// Updated tracks keep their id (and so their playlist memberships); that includes moves.
+public class LibraryDelta {
+    private final List<Track> added = new ArrayList<>();
+    private final List<Track> updated = new ArrayList<>();
+    private final List<String> removed = new ArrayList<>();
+    // Parallel to added/updated: what the file looked like when it was read
+    private final List<FileState> addedStates = new ArrayList<>();
+    private final List<FileState> updatedStates = new ArrayList<>();
+    private long unchanged;
+
+    void add(Track t, FileState state) {
+        added.add(t);
+        addedStates.add(state);
+    }
+
+    void clearAdded() {
+        added.clear();
+        addedStates.clear();
+    }
+
+    void update(Track t, FileState state) {
+        updated.add(t);
+        updatedStates.add(state);
+    }
+
+    void remove(String trackId) {
+        removed.add(trackId);
+    }
+
+    void setUnchanged(long unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    public List<Track> getAdded() { return added; }
+    public List<Track> getUpdated() { return updated; }
+    public List<String> getRemoved() { return removed; }
+    public long getUnchanged() { return unchanged; }
+    public List<FileState> getAddedStates() { return addedStates; }
+    public List<FileState> getUpdatedStates() { return updatedStates; }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return added.size() + " added, " + updated.size() + " updated, " + removed.size() + " removed, "
+                + unchanged + " unchanged";
+    }
+}
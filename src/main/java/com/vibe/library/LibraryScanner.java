@@ -0,0 +1,131 @@
+package com.vibe.library;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vibe.db.DatabaseManager;
+import com.vibe.db.ImportResult;
+import com.vibe.db.TrackSink;
+import com.vibe.metadata.TrackMetadata;
+import com.vibe.model.Track;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.concurrent.Task;
+
+// Imports audio files from one or more folders without blocking the FX thread.
+// A DirectoryWalker lists folders in parallel on virtual threads; discovered files
+// are streamed to the task thread, which is the only one writing to the DB.
+// Run it on a background thread and bind the UI to its properties; cancel() stops
+// the walk and keeps whatever has been imported so far.
+public final class LibraryScanner extends Task<ImportResult> {
+
+    public static final int DEFAULT_CONCURRENCY = 16;
+    static final long PUBLISH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final List<Path> roots;
+    private final int concurrency;
+    private final ScanStats stats = new ScanStats();
+
+    private final ReadOnlyLongWrapper filesSeen = new ReadOnlyLongWrapper(this, "filesSeen");
+    private final ReadOnlyLongWrapper filesImported = new ReadOnlyLongWrapper(this, "filesImported");
+    private final ReadOnlyDoubleWrapper throughput = new ReadOnlyDoubleWrapper(this, "throughput");
+    private final AtomicBoolean publishPending = new AtomicBoolean();
+
+    public LibraryScanner(List<Path> roots) {
+        this(roots, DEFAULT_CONCURRENCY);
+    }
+
+    public LibraryScanner(List<Path> roots, int concurrency) {
+        this.roots = List.copyOf(roots);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    public static boolean isAudioFile(Path path) {
+        return DirectoryWalker.isAudioFile(path);
+    }
+
+    @Override
+    protected ImportResult call() throws Exception {
+        updateMessage("Scanning...");
+        updateProgress(-1, 1);
+
+        for (Path root : roots) {
+            DatabaseManager.addLibraryRoot(root.toAbsolutePath().toString());
+        }
+
+        try (DirectoryWalker walker = new DirectoryWalker(roots, concurrency, stats, this::isCancelled,
+                f -> true);
+                TrackSink sink = DatabaseManager.openTrackSink()) {
+            walker.start();
+            long lastPublish = System.nanoTime();
+            try {
+                while (!isCancelled()) {
+                    DirectoryWalker.FoundFile f = walker.poll(100);
+                    if (f == null && walker.isFinished()) {
+                        break;
+                    }
+                    if (f != null) {
+                        sink.accept(toTrack(f), f.state);
+                        stats.filesImported.set(sink.result().getInserted());
+                        stats.filesSkipped.set(sink.result().getSkipped());
+                    }
+                    if (System.nanoTime() - lastPublish > PUBLISH_INTERVAL_NANOS) {
+                        publish();
+                        lastPublish = System.nanoTime();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // cancel(true) interrupts us; fall through and keep what was found
+            }
+            sink.flush();
+            stats.filesImported.set(sink.result().getInserted());
+            stats.filesSkipped.set(sink.result().getSkipped());
+            publish();
+            return sink.result();
+        }
+    }
+
+    static Track toTrack(DirectoryWalker.FoundFile f) {
+        return toTrack(UUID.randomUUID().toString(), f);
+    }
+
+    /** Builds a track from parsed tags, falling back to the file name for the title. */
+    static Track toTrack(String id, DirectoryWalker.FoundFile f) {
+        TrackMetadata m = f.meta != null ? f.meta : new TrackMetadata();
+        return new Track(
+                id,
+                f.path.toAbsolutePath().toString(),
+                m.getTitle() != null ? m.getTitle() : f.path.getFileName().toString(),
+                m.getArtist() != null ? m.getArtist() : "Unknown Artist",
+                m.getAlbum() != null ? m.getAlbum() : "Unknown Album",
+                Math.round(m.getDuration()),
+                m.getTrackNumber(),
+                m.getYear(),
+                m.getGenre());
+    }
+
+    // Coalesces counter updates into at most one pending FX pulse
+    private void publish() {
+        updateMessage(stats.toString());
+        if (publishPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                publishPending.set(false);
+                filesSeen.set(stats.getFilesSeen());
+                filesImported.set(stats.getFilesImported());
+                throughput.set(stats.getThroughput());
+            });
+        }
+    }
+
+    public ScanStats getStats() { return stats; }
+    public ReadOnlyLongProperty filesSeenProperty() { return filesSeen.getReadOnlyProperty(); }
+    public ReadOnlyLongProperty filesImportedProperty() { return filesImported.getReadOnlyProperty(); }
+    public ReadOnlyDoubleProperty throughputProperty() { return throughput.getReadOnlyProperty(); }
+}
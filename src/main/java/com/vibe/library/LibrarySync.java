@@ -0,0 +1,199 @@
+package com.vibe.library;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vibe.db.DatabaseManager;
+import com.vibe.db.TrackSink;
+import com.vibe.metadata.ContentHasher;
+import com.vibe.model.FileState;
+import com.vibe.model.Track;
+
+import javafx.concurrent.Task;
+
+// Incremental rescan of the imported library folders.
+// Files whose size and mtime match what the DB last saw are not opened at all, so a
+// rescan with no changes costs one directory walk plus one indexed query per root.
+// Changed files are re-read; a missing file whose fingerprint shows up at a new path
+// is treated as a move and keeps its id (and its playlist memberships).
+// Tracks imported before content hashing existed are read once more to fill in their hash
+// (files that cannot be hashed are marked so, and are not read again until they change).
+// The delta is written to the DB before the task completes; cancelling discards it.
+public class LibrarySync extends Task<LibraryDelta> {
+
+    private final List<Path> roots; // null: every library root, read when the task runs
+    private final int concurrency;
+    private final ScanStats stats = new ScanStats();
+
+    public LibrarySync(List<Path> roots) {
+        this(roots, LibraryScanner.DEFAULT_CONCURRENCY);
+    }
+
+    public LibrarySync(List<Path> roots, int concurrency) {
+        this.roots = List.copyOf(roots);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    private LibrarySync(int concurrency) {
+        this.roots = null;
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /** Sync every folder the user has imported so far; they are looked up when the task runs. */
+    public static LibrarySync forLibraryRoots() {
+        return new LibrarySync(LibraryScanner.DEFAULT_CONCURRENCY);
+    }
+
+    @Override
+    protected LibraryDelta call() throws Exception {
+        updateMessage("Checking library...");
+        updateProgress(-1, 1);
+
+        // An unreachable root (unplugged drive, NAS offline) must not look like
+        // every file under it was deleted, so it is left out of the sync entirely.
+        List<Path> reachable = new ArrayList<>();
+        Map<String, FileState> known = new ConcurrentHashMap<>();
+        for (Path root : roots != null ? roots : libraryRoots()) {
+            if (Files.isDirectory(root)) {
+                reachable.add(root);
+                known.putAll(DatabaseManager.getFileStates(root.toAbsolutePath().toString()));
+            } else {
+                System.err.println("Skipping unreachable library folder: " + root);
+            }
+        }
+
+        LibraryDelta delta = new LibraryDelta();
+        List<DirectoryWalker.FoundFile> newFiles = new ArrayList<>();
+        long unchanged = 0;
+        Set<Path> unlisted = Set.of();
+
+        try (DirectoryWalker walker = new DirectoryWalker(reachable, concurrency, stats, this::isCancelled,
+                f -> {
+                    FileState k = known.get(f.path.toAbsolutePath().toString());
+                    return k == null || !k.sameStat(f.attrs.size(), f.attrs.lastModifiedTime().toMillis())
+                            || (k.getContentHash() == null && ContentHasher.isEnabled()); // backfill hash
+                })) {
+            walker.start();
+            long lastPublish = System.nanoTime();
+            while (!isCancelled()) {
+                DirectoryWalker.FoundFile f = walker.poll(100);
+                if (f == null && walker.isFinished()) {
+                    break;
+                }
+                if (f != null) {
+                    FileState k = known.remove(f.path.toAbsolutePath().toString());
+                    if (k == null) {
+                        newFiles.add(f);
+                    } else if (f.state == null) {
+                        unchanged++;
+                    } else {
+                        delta.update(LibraryScanner.toTrack(k.getTrackId(), f), withId(f.state, k.getTrackId()));
+                    }
+                }
+                if (System.nanoTime() - lastPublish > LibraryScanner.PUBLISH_INTERVAL_NANOS) {
+                    updateMessage(stats.getFilesSeen() + " files checked");
+                    lastPublish = System.nanoTime();
+                }
+            }
+            unlisted = walker.getFailedDirectories();
+        } catch (InterruptedException e) {
+            // cancelled; handled below
+        }
+        if (isCancelled()) {
+            // A partial walk cannot tell missing files from unvisited ones
+            return new LibraryDelta();
+        }
+
+        // Tracks under a folder that could not be listed were not looked for, so keep them as they are
+        forgetUnlisted(known, unlisted);
+        // Whatever is left in "known" was not found on disk: either moved or deleted
+        resolveMoves(delta, newFiles, known);
+        delta.setUnchanged(unchanged);
+
+        apply(delta);
+        stats.filesImported.set(delta.getAdded().size());
+        updateMessage("Library synced: " + delta);
+        return delta;
+    }
+
+    /** Drops the known files under any of {@code dirs} (absolute paths) from {@code known}. */
+    static void forgetUnlisted(Map<String, FileState> known, Set<Path> dirs) {
+        if (!dirs.isEmpty()) {
+            known.keySet().removeIf(path -> dirs.stream().anyMatch(Path.of(path)::startsWith));
+        }
+    }
+
+    /**
+     * Adds {@code newFiles} to the delta, pairing each with a missing track of the
+     * same fingerprint and size where possible (a move). Missing tracks left over are
+     * recorded as removed. {@code missing} is consumed.
+     */
+    static void resolveMoves(LibraryDelta delta, List<DirectoryWalker.FoundFile> newFiles,
+            Map<String, FileState> missing) {
+        Map<Long, FileState> missingByFingerprint = new HashMap<>();
+        for (FileState k : missing.values()) {
+            if (k.getFingerprint() != 0) {
+                missingByFingerprint.put(k.getFingerprint(), k);
+            }
+        }
+        for (DirectoryWalker.FoundFile f : newFiles) {
+            FileState st = f.state;
+            FileState moved = missingByFingerprint.remove(st.getFingerprint());
+            if (moved != null && moved.getSize() == st.getSize() && missing.remove(moved.getFilepath()) != null) {
+                delta.update(LibraryScanner.toTrack(moved.getTrackId(), f), withId(st, moved.getTrackId()));
+            } else {
+                delta.add(LibraryScanner.toTrack(f), st);
+            }
+        }
+        for (FileState k : missing.values()) {
+            delta.remove(k.getTrackId());
+        }
+        missing.clear();
+    }
+
+    /**
+     * Writes a delta to the DB: batched inserts, then updates, then deletes.
+     * Added tracks whose insert was ignored (a concurrent scan got there first) are
+     * dropped from the delta, so listeners are not handed a second copy of the row.
+     */
+    static void apply(LibraryDelta delta) throws Exception {
+        if (!delta.getAdded().isEmpty()) {
+            List<Track> added = List.copyOf(delta.getAdded());
+            List<FileState> states = new ArrayList<>(delta.getAddedStates()); // may hold nulls
+            delta.clearAdded();
+            try (TrackSink sink = DatabaseManager.openTrackSink()) {
+                sink.setOnInserted(delta::add);
+                for (int i = 0; i < added.size(); i++) {
+                    sink.accept(added.get(i), states.get(i));
+                }
+            }
+        }
+        if (!delta.getUpdated().isEmpty()) {
+            DatabaseManager.updateTracks(delta.getUpdated(), delta.getUpdatedStates());
+        }
+        if (!delta.getRemoved().isEmpty()) {
+            DatabaseManager.deleteTracks(delta.getRemoved());
+        }
+    }
+
+    private static List<Path> libraryRoots() {
+        List<Path> roots = new ArrayList<>();
+        for (String r : DatabaseManager.getLibraryRoots()) {
+            roots.add(Path.of(r));
+        }
+        return roots;
+    }
+
+    static FileState withId(FileState s, String trackId) {
+        return new FileState(trackId, s.getFilepath(), s.getSize(), s.getLastModified(), s.getFingerprint(),
+                s.getContentHash());
+    }
+
+    public ScanStats getStats() { return stats; }
+}
@@ -0,0 +1,275 @@
+package com.vibe.library;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.vibe.db.DatabaseManager;
+import com.vibe.model.FileState;
+
+import javafx.application.Platform;
+
+// Keeps the library in sync with the imported folders while the app is running.
+// WatchService only reports direct children, so every directory under a root gets
+// its own registration (mind the OS inotify limit on very deep trees).
+// Events are debounced: a burst such as a 2,000-file album dump is collected until
+// the folders have been quiet for QUIET_MILLIS (or MAX_DELAY_MILLIS has passed),
+// then reconciled against the DB in one batch and handed to the listener as a
+// LibraryDelta on the FX thread.
+public class LibraryWatcher implements AutoCloseable {
+
+    static final long QUIET_MILLIS = 750;
+    static final long MAX_DELAY_MILLIS = 5000;
+
+    private final Consumer<LibraryDelta> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirs = ConcurrentHashMap.newKeySet();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Pending work, only touched by the watcher thread
+    private final Set<Path> changedFiles = new HashSet<>();
+    private final Set<Path> createdDirs = new HashSet<>();
+    private final Set<Path> deletedDirs = new HashSet<>();
+    private final Set<Path> overflowedRoots = new HashSet<>();
+
+    /** @param listener receives each applied batch on the FX application thread */
+    public LibraryWatcher(Consumer<LibraryDelta> listener) throws IOException {
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "library-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Starts the event thread and watches every folder already in the library. Returns
+     * at once: the folders are read from the database in the background.
+     */
+    public void start() {
+        thread.start();
+        Thread.ofVirtual().name("library-watch-roots").start(() -> {
+            for (String root : DatabaseManager.getLibraryRoots()) {
+                addRoot(Path.of(root));
+            }
+        });
+    }
+
+    /**
+     * Watches a newly imported folder. Safe to call from any thread; registration
+     * walks the whole tree, so it runs in the background.
+     */
+    public void addRoot(Path root) {
+        Thread.ofVirtual().name("library-watch-register").start(() -> {
+            if (!Files.isDirectory(root)) {
+                return;
+            }
+            try {
+                registerTree(root.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Cannot watch " + root + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (watchedDirs.add(dir)) {
+                    WatchKey key = dir.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                    keys.put(key, dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void run() {
+        long firstEvent = 0;
+        long lastEvent = 0;
+        while (running) {
+            try {
+                long timeout = QUIET_MILLIS;
+                if (firstEvent != 0) {
+                    long now = System.currentTimeMillis();
+                    timeout = Math.min(lastEvent + QUIET_MILLIS, firstEvent + MAX_DELAY_MILLIS) - now;
+                }
+                WatchKey key = timeout > 0 ? watchService.poll(timeout, TimeUnit.MILLISECONDS) : null;
+                if (key != null) {
+                    collect(key);
+                    lastEvent = System.currentTimeMillis();
+                    if (firstEvent == 0) {
+                        firstEvent = lastEvent;
+                    }
+                    continue;
+                }
+                if (firstEvent != 0) {
+                    flush();
+                    firstEvent = 0;
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                // Keep watching; one bad batch should not stop live sync
+                e.printStackTrace();
+                firstEvent = 0;
+            }
+        }
+    }
+
+    private void collect(WatchKey key) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // Events were dropped; fall back to a full sync of the root
+                if (dir != null) {
+                    overflowedRoots.add(rootOf(dir));
+                }
+                continue;
+            }
+            if (dir == null) {
+                continue;
+            }
+            Path child = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE && watchedDirs.contains(child)) {
+                deletedDirs.add(child);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+                createdDirs.add(child);
+            } else if (DirectoryWalker.isAudioFile(child)) {
+                changedFiles.add(child);
+            }
+        }
+        if (!key.reset()) {
+            // The directory itself went away; its parent may report that before or after us
+            keys.remove(key);
+            if (dir != null && !Files.exists(dir)) {
+                deletedDirs.add(dir);
+            }
+        }
+    }
+
+    private Path rootOf(Path dir) {
+        for (String r : DatabaseManager.getLibraryRoots()) {
+            Path root = Path.of(r);
+            if (dir.startsWith(root)) {
+                return root;
+            }
+        }
+        return dir;
+    }
+
+    private void flush() throws Exception {
+        for (Path root : overflowedRoots) {
+            LibrarySync sync = new LibrarySync(List.of(root));
+            sync.run();
+            deliver(sync.get());
+        }
+        overflowedRoots.clear();
+
+        // New folders: watch them and pick up whatever was copied in before we registered
+        for (Path dir : createdDirs) {
+            try {
+                registerTree(dir);
+                try (var files = Files.walk(dir)) {
+                    files.filter(p -> Files.isRegularFile(p) && DirectoryWalker.isAudioFile(p))
+                            .forEach(changedFiles::add);
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot watch " + dir + ": " + e.getMessage());
+            }
+        }
+        createdDirs.clear();
+
+        Set<String> paths = new HashSet<>();
+        for (Path p : changedFiles) {
+            paths.add(p.toAbsolutePath().toString());
+        }
+        changedFiles.clear();
+
+        Map<String, FileState> known = new HashMap<>(DatabaseManager.getFileStatesFor(paths));
+        // Removed folders: everything the DB has under them is gone (or moved)
+        for (Path dir : deletedDirs) {
+            watchedDirs.removeIf(d -> d.startsWith(dir));
+            known.putAll(DatabaseManager.getFileStates(dir.toAbsolutePath().toString()));
+        }
+        deletedDirs.clear();
+
+        LibraryDelta delta = new LibraryDelta();
+        List<DirectoryWalker.FoundFile> newFiles = new ArrayList<>();
+        Map<String, FileState> missing = new HashMap<>();
+        for (String path : paths) {
+            Path p = Path.of(path);
+            FileState k = known.remove(path);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(p, BasicFileAttributes.class);
+            } catch (IOException e) {
+                attrs = null; // deleted (or already moved on)
+            }
+            if (attrs == null || !attrs.isRegularFile()) {
+                if (k != null) {
+                    missing.put(path, k);
+                }
+                continue;
+            }
+            DirectoryWalker.FoundFile f = new DirectoryWalker.FoundFile(p, attrs);
+            if (k == null) {
+                newFiles.add(DirectoryWalker.read(f));
+            } else if (!k.sameStat(attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                DirectoryWalker.read(f);
+                delta.update(LibraryScanner.toTrack(k.getTrackId(), f), LibrarySync.withId(f.state, k.getTrackId()));
+            }
+        }
+        missing.putAll(known); // tracks under deleted folders
+        LibrarySync.resolveMoves(delta, newFiles, missing);
+
+        if (!delta.isEmpty()) {
+            LibrarySync.apply(delta);
+            deliver(delta);
+        }
+    }
+
+    private void deliver(LibraryDelta delta) {
+        if (!delta.isEmpty()) {
+            Platform.runLater(() -> listener.accept(delta));
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.vibe.library;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free counters shared between the scanner's walker threads and its writer.
+public class ScanStats {
+    private final long startNanos = System.nanoTime();
+    final AtomicLong directories = new AtomicLong();
+    final AtomicLong filesSeen = new AtomicLong();
+    final AtomicLong filesImported = new AtomicLong();
+    final AtomicLong filesSkipped = new AtomicLong();
+
+    public long getDirectories() { return directories.get(); }
+    public long getFilesSeen() { return filesSeen.get(); }
+    public long getFilesImported() { return filesImported.get(); }
+    public long getFilesSkipped() { return filesSkipped.get(); }
+
+    /** Audio files discovered per second since the scan started. */
+    public double getThroughput() {
+        double secs = (System.nanoTime() - startNanos) / 1e9;
+        return secs <= 0 ? 0 : filesSeen.get() / secs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d found, %d imported, %d already in library (%.0f files/s)",
+                getFilesSeen(), getFilesImported(), getFilesSkipped(), getThroughput());
+    }
+}
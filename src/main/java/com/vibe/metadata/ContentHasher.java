@@ -0,0 +1,164 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// SHA-256 of a file's audio payload, ignoring tag blocks, so the same recording
+// matches even after one copy had its tags edited. Used to find duplicate tracks.
+//
+// Memory is bounded no matter how large the library or how many scan threads:
+// each hash borrows one of a fixed set of direct buffers and streams the file
+// through it, so at most BUFFERS x BUFFER_SIZE bytes are in flight. That also caps
+// how many files are read end-to-end at once, which keeps a NAS responsive.
+// Tune with -Dvibe.scan.hashBuffers=<n>; -Dvibe.scan.contentHash=false turns hashing off.
+public final class ContentHasher {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFERS = Math.max(1, Integer.getInteger("vibe.scan.hashBuffers", 4));
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("vibe.scan.contentHash", "true"));
+
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(BUFFERS);
+    static {
+        for (int i = 0; i < BUFFERS; i++) {
+            POOL.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        }
+    }
+
+    /**
+     * Stored for a file that was tried and has nothing to hash (unknown format, no audio
+     * payload, unreadable), so rescans do not try it again until the file changes.
+     */
+    public static final String UNHASHABLE = "";
+
+    private ContentHasher() {}
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Hex SHA-256 of the audio payload; {@link #UNHASHABLE} if the format is unknown or
+     * the file cannot be read; null if hashing is off (or interrupted), i.e. not tried.
+     */
+    public static String hash(Path path) {
+        if (!ENABLED) {
+            return null;
+        }
+        ByteBuffer buf;
+        try {
+            buf = POOL.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try (HeaderReader in = new HeaderReader(path)) {
+            long[] range = payload(in, TagReader.formatOf(path));
+            if (range == null || range[1] <= range[0]) {
+                return UNHASHABLE;
+            }
+            return HexFormat.of().formatHex(digest(path, range[0], range[1], buf));
+        } catch (IOException | RuntimeException e) {
+            return UNHASHABLE;
+        } finally {
+            POOL.add(buf);
+        }
+    }
+
+    private static byte[] digest(Path path, long start, long end, ByteBuffer buf) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JRE ships SHA-256
+        }
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long pos = start;
+            while (pos < end) {
+                buf.clear();
+                buf.limit((int) Math.min(buf.capacity(), end - pos));
+                int n = ch.read(buf, pos);
+                if (n < 0) {
+                    break; // truncated while we were reading
+                }
+                buf.flip();
+                md.update(buf);
+                pos += n;
+            }
+        }
+        return md.digest();
+    }
+
+    /** [start, end) of the audio data, with leading and trailing tags excluded. */
+    static long[] payload(HeaderReader in, TagReader.Format format) throws IOException {
+        switch (format) {
+            case MP3:
+                return new long[] { Id3Reader.tagSize(in, 0), trailingTagsStart(in) };
+            case FLAC:
+                return flacFrames(in);
+            case M4A: {
+                if (!Mp4Reader.isMp4(in)) return null;
+                Mp4Reader.Atom mdat = Mp4Reader.find(in, 0, in.size(), "mdat");
+                return mdat == null ? null : new long[] { mdat.start, mdat.end };
+            }
+            case WAV: {
+                if (!WavReader.isWav(in)) return null;
+                long[] data = new long[2];
+                WavReader.chunks(in, (id, start, size) -> {
+                    if (!id.equals("data")) return true;
+                    data[0] = start;
+                    data[1] = Math.min(start + size, in.size());
+                    return false;
+                });
+                return data[1] == 0 ? null : data;
+            }
+            default:
+                return null;
+        }
+    }
+
+    // End of the MP3 stream: before an ID3v1 tag and/or an APEv2 tag, whichever are present
+    private static long trailingTagsStart(HeaderReader in) throws IOException {
+        long end = in.size();
+        if (end >= 128 && "TAG".equals(in.ascii(end - 128, 3))) {
+            end -= 128;
+        }
+        if (end >= 32 && "APETAGEX".equals(in.ascii(end - 32, 8))) {
+            ByteBuffer footer = in.read(end - 32, 32).order(ByteOrder.LITTLE_ENDIAN);
+            long size = footer.getInt(12) & 0xFFFFFFFFL; // items + footer
+            boolean hasHeader = (footer.getInt(20) & 0x80000000) != 0;
+            long tag = size + (hasHeader ? 32 : 0);
+            if (tag <= end) {
+                end -= tag;
+            }
+        }
+        return end;
+    }
+
+    // FLAC audio frames start after the block flagged as the last metadata block
+    private static long[] flacFrames(HeaderReader in) throws IOException {
+        long p = FlacReader.firstBlock(in);
+        if (p < 0) {
+            return null;
+        }
+        while (p + 4 <= in.size()) {
+            ByteBuffer h = in.read(p, 4);
+            boolean last = (h.get(0) & 0x80) != 0;
+            long len = h.getInt(0) & 0xFFFFFF;
+            p += 4 + len;
+            if (last) {
+                return new long[] { p, in.size() };
+            }
+        }
+        return null;
+    }
+}
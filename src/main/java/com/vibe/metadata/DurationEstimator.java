@@ -0,0 +1,234 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+// Track length from container metadata, without decoding or a MediaPlayer:
+//   MP3  - Xing/Info or VBRI frame count; CBR size/bitrate; frame-header walk for bare VBR
+//   FLAC - STREAMINFO total samples / sample rate
+//   M4A  - mvhd (or the first mdhd) duration / timescale
+//   WAV  - data chunk size / byte rate
+public final class DurationEstimator {
+
+    // How far past the ID3 tag we look for the first MPEG frame
+    private static final int SYNC_SEARCH = 64 * 1024;
+    // Frames compared to decide whether a header-less MP3 is CBR
+    private static final int CBR_PROBE_FRAMES = 32;
+
+    private static final int[][] BITRATES = {
+            // MPEG1 L1, L2, L3
+            { 0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448 },
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384 },
+            { 0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320 },
+            // MPEG2/2.5 L1, L2 & L3
+            { 0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256 },
+            { 0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160 },
+    };
+    private static final int[][] SAMPLE_RATES = {
+            { 44100, 48000, 32000 }, // MPEG1
+            { 22050, 24000, 16000 }, // MPEG2
+            { 11025, 12000, 8000 }, // MPEG2.5
+    };
+
+    private DurationEstimator() {}
+
+    /** Duration in seconds, or 0 if it cannot be determined. */
+    public static double estimate(Path path) {
+        try (HeaderReader in = new HeaderReader(path)) {
+            return estimate(in, TagReader.formatOf(path));
+        } catch (IOException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    static double estimate(HeaderReader in, TagReader.Format format) throws IOException {
+        switch (format) {
+            case MP3:
+                return mp3(in);
+            case FLAC:
+                return flac(in);
+            case M4A:
+                return mp4(in);
+            case WAV:
+                return wav(in);
+            default:
+                return 0;
+        }
+    }
+
+    // --- MP3 ---
+
+    /** A decoded MPEG audio frame header. */
+    static final class Frame {
+        int version; // 0 = MPEG1, 1 = MPEG2, 2 = MPEG2.5
+        int layer; // 1..3
+        int bitrate; // kbit/s
+        int sampleRate;
+        boolean mono;
+        int length; // bytes, including header
+
+        int samples() {
+            if (layer == 1) return 384;
+            if (layer == 2 || version == 0) return 1152;
+            return 576;
+        }
+    }
+
+    static Frame parseFrame(int h) {
+        if ((h & 0xFFE00000) != 0xFFE00000) return null;
+        int versionBits = (h >>> 19) & 3;
+        int layerBits = (h >>> 17) & 3;
+        int bitrateIdx = (h >>> 12) & 15;
+        int srIdx = (h >>> 10) & 3;
+        if (versionBits == 1 || layerBits == 0 || bitrateIdx == 0 || bitrateIdx == 15 || srIdx == 3) {
+            return null; // reserved, free-format or bad
+        }
+        Frame f = new Frame();
+        f.version = versionBits == 3 ? 0 : versionBits == 2 ? 1 : 2;
+        f.layer = 4 - layerBits;
+        int table = f.version == 0 ? f.layer - 1 : (f.layer == 1 ? 3 : 4);
+        f.bitrate = BITRATES[table][bitrateIdx];
+        f.sampleRate = SAMPLE_RATES[f.version][srIdx];
+        f.mono = ((h >>> 6) & 3) == 3;
+        int padding = (h >>> 9) & 1;
+        if (f.layer == 1) {
+            f.length = (12 * f.bitrate * 1000 / f.sampleRate + padding) * 4;
+        } else {
+            int coeff = (f.layer == 3 && f.version != 0) ? 72 : 144;
+            f.length = coeff * f.bitrate * 1000 / f.sampleRate + padding;
+        }
+        return f;
+    }
+
+    static double mp3(HeaderReader in) throws IOException {
+        long audioStart = Id3Reader.tagSize(in, 0);
+        long audioEnd = in.size();
+        if (audioEnd >= 128 && "TAG".equals(in.ascii(audioEnd - 128, 3))) {
+            audioEnd -= 128;
+        }
+
+        // Find the first frame whose successor is also a valid frame (avoids false syncs)
+        int window = (int) Math.min(SYNC_SEARCH, audioEnd - audioStart);
+        if (window < 4) return 0;
+        ByteBuffer buf = in.read(audioStart, window);
+        long first = -1;
+        Frame f = null;
+        for (int i = 0; i + 4 <= window; i++) {
+            if ((buf.get(i) & 0xFF) != 0xFF) continue;
+            Frame c = parseFrame(buf.getInt(i));
+            if (c == null) continue;
+            long next = audioStart + i + c.length;
+            if (next + 4 <= audioEnd) {
+                Frame n = parseFrame(in.read(next, 4).getInt(0));
+                if (n == null || n.sampleRate != c.sampleRate) continue;
+            }
+            first = audioStart + i;
+            f = c;
+            break;
+        }
+        if (f == null) return 0;
+
+        // Xing / Info header sits after the side information of the first frame
+        int sideInfo = f.version == 0 ? (f.mono ? 17 : 32) : (f.mono ? 9 : 17);
+        long xing = first + 4 + sideInfo;
+        if (xing + 12 <= audioEnd) {
+            String tag = in.ascii(xing, 4);
+            if (tag.equals("Xing") || tag.equals("Info")) {
+                ByteBuffer x = in.read(xing + 4, 8);
+                if ((x.getInt(0) & 1) != 0) {
+                    long frames = x.getInt(4) & 0xFFFFFFFFL;
+                    return frames * (double) f.samples() / f.sampleRate;
+                }
+            }
+        }
+        // VBRI (Fraunhofer) is always 32 bytes after the header
+        long vbri = first + 4 + 32;
+        if (vbri + 18 <= audioEnd && "VBRI".equals(in.ascii(vbri, 4))) {
+            long frames = in.read(vbri + 14, 4).getInt(0) & 0xFFFFFFFFL;
+            return frames * (double) f.samples() / f.sampleRate;
+        }
+
+        // No VBR header: probe a few frames; if the bitrate never changes it is CBR
+        long p = first;
+        long frames = 0;
+        long samples = 0;
+        boolean cbr = true;
+        Frame cur = f;
+        while (cur != null && p + 4 <= audioEnd) {
+            if (cur.bitrate != f.bitrate) cbr = false;
+            frames++;
+            samples += cur.samples();
+            if (cbr && frames >= CBR_PROBE_FRAMES) {
+                return (audioEnd - first) * 8.0 / (f.bitrate * 1000.0);
+            }
+            p += cur.length;
+            cur = p + 4 <= audioEnd ? parseFrame(in.read(p, 4).getInt(0)) : null;
+        }
+        // Walked the whole stream (short file or VBR without a header)
+        return samples / (double) f.sampleRate;
+    }
+
+    // --- FLAC ---
+
+    static double flac(HeaderReader in) throws IOException {
+        long p = FlacReader.firstBlock(in);
+        if (p < 0 || p + 4 + 18 > in.size()) return 0;
+        int type = in.read(p, 1).get(0) & 0x7F;
+        if (type != FlacReader.STREAMINFO) return 0;
+        // 64 bits at STREAMINFO+10: sample rate (20), channels-1 (3), bps-1 (5), total samples (36)
+        long v = in.read(p + 4 + 10, 8).getLong(0);
+        long sampleRate = v >>> 44;
+        long totalSamples = v & 0xFFFFFFFFFL;
+        return sampleRate == 0 ? 0 : totalSamples / (double) sampleRate;
+    }
+
+    // --- MP4 ---
+
+    static double mp4(HeaderReader in) throws IOException {
+        if (!Mp4Reader.isMp4(in)) return 0;
+        double d = mvhd(in, Mp4Reader.path(in, "moov", "mvhd"));
+        if (d <= 0) {
+            d = mvhd(in, Mp4Reader.path(in, "moov", "trak", "mdia", "mdhd"));
+        }
+        return d;
+    }
+
+    // mvhd and mdhd share the layout up to the duration field
+    private static double mvhd(HeaderReader in, Mp4Reader.Atom a) throws IOException {
+        if (a == null || a.end - a.start < 20) return 0;
+        int version = in.read(a.start, 1).get(0);
+        long timescale;
+        long duration;
+        if (version == 1) {
+            if (a.end - a.start < 32) return 0;
+            ByteBuffer b = in.read(a.start + 20, 12);
+            timescale = b.getInt(0) & 0xFFFFFFFFL;
+            duration = b.getLong(4);
+        } else {
+            ByteBuffer b = in.read(a.start + 12, 8);
+            timescale = b.getInt(0) & 0xFFFFFFFFL;
+            duration = b.getInt(4) & 0xFFFFFFFFL;
+        }
+        return timescale == 0 ? 0 : duration / (double) timescale;
+    }
+
+    // --- WAV ---
+
+    static double wav(HeaderReader in) throws IOException {
+        if (!WavReader.isWav(in)) return 0;
+        long[] byteRate = { 0 };
+        long[] dataSize = { -1 };
+        WavReader.chunks(in, (id, start, size) -> {
+            if (id.equals("fmt ") && size >= 16) {
+                byteRate[0] = in.read(start + 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(0) & 0xFFFFFFFFL;
+            } else if (id.equals("data")) {
+                // Streamed WAVs may leave the size unset; trust the file length instead
+                dataSize[0] = Math.min(size, in.size() - start);
+            }
+            return byteRate[0] == 0 || dataSize[0] < 0;
+        });
+        return byteRate[0] == 0 || dataSize[0] < 0 ? 0 : dataSize[0] / (double) byteRate[0];
+    }
+}
@@ -0,0 +1,80 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+// FLAC metadata blocks; tags live in the VORBIS_COMMENT block.
+// PICTURE and PADDING blocks are skipped by their length.
+final class FlacReader {
+    static final int STREAMINFO = 0;
+    static final int VORBIS_COMMENT = 4;
+
+    private FlacReader() {}
+
+    /** Offset of the first metadata block, or -1 if this is not a FLAC stream. */
+    static long firstBlock(HeaderReader in) throws IOException {
+        long p = Id3Reader.tagSize(in, 0); // some encoders prepend an ID3v2 tag
+        if (in.size() < p + 4 || !"fLaC".equals(in.ascii(p, 4))) {
+            return -1;
+        }
+        return p + 4;
+    }
+
+    static void read(HeaderReader in, TrackMetadata meta) throws IOException {
+        long p = firstBlock(in);
+        if (p < 0) {
+            return;
+        }
+        boolean last = false;
+        while (!last && p + 4 <= in.size()) {
+            ByteBuffer h = in.read(p, 4);
+            last = (h.get(0) & 0x80) != 0;
+            int type = h.get(0) & 0x7F;
+            int len = ((h.get(1) & 0xFF) << 16) | ((h.get(2) & 0xFF) << 8) | (h.get(3) & 0xFF);
+            if (type == VORBIS_COMMENT && len <= 4 * HeaderReader.MAX_FIELD) {
+                comments(in.read(p + 4, len), meta);
+            }
+            p += 4 + len;
+        }
+    }
+
+    // Vorbis comment block: little-endian lengths, "KEY=value" UTF-8 entries
+    static void comments(ByteBuffer b, TrackMetadata meta) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        int vendorLen = b.getInt(0);
+        int p = 4 + vendorLen;
+        if (vendorLen < 0 || p + 4 > b.limit()) {
+            return;
+        }
+        long count = b.getInt(p) & 0xFFFFFFFFL;
+        p += 4;
+        for (long i = 0; i < count && p + 4 <= b.limit(); i++) {
+            int len = b.getInt(p);
+            p += 4;
+            if (len < 0 || p + len > b.limit()) {
+                return;
+            }
+            byte[] bytes = new byte[len];
+            b.get(p, bytes);
+            p += len;
+            String entry = new String(bytes, StandardCharsets.UTF_8);
+            int eq = entry.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String value = entry.substring(eq + 1);
+            switch (entry.substring(0, eq).toUpperCase(Locale.ROOT)) {
+                case "TITLE" -> meta.setTitle(value);
+                case "ARTIST" -> meta.setArtist(value);
+                case "ALBUM" -> meta.setAlbum(value);
+                case "TRACKNUMBER" -> meta.setTrackNumber(value);
+                case "DATE", "YEAR" -> meta.setYear(value);
+                case "GENRE" -> meta.setGenre(value);
+                default -> { }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vibe.metadata;
+
+// ID3v1 genre table, also used by ID3v2 "(17)" references and the MP4 'gnre' atom.
+final class Genres {
+    private static final String[] NAMES = {
+            "Blues", "Classic Rock", "Country", "Dance", "Disco", "Funk", "Grunge", "Hip-Hop", "Jazz", "Metal",
+            "New Age", "Oldies", "Other", "Pop", "R&B", "Rap", "Reggae", "Rock", "Techno", "Industrial",
+            "Alternative", "Ska", "Death Metal", "Pranks", "Soundtrack", "Euro-Techno", "Ambient", "Trip-Hop",
+            "Vocal", "Jazz+Funk", "Fusion", "Trance", "Classical", "Instrumental", "Acid", "House", "Game",
+            "Sound Clip", "Gospel", "Noise", "AlternRock", "Bass", "Soul", "Punk", "Space", "Meditative",
+            "Instrumental Pop", "Instrumental Rock", "Ethnic", "Gothic", "Darkwave", "Techno-Industrial",
+            "Electronic", "Pop-Folk", "Eurodance", "Dream", "Southern Rock", "Comedy", "Cult", "Gangsta",
+            "Top 40", "Christian Rap", "Pop/Funk", "Jungle", "Native American", "Cabaret", "New Wave",
+            "Psychadelic", "Rave", "Showtunes", "Trailer", "Lo-Fi", "Tribal", "Acid Punk", "Acid Jazz", "Polka",
+            "Retro", "Musical", "Rock & Roll", "Hard Rock"
+    };
+
+    private Genres() {}
+
+    static String byIndex(int index) {
+        return index >= 0 && index < NAMES.length ? NAMES[index] : null;
+    }
+
+    /** Turns "(17)", "17" or "(17)Rock" into a name; other text is returned as is. */
+    static String resolve(String v) {
+        if (v == null) return null;
+        String s = v;
+        if (s.startsWith("(") && s.indexOf(')') > 1) {
+            String rest = s.substring(s.indexOf(')') + 1).trim();
+            if (!rest.isEmpty()) return rest;
+            s = s.substring(1, s.indexOf(')'));
+        }
+        if (!s.isEmpty() && s.chars().allMatch(Character::isDigit) && s.length() <= 3) {
+            String name = byIndex(Integer.parseInt(s));
+            return name != null ? name : v;
+        }
+        return v;
+    }
+}
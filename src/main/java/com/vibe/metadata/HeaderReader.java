@@ -0,0 +1,57 @@
+package com.vibe.metadata;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Small positional reads over a file, so parsers only touch the regions they need
+// and never pull audio data onto the heap.
+class HeaderReader implements AutoCloseable {
+    // Upper bound for a single tag field; anything bigger (cover art) is skipped
+    static final int MAX_FIELD = 64 * 1024;
+
+    private final FileChannel ch;
+    private final long size;
+
+    HeaderReader(Path path) throws IOException {
+        this.ch = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = ch.size();
+    }
+
+    long size() {
+        return size;
+    }
+
+    /** Reads exactly {@code len} bytes at {@code pos}, big-endian by default. */
+    ByteBuffer read(long pos, int len) throws IOException {
+        if (len < 0 || pos < 0 || pos + len > size) {
+            throw new EOFException("read past end: " + pos + "+" + len + " > " + size);
+        }
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buf.flip();
+        return buf.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    String ascii(long pos, int len) throws IOException {
+        ByteBuffer b = read(pos, len);
+        char[] c = new char[len];
+        for (int i = 0; i < len; i++) {
+            c[i] = (char) (b.get(i) & 0xFF);
+        }
+        return new String(c);
+    }
+
+    @Override
+    public void close() throws IOException {
+        ch.close();
+    }
+}
@@ -0,0 +1,150 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+// ID3v2.2/2.3/2.4 and ID3v1 tags (MP3, and the "id3 " chunk some WAV files carry).
+// Frames are visited header by header; only the text frames we store are read,
+// everything else (APIC cover art, lyrics, ...) is skipped by offset.
+final class Id3Reader {
+
+    private Id3Reader() {}
+
+    /** Size of an ID3v2 tag at {@code pos} including its header, or 0 if there is none. */
+    static long tagSize(HeaderReader in, long pos) throws IOException {
+        if (in.size() < pos + 10 || !"ID3".equals(in.ascii(pos, 3))) {
+            return 0;
+        }
+        ByteBuffer h = in.read(pos, 10);
+        int flags = h.get(5) & 0xFF;
+        long size = 10 + syncsafe(h, 6);
+        if ((flags & 0x10) != 0) {
+            size += 10; // v2.4 footer
+        }
+        return size;
+    }
+
+    static void readV2(HeaderReader in, long pos, TrackMetadata meta) throws IOException {
+        if (tagSize(in, pos) == 0) {
+            return;
+        }
+        ByteBuffer h = in.read(pos, 10);
+        int version = h.get(3) & 0xFF;
+        int flags = h.get(5) & 0xFF;
+        long end = pos + 10 + syncsafe(h, 6);
+        long p = pos + 10;
+
+        if ((flags & 0x40) != 0 && version >= 3) {
+            // Extended header: v2.3 size excludes the size field, v2.4 is syncsafe and inclusive
+            ByteBuffer ext = in.read(p, 4);
+            p += version == 3 ? 4 + ext.getInt(0) : syncsafe(ext, 0);
+        }
+
+        int idLen = version == 2 ? 3 : 4;
+        int headerLen = version == 2 ? 6 : 10;
+        while (p + headerLen <= end && p + headerLen <= in.size()) {
+            ByteBuffer fh = in.read(p, headerLen);
+            if (fh.get(0) == 0) {
+                break; // padding
+            }
+            String id = in.ascii(p, idLen);
+            long frameSize;
+            int frameFlags = 0;
+            if (version == 2) {
+                frameSize = ((fh.get(3) & 0xFF) << 16) | ((fh.get(4) & 0xFF) << 8) | (fh.get(5) & 0xFF);
+            } else if (version == 4) {
+                frameSize = syncsafe(fh, 4);
+                frameFlags = fh.getShort(8) & 0xFFFF;
+            } else {
+                frameSize = fh.getInt(4) & 0xFFFFFFFFL;
+                frameFlags = fh.getShort(8) & 0xFFFF;
+            }
+            long data = p + headerLen;
+            p = data + frameSize;
+            if (frameSize <= 0 || p > end) {
+                break;
+            }
+            // Compressed or encrypted frames are not worth inflating for a title
+            boolean packed = version == 3 ? (frameFlags & 0x00C0) != 0 : (frameFlags & 0x000C) != 0;
+            if (packed || frameSize > HeaderReader.MAX_FIELD || !isWanted(id)) {
+                continue;
+            }
+            String value = text(in.read(data, (int) frameSize));
+            switch (id) {
+                case "TIT2", "TT2" -> meta.setTitle(value);
+                case "TPE1", "TP1" -> meta.setArtist(value);
+                case "TALB", "TAL" -> meta.setAlbum(value);
+                case "TRCK", "TRK" -> meta.setTrackNumber(value);
+                case "TYER", "TDRC", "TYE" -> meta.setYear(value);
+                case "TCON", "TCO" -> meta.setGenre(value);
+                default -> { }
+            }
+        }
+    }
+
+    /** ID3v1(.1) in the last 128 bytes; only fills fields the v2 tag left empty. */
+    static void readV1(HeaderReader in, TrackMetadata meta) throws IOException {
+        if (in.size() < 128 || !"TAG".equals(in.ascii(in.size() - 128, 3))) {
+            return;
+        }
+        ByteBuffer b = in.read(in.size() - 128, 128);
+        meta.setTitle(latin1(b, 3, 30));
+        meta.setArtist(latin1(b, 33, 30));
+        meta.setAlbum(latin1(b, 63, 30));
+        meta.setYear(latin1(b, 93, 4));
+        if (b.get(125) == 0 && b.get(126) != 0) {
+            meta.setTrackNumber(Integer.toString(b.get(126) & 0xFF));
+        }
+        String genre = Genres.byIndex(b.get(127) & 0xFF);
+        if (genre != null) {
+            meta.setGenre(genre);
+        }
+    }
+
+    private static boolean isWanted(String id) {
+        switch (id) {
+            case "TIT2", "TPE1", "TALB", "TRCK", "TYER", "TDRC", "TCON",
+                    "TT2", "TP1", "TAL", "TRK", "TYE", "TCO":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Text frame payload: one encoding byte, then the string (v2.4 may hold several, NUL-separated)
+    static String text(ByteBuffer b) {
+        if (!b.hasRemaining()) {
+            return null;
+        }
+        int enc = b.get(0) & 0xFF;
+        Charset cs;
+        switch (enc) {
+            case 1 -> cs = StandardCharsets.UTF_16; // BOM decides the byte order
+            case 2 -> cs = StandardCharsets.UTF_16BE;
+            case 3 -> cs = StandardCharsets.UTF_8;
+            default -> cs = StandardCharsets.ISO_8859_1;
+        }
+        byte[] bytes = new byte[b.limit() - 1];
+        b.get(1, bytes);
+        String s = new String(bytes, cs);
+        int nul = s.indexOf('\0');
+        return nul >= 0 ? s.substring(0, nul) : s;
+    }
+
+    private static String latin1(ByteBuffer b, int off, int len) {
+        int end = off;
+        while (end < off + len && b.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - off];
+        b.get(off, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    static long syncsafe(ByteBuffer b, int off) {
+        return ((b.get(off) & 0x7FL) << 21) | ((b.get(off + 1) & 0x7FL) << 14)
+                | ((b.get(off + 2) & 0x7FL) << 7) | (b.get(off + 3) & 0x7FL);
+    }
+}
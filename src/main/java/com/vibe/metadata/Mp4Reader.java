@@ -0,0 +1,135 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// MP4/M4A atoms. Tags are at moov/udta/meta/ilst; the walk reads atom headers only
+// and jumps over everything else, including mdat and the sample tables, so a
+// non-faststart file with moov at the end costs a handful of reads.
+final class Mp4Reader {
+
+    private Mp4Reader() {}
+
+    /** An atom header: where its payload starts and ends. */
+    static final class Atom {
+        final String type;
+        final long start; // payload offset
+        final long end;
+
+        Atom(String type, long start, long end) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /** Finds the first child of type {@code type} between {@code from} and {@code to}. */
+    static Atom find(HeaderReader in, long from, long to, String type) throws IOException {
+        long p = from;
+        while (p + 8 <= to) {
+            ByteBuffer h = in.read(p, 8);
+            long size = h.getInt(0) & 0xFFFFFFFFL;
+            String t = in.ascii(p + 4, 4);
+            int header = 8;
+            if (size == 1) {
+                size = in.read(p + 8, 8).getLong(0);
+                header = 16;
+            } else if (size == 0) {
+                size = to - p; // extends to the end of the parent
+            }
+            if (size < header || p + size > to) {
+                return null;
+            }
+            if (t.equals(type)) {
+                return new Atom(t, p + header, p + size);
+            }
+            p += size;
+        }
+        return null;
+    }
+
+    /** Follows a path of nested atoms from the top of the file, e.g. "moov", "udta". */
+    static Atom path(HeaderReader in, String... types) throws IOException {
+        long from = 0;
+        long to = in.size();
+        Atom a = null;
+        for (String t : types) {
+            a = find(in, from, to, t);
+            if (a == null) {
+                return null;
+            }
+            from = a.start;
+            to = a.end;
+            if (t.equals("meta")) {
+                from += 4; // 'meta' is a full atom: version and flags precede its children
+            }
+        }
+        return a;
+    }
+
+    static boolean isMp4(HeaderReader in) throws IOException {
+        return in.size() >= 12 && "ftyp".equals(in.ascii(4, 4));
+    }
+
+    static void read(HeaderReader in, TrackMetadata meta) throws IOException {
+        if (!isMp4(in)) {
+            return;
+        }
+        Atom ilst = path(in, "moov", "udta", "meta", "ilst");
+        if (ilst == null) {
+            return;
+        }
+        long p = ilst.start;
+        while (p + 8 <= ilst.end) {
+            ByteBuffer h = in.read(p, 8);
+            long size = h.getInt(0) & 0xFFFFFFFFL;
+            if (size < 8 || p + size > ilst.end) {
+                return;
+            }
+            String type = in.ascii(p + 4, 4);
+            if (size <= HeaderReader.MAX_FIELD && isWanted(type)) {
+                Atom data = find(in, p + 8, p + size, "data");
+                // data payload: 4 bytes type indicator, 4 bytes locale, then the value
+                if (data != null && data.end - data.start > 8) {
+                    ByteBuffer v = in.read(data.start + 8, (int) (data.end - data.start - 8));
+                    item(type, v, meta);
+                }
+            }
+            p += size;
+        }
+    }
+
+    private static boolean isWanted(String type) {
+        switch (type) {
+            case "©nam", "©ART", "©alb", "©day", "©gen", "trkn", "gnre":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void item(String type, ByteBuffer v, TrackMetadata meta) {
+        switch (type) {
+            case "trkn" -> {
+                if (v.limit() >= 4) meta.setTrackNumber(Integer.toString(v.getShort(2) & 0xFFFF));
+            }
+            case "gnre" -> {
+                if (v.limit() >= 2) meta.setGenre(Genres.byIndex((v.getShort(0) & 0xFFFF) - 1));
+            }
+            default -> {
+                byte[] bytes = new byte[v.limit()];
+                v.get(0, bytes);
+                String s = new String(bytes, StandardCharsets.UTF_8);
+                switch (type) {
+                    case "©nam" -> meta.setTitle(s);
+                    case "©ART" -> meta.setArtist(s);
+                    case "©alb" -> meta.setAlbum(s);
+                    case "©day" -> meta.setYear(s);
+                    case "©gen" -> meta.setGenre(s);
+                    default -> { }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Entry point for in-process tag extraction. Thread-safe; the scanner calls it from
+// its walker threads. Each format keeps counters of files, failures and parse time.
+public final class TagReader {
+
+    public enum Format { MP3, FLAC, M4A, WAV, UNKNOWN }
+
+    /** Running totals for one format. */
+    public static final class ParseStats {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        public long getFiles() { return files.sum(); }
+        public long getFailures() { return failures.sum(); }
+        public long getTotalNanos() { return nanos.sum(); }
+
+        public double getAverageMicros() {
+            long n = files.sum();
+            return n == 0 ? 0 : nanos.sum() / 1000.0 / n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files, %d failed, %.1f us/file", getFiles(), getFailures(), getAverageMicros());
+        }
+    }
+
+    private static final Map<Format, ParseStats> STATS = new EnumMap<>(Format.class);
+    static {
+        for (Format f : Format.values()) {
+            STATS.put(f, new ParseStats());
+        }
+    }
+
+    private TagReader() {}
+
+    public static Format formatOf(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".mp3")) return Format.MP3;
+        if (name.endsWith(".flac")) return Format.FLAC;
+        if (name.endsWith(".m4a")) return Format.M4A;
+        if (name.endsWith(".wav")) return Format.WAV;
+        return Format.UNKNOWN;
+    }
+
+    /**
+     * Reads whatever tags the file has, plus its length from the stream headers.
+     * Never throws: a damaged or unreadable file just yields empty metadata
+     * (and counts as a failure).
+     */
+    public static TrackMetadata read(Path path) {
+        Format format = formatOf(path);
+        ParseStats stats = STATS.get(format);
+        TrackMetadata meta = new TrackMetadata();
+        long start = System.nanoTime();
+        try (HeaderReader in = new HeaderReader(path)) {
+            try {
+                switch (format) {
+                    case MP3 -> {
+                        Id3Reader.readV2(in, 0, meta);
+                        Id3Reader.readV1(in, meta);
+                    }
+                    case FLAC -> FlacReader.read(in, meta);
+                    case M4A -> Mp4Reader.read(in, meta);
+                    case WAV -> WavReader.read(in, meta);
+                    default -> { }
+                }
+            } catch (IOException | RuntimeException e) {
+                stats.failures.increment();
+            }
+            // A broken tag should not cost us the length, nor the other way round
+            try {
+                meta.duration = DurationEstimator.estimate(in, format);
+            } catch (IOException | RuntimeException e) {
+                meta.duration = 0;
+            }
+        } catch (IOException e) {
+            stats.failures.increment();
+        } finally {
+            stats.files.increment();
+            stats.nanos.add(System.nanoTime() - start);
+        }
+        return meta;
+    }
+
+    public static ParseStats getStats(Format format) {
+        return STATS.get(format);
+    }
+
+    public static String statsSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Format, ParseStats> e : STATS.entrySet()) {
+            if (e.getValue().getFiles() > 0) {
+                if (sb.length() > 0) sb.append("; ");
+                sb.append(e.getKey()).append(": ").append(e.getValue());
+            }
+        }
+        return sb.toString();
+    }
+}
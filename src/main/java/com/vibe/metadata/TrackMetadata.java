@@ -0,0 +1,47 @@
+package com.vibe.metadata;
+
+// Tag fields read from a file's header. Anything the file does not carry stays null (or 0).
+public class TrackMetadata {
+    String title;
+    String artist;
+    String album;
+    String genre;
+    int trackNumber;
+    int year;
+    double duration; // seconds, from DurationEstimator
+
+    public String getTitle() { return title; }
+    public String getArtist() { return artist; }
+    public String getAlbum() { return album; }
+    public String getGenre() { return genre; }
+    public int getTrackNumber() { return trackNumber; }
+    public int getYear() { return year; }
+    public double getDuration() { return duration; }
+
+    // Keeps the first value seen: ID3v2 wins over ID3v1, tags win over fallbacks
+    void setTitle(String v) { if (title == null) title = clean(v); }
+    void setArtist(String v) { if (artist == null) artist = clean(v); }
+    void setAlbum(String v) { if (album == null) album = clean(v); }
+    void setGenre(String v) { if (genre == null) genre = Genres.resolve(clean(v)); }
+    void setTrackNumber(String v) { if (trackNumber == 0) trackNumber = leadingInt(v); }
+    void setYear(String v) { if (year == 0) year = leadingInt(v); }
+
+    private static String clean(String v) {
+        if (v == null) return null;
+        v = v.trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    // "3/12" -> 3, "1999-05-01" -> 1999
+    static int leadingInt(String v) {
+        if (v == null) return 0;
+        int n = 0;
+        int i = 0;
+        v = v.trim();
+        while (i < v.length() && Character.isDigit(v.charAt(i)) && i < 9) {
+            n = n * 10 + (v.charAt(i) - '0');
+            i++;
+        }
+        return n;
+    }
+}
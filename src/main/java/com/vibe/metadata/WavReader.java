@@ -0,0 +1,80 @@
+package com.vibe.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+// RIFF/WAVE chunks: LIST/INFO text tags, or an embedded "id3 " chunk.
+// The data chunk is skipped by its size and never read.
+final class WavReader {
+
+    private WavReader() {}
+
+    static boolean isWav(HeaderReader in) throws IOException {
+        return in.size() >= 12 && "RIFF".equals(in.ascii(0, 4)) && "WAVE".equals(in.ascii(8, 4));
+    }
+
+    /** Calls {@code visitor} for each top-level chunk; stops when it returns false. */
+    interface ChunkVisitor {
+        boolean visit(String id, long start, long size) throws IOException;
+    }
+
+    static void chunks(HeaderReader in, ChunkVisitor visitor) throws IOException {
+        long p = 12;
+        while (p + 8 <= in.size()) {
+            String id = in.ascii(p, 4);
+            long size = in.read(p + 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt(0) & 0xFFFFFFFFL;
+            if (!visitor.visit(id, p + 8, size)) {
+                return;
+            }
+            p += 8 + size + (size & 1); // chunks are word aligned
+        }
+    }
+
+    static void read(HeaderReader in, TrackMetadata meta) throws IOException {
+        if (!isWav(in)) {
+            return;
+        }
+        chunks(in, (id, start, size) -> {
+            if (id.equals("LIST") && size >= 4 && size <= HeaderReader.MAX_FIELD && "INFO".equals(in.ascii(start, 4))) {
+                info(in.read(start + 4, (int) size - 4), meta);
+            } else if ((id.equals("id3 ") || id.equals("ID3 ")) && size > 10) {
+                Id3Reader.readV2(in, start, meta);
+            }
+            return true;
+        });
+    }
+
+    private static void info(ByteBuffer b, TrackMetadata meta) {
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        int p = 0;
+        while (p + 8 <= b.limit()) {
+            byte[] idBytes = new byte[4];
+            b.get(p, idBytes);
+            String id = new String(idBytes, StandardCharsets.ISO_8859_1);
+            int len = b.getInt(p + 4);
+            p += 8;
+            if (len < 0 || p + len > b.limit()) {
+                return;
+            }
+            byte[] bytes = new byte[len];
+            b.get(p, bytes);
+            p += len + (len & 1);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            int nul = s.indexOf('\0');
+            if (nul >= 0) {
+                s = s.substring(0, nul);
+            }
+            switch (id) {
+                case "INAM" -> meta.setTitle(s);
+                case "IART" -> meta.setArtist(s);
+                case "IPRD" -> meta.setAlbum(s);
+                case "ITRK", "IPRT" -> meta.setTrackNumber(s);
+                case "ICRD" -> meta.setYear(s);
+                case "IGNR" -> meta.setGenre(s);
+                default -> { }
+            }
+        }
+    }
+}
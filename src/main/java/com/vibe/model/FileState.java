@@ -0,0 +1,37 @@
+package com.vibe.model;
+
+// What the library last saw on disk for a track: used to skip unchanged files on rescan.
+public class FileState {
+    private String trackId;
+    private String filepath;
+    private long size;
+    private long lastModified; // epoch millis
+    private long fingerprint;
+    private String contentHash; // audio payload hash for duplicate detection; null if not tried, "" if unhashable
+
+    public FileState(String trackId, String filepath, long size, long lastModified, long fingerprint) {
+        this(trackId, filepath, size, lastModified, fingerprint, null);
+    }
+
+    public FileState(String trackId, String filepath, long size, long lastModified, long fingerprint,
+            String contentHash) {
+        this.trackId = trackId;
+        this.filepath = filepath;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.fingerprint = fingerprint;
+        this.contentHash = contentHash;
+    }
+
+    public String getTrackId() { return trackId; }
+    public String getFilepath() { return filepath; }
+    public long getSize() { return size; }
+    public long getLastModified() { return lastModified; }
+    public long getFingerprint() { return fingerprint; }
+    public String getContentHash() { return contentHash; }
+
+    /** Size and mtime match, so the file does not need to be re-read. */
+    public boolean sameStat(long size, long lastModified) {
+        return this.size == size && this.lastModified == lastModified;
+    }
+}
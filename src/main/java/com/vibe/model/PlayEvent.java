@@ -0,0 +1,28 @@
+package com.vibe.model;
+
+// One thing that happened to a track during playback, for the listening history.
+public class PlayEvent {
+
+    public enum Type { STARTED, COMPLETED, SKIPPED }
+
+    private final String trackId;
+    private final Type type;
+    private final double position; // seconds into the track when it happened
+    private final long timestamp; // epoch millis
+
+    public PlayEvent(String trackId, Type type, double position) {
+        this(trackId, type, position, System.currentTimeMillis());
+    }
+
+    public PlayEvent(String trackId, Type type, double position, long timestamp) {
+        this.trackId = trackId;
+        this.type = type;
+        this.position = position;
+        this.timestamp = timestamp;
+    }
+
+    public String getTrackId() { return trackId; }
+    public Type getType() { return type; }
+    public double getPosition() { return position; }
+    public long getTimestamp() { return timestamp; }
+}
@@ -0,0 +1,30 @@
+package com.vibe.model;
+
+// Loudness analysis of one track: integrated loudness (EBU R128, LUFS), the number of
+// 400 ms blocks that passed the gates, the sample peak, and the resulting gains in dB
+// relative to the ReplayGain 2 reference of -18 LUFS. NaN means "not known".
+public class ReplayGain {
+    private final String trackId;
+    private final double loudness;
+    private final long blocks; // 0 for silent or undecodable tracks
+    private final double peak; // linear, 1.0 = full scale
+    private final double trackGain;
+    private final double albumGain;
+
+    public ReplayGain(String trackId, double loudness, long blocks, double peak, double trackGain,
+            double albumGain) {
+        this.trackId = trackId;
+        this.loudness = loudness;
+        this.blocks = blocks;
+        this.peak = peak;
+        this.trackGain = trackGain;
+        this.albumGain = albumGain;
+    }
+
+    public String getTrackId() { return trackId; }
+    public double getLoudness() { return loudness; }
+    public long getBlocks() { return blocks; }
+    public double getPeak() { return peak; }
+    public double getTrackGain() { return trackGain; }
+    public double getAlbumGain() { return albumGain; }
+}
@@ -0,0 +1,54 @@
+package com.vibe.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// An append-only dictionary for strings that many tracks repeat: each distinct value is
+// stored once and tracks keep its int code. Codes are never reused or freed; the pools
+// hold artists, albums, genres and folders, which stay small next to the track count.
+// Lookups by code are lock-free; adding a new value takes the pool's lock.
+public final class StringPool {
+    public static final StringPool ARTISTS = new StringPool();
+    public static final StringPool ALBUMS = new StringPool();
+    public static final StringPool GENRES = new StringPool();
+    public static final StringPool DIRECTORIES = new StringPool();
+
+    /** Code of null. */
+    public static final int NONE = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size; // guarded by this
+
+    /** The code for {@code s}, adding it if it is new. */
+    public int encode(String s) {
+        if (s == null) {
+            return NONE;
+        }
+        Integer code = codes.get(s);
+        return code != null ? code : add(s);
+    }
+
+    private synchronized int add(String s) {
+        Integer code = codes.get(s);
+        if (code != null) {
+            return code;
+        }
+        String[] v = values;
+        if (size == v.length) {
+            v = Arrays.copyOf(v, size * 2);
+        }
+        v[size] = s;
+        values = v; // publish before the code can be seen
+        codes.put(s, size);
+        return size++;
+    }
+
+    public String decode(int code) {
+        return code == NONE ? null : values[code];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
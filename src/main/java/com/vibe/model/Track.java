@@ -1,31 +1,103 @@
 package com.vibe.model;
 
+import java.util.UUID;
+
+// A library track, kept small because the library can hold hundreds of thousands.
+// Artist, album, genre and folder are codes into the shared StringPools instead of a
+// String each; the file path is split into its folder (pooled) and file name. A UUID id
+// is held as its two longs, other ids as given. The getters rebuild the strings; the id
+// string, which playback and the views compare all the time, is kept once built.
 public class Track {
-    private String id;
-    private String filepath;
-    private String title;
-    private String artist;
-    private String album;
-    private long duration; // in seconds
+    private final long idHigh, idLow; // UUID bits, when rawId is null
+    private final String rawId; // an id that is not a UUID
+    private String id; // getId() once called; a racy cache like String.hash, as strings are immutable
+    private final int directory; // folder of filepath, with its trailing separator
+    private final String fileName;
+    private final String title;
+    private final int artist;
+    private final int album;
+    private final int genre;
+    private final long duration; // in seconds
+    private final int trackNumber; // 0 if unknown
+    private final int year; // 0 if unknown
 
     public Track(String id, String filepath, String title, String artist, String album, long duration) {
-        this.id = id;
-        this.filepath = filepath;
+        this(id, filepath, title, artist, album, duration, 0, 0, null);
+    }
+
+    public Track(String id, String filepath, String title, String artist, String album, long duration,
+            int trackNumber, int year, String genre) {
+        long[] uuid = parseUuid(id);
+        this.idHigh = uuid != null ? uuid[0] : 0;
+        this.idLow = uuid != null ? uuid[1] : 0;
+        this.rawId = uuid != null ? null : id;
+        int slash = filepath == null ? -1 : Math.max(filepath.lastIndexOf('/'), filepath.lastIndexOf('\\'));
+        this.directory = slash < 0 ? StringPool.NONE : StringPool.DIRECTORIES.encode(filepath.substring(0, slash + 1));
+        this.fileName = slash < 0 ? filepath : filepath.substring(slash + 1);
         this.title = title;
-        this.artist = artist;
-        this.album = album;
+        this.artist = StringPool.ARTISTS.encode(artist);
+        this.album = StringPool.ALBUMS.encode(album);
+        this.genre = StringPool.GENRES.encode(genre);
         this.duration = duration;
+        this.trackNumber = trackNumber;
+        this.year = year;
+    }
+
+    /**
+     * The two halves of a lower-case canonical UUID ({@code 8-4-4-4-12} ASCII hex digits);
+     * null for anything that would not print back the same.
+     */
+    public static long[] parseUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        long[] out = new long[2];
+        int digits = 0;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return null;
+                }
+                continue;
+            }
+            int d;
+            if (c >= '0' && c <= '9') {
+                d = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                d = c - 'a' + 10;
+            } else {
+                return null; // upper case, or a digit from another script, would not round-trip
+            }
+            out[digits / 16] = out[digits / 16] << 4 | d;
+            digits++;
+        }
+        return out;
+    }
+
+    public String getId() {
+        String s = id;
+        if (s == null) {
+            s = rawId != null ? rawId : new UUID(idHigh, idLow).toString();
+            id = s;
+        }
+        return s;
+    }
+
+    public String getFilepath() {
+        return directory == StringPool.NONE ? fileName : StringPool.DIRECTORIES.decode(directory) + fileName;
     }
 
-    public String getId() { return id; }
-    public String getFilepath() { return filepath; }
     public String getTitle() { return title; }
-    public String getArtist() { return artist; }
-    public String getAlbum() { return album; }
+    public String getArtist() { return StringPool.ARTISTS.decode(artist); }
+    public String getAlbum() { return StringPool.ALBUMS.decode(album); }
     public long getDuration() { return duration; }
+    public int getTrackNumber() { return trackNumber; }
+    public int getYear() { return year; }
+    public String getGenre() { return StringPool.GENRES.decode(genre); }
 
     @Override
     public String toString() {
-        return title + " - " + artist;
+        return title + " - " + getArtist();
     }
 }
@@ -0,0 +1,28 @@
+package com.vibe.model;
+
+// Per-track listening counters, maintained alongside the raw play-event log.
+public class TrackStats {
+    private final String trackId;
+    private final long plays;
+    private final long completions;
+    private final long skips;
+    private final long lastPlayed; // epoch millis, 0 if never
+    private final double secondsPlayed;
+
+    public TrackStats(String trackId, long plays, long completions, long skips, long lastPlayed,
+            double secondsPlayed) {
+        this.trackId = trackId;
+        this.plays = plays;
+        this.completions = completions;
+        this.skips = skips;
+        this.lastPlayed = lastPlayed;
+        this.secondsPlayed = secondsPlayed;
+    }
+
+    public String getTrackId() { return trackId; }
+    public long getPlays() { return plays; }
+    public long getCompletions() { return completions; }
+    public long getSkips() { return skips; }
+    public long getLastPlayed() { return lastPlayed; }
+    public double getSecondsPlayed() { return secondsPlayed; }
+}
@@ -6,6 +6,7 @@ public class DoublyLinkedList<T> {
         public T value;
         public Node<T> next;
         public Node<T> prev;
+        private DoublyLinkedList<T> list; // null once unlinked
 
         public Node(T value) {
             this.value = value;
@@ -17,7 +18,13 @@ public class DoublyLinkedList<T> {
     private int size;
 
     public void add(T value) {
+        append(value);
+    }
+
+    /** Adds at the tail and returns the new node. */
+    public Node<T> append(T value) {
         Node<T> newNode = new Node<>(value);
+        newNode.list = this;
         if (head == null) {
             head = tail = newNode;
         } else {
@@ -26,8 +33,74 @@ public class DoublyLinkedList<T> {
             tail = newNode;
         }
         size++;
+        linked(newNode);
+        return newNode;
     }
 
+    /**
+     * O(1): inserts right after {@code node} (at the head if node is null).
+     *
+     * @throws IllegalArgumentException if {@code node} has been unlinked or belongs to another list
+     */
+    public Node<T> insertAfter(Node<T> node, T value) {
+        if (node != null && !isLinked(node)) {
+            throw new IllegalArgumentException("Node is not in this list");
+        }
+        if (node == tail) {
+            return append(value);
+        }
+        Node<T> newNode = new Node<>(value);
+        newNode.list = this;
+        Node<T> next = node == null ? head : node.next;
+        newNode.prev = node;
+        newNode.next = next;
+        next.prev = newNode;
+        if (node == null) {
+            head = newNode;
+        } else {
+            node.next = newNode;
+        }
+        size++;
+        linked(newNode);
+        return newNode;
+    }
+
+    /**
+     * O(1): removes {@code node} from the list. Its prev/next are cleared, so a stale
+     * reference cannot be used to walk (or insert) into the list afterwards.
+     *
+     * @throws IllegalArgumentException if {@code node} is not in this list
+     */
+    public void unlink(Node<T> node) {
+        if (!isLinked(node)) {
+            throw new IllegalArgumentException("Node is not in this list");
+        }
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tail = node.prev;
+        }
+        size--;
+        node.prev = null;
+        node.next = null;
+        node.list = null;
+        unlinked(node);
+    }
+
+    /** True if {@code node} is currently linked into this list. */
+    public boolean isLinked(Node<T> node) {
+        return node != null && node.list == this;
+    }
+
+    // Hooks for subclasses that keep an index over the nodes
+    protected void linked(Node<T> node) {}
+    protected void unlinked(Node<T> node) {}
+
     // FR-2: Playlist navigation logic usually requires iterating
     public Node<T> getHead() {
         return head;
@@ -38,6 +111,13 @@ public class DoublyLinkedList<T> {
     }
 
     public void clear() {
+        for (Node<T> n = head; n != null; ) {
+            Node<T> next = n.next;
+            n.prev = null;
+            n.next = null;
+            n.list = null;
+            n = next;
+        }
         head = null;
         tail = null;
         size = 0;
@@ -1,10 +1,155 @@
 package com.vibe.structures;
 
-import java.util.Stack;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+import com.vibe.model.Track;
 
 // FR-5: Listening History (Stack)
-// LIFO stack for backtracking.
-public class HistoryStack<T> extends Stack<T> {
-    // Wrapper or extension of java.util.Stack
-    // If specific logic needed, add here.
+// LIFO of track ids with the time each was left, in a fixed-size ring: push and pop
+// are O(1), and once full the oldest entry is dropped, so memory stays flat however
+// long the player runs. UUID ids are packed into two longs; anything else is kept
+// as a string in a side array that is only allocated if needed.
+// Evicted entries can optionally be appended to a text file ("millis<TAB>id" lines).
+// Not synchronized: use it from the FX thread only.
+public class HistoryStack implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final long[] hi;
+    private final long[] lo;
+    private final long[] at; // epoch millis
+    private String[] raw; // non-UUID ids, by slot
+
+    private int top; // slot the next push goes to
+    private int size;
+
+    private final Path spillFile;
+    private BufferedWriter spill;
+
+    public HistoryStack() {
+        this(DEFAULT_CAPACITY, null);
+    }
+
+    /** @param spillFile where evicted entries are appended, or null to just drop them */
+    public HistoryStack(int capacity, Path spillFile) {
+        this.capacity = Math.max(1, capacity);
+        this.hi = new long[this.capacity];
+        this.lo = new long[this.capacity];
+        this.at = new long[this.capacity];
+        this.spillFile = spillFile;
+    }
+
+    public void push(String id) {
+        push(id, System.currentTimeMillis());
+    }
+
+    public void push(String id, long timestamp) {
+        if (id == null) {
+            return;
+        }
+        if (size == capacity) {
+            evict(top); // top is also the oldest slot once the ring is full
+        } else {
+            size++;
+        }
+        long[] uuid = Track.parseUuid(id);
+        if (uuid != null) {
+            hi[top] = uuid[0];
+            lo[top] = uuid[1];
+            if (raw != null) {
+                raw[top] = null;
+            }
+        } else {
+            if (raw == null) {
+                raw = new String[capacity];
+            }
+            raw[top] = id;
+        }
+        at[top] = timestamp;
+        top = (top + 1) % capacity;
+    }
+
+    /** Most recent id, removed; null if empty. */
+    public String pop() {
+        if (size == 0) {
+            return null;
+        }
+        top = (top - 1 + capacity) % capacity;
+        size--;
+        String id = idAt(top);
+        if (raw != null) {
+            raw[top] = null;
+        }
+        return id;
+    }
+
+    /** Most recent id without removing it; null if empty. */
+    public String peek() {
+        return size == 0 ? null : idAt((top - 1 + capacity) % capacity);
+    }
+
+    /** When the most recent entry was pushed; 0 if empty. */
+    public long peekTimestamp() {
+        return size == 0 ? 0 : at[(top - 1 + capacity) % capacity];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        size = 0;
+        top = 0;
+        raw = null;
+    }
+
+    private String idAt(int slot) {
+        if (raw != null && raw[slot] != null) {
+            return raw[slot];
+        }
+        return new UUID(hi[slot], lo[slot]).toString();
+    }
+
+    private void evict(int slot) {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spill == null) {
+                spill = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spill.write(at[slot] + "\t" + idAt(slot));
+            spill.newLine();
+        } catch (IOException e) {
+            System.err.println("History spill failed: " + e.getMessage());
+        }
+    }
+
+    /** Flushes and closes the spill file, if one was opened. */
+    @Override
+    public void close() {
+        if (spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spill = null;
+        }
+    }
 }
@@ -0,0 +1,68 @@
+package com.vibe.structures;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// DoublyLinkedList plus a hash index from key (e.g. track id) to node, so jumping to
+// an element, syncing the cursor after "back" and removing an element are O(1)
+// instead of a walk from the head.
+// If a key occurs more than once the index points at the copy added first; once that
+// node is removed, the next lookup for the key falls back to a scan and re-indexes.
+public class IndexedLinkedList<K, T> extends DoublyLinkedList<T> {
+
+    private final Function<T, K> keyOf;
+    private final Map<K, Node<T>> index = new HashMap<>();
+    private boolean hasDuplicates;
+
+    public IndexedLinkedList(Function<T, K> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    /** Node holding {@code key}, or null if it is not in the list. */
+    public Node<T> find(K key) {
+        Node<T> node = index.get(key);
+        if (node == null && hasDuplicates) {
+            for (Node<T> n = getHead(); n != null; n = n.next) {
+                if (key.equals(keyOf.apply(n.value))) {
+                    index.put(key, n);
+                    return n;
+                }
+            }
+        }
+        return node;
+    }
+
+    public boolean contains(K key) {
+        return find(key) != null;
+    }
+
+    /** Removes the indexed element with {@code key}; returns false if there was none. */
+    public boolean remove(K key) {
+        Node<T> node = find(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    @Override
+    protected void linked(Node<T> node) {
+        if (index.putIfAbsent(keyOf.apply(node.value), node) != null) {
+            hasDuplicates = true;
+        }
+    }
+
+    @Override
+    protected void unlinked(Node<T> node) {
+        index.remove(keyOf.apply(node.value), node);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        index.clear();
+        hasDuplicates = false;
+    }
+}
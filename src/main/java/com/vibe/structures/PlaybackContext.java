@@ -0,0 +1,368 @@
+package com.vibe.structures;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// FR-2: the "what plays next" context, with a cursor.
+// Starts as a view over a list the caller already has (the table's rows, or an array
+// of ids resolved on demand), so starting playback from a 100k-track library costs
+// O(1) allocation instead of a node per row. Only when the context is edited
+// (remove, insert) is it copied into an IndexedLinkedList, where edits are O(1).
+//
+// A view follows its backing list: if rows are sorted or removed underneath, the
+// cursor re-finds the current element before stepping. A view may have holes (nulls
+// where rows were deleted since); they are stepped over. A LazyView, whose rows arrive
+// in the background, is never copied: a step that reaches a row still on its way stops
+// there instead of taking it for a hole, and whenReady() says when to try again.
+//
+// Once edited, removing the current element leaves the cursor in the gap it left:
+// it is anchored on the live nodes either side, which later removals keep up to date,
+// so next(), previous() and insertAfterCurrent() carry on from where it was.
+public class PlaybackContext<K, T> {
+
+    /**
+     * A view whose rows are loaded in the background, such as the library table's pages.
+     * Reading a row that has not arrived yet gives null and starts loading it.
+     */
+    public interface LazyView<K> {
+        /** From {@link #locate}: the answer needs a lookup, which has been started. */
+        int UNKNOWN = -2;
+
+        /** Index of {@code key}; -1 if it is not in the view, or {@link #UNKNOWN}. Must not block. */
+        int locate(K key);
+
+        /** False while the row at {@code index} is on its way (so a null there is not a hole). */
+        boolean isLoaded(int index);
+
+        /** Runs {@code action}, on the thread the view is used from, once that row has arrived. */
+        void whenLoaded(int index, Runnable action);
+    }
+
+    private static final int PENDING = -2; // from step(): a row on the way is in between
+
+    private final Function<T, K> keyOf;
+
+    // View mode
+    private List<T> view;
+    private int pos = -1;
+    private Map<K, Integer> viewIndex; // built on the first non-adjacent jump
+    private int indexedSize;
+    private final LazyView<K> lazy; // optional: the view's rows arrive in the background
+    private int waitingFor = -1; // the row the last step stopped at because it was on its way
+    private final Deque<T> ahead = new ArrayDeque<>(); // inserted into a lazy view: played before it goes on
+
+    // Linked mode (after the first edit)
+    private IndexedLinkedList<K, T> linked;
+    private DoublyLinkedList.Node<T> node; // null when there is no cursor or it is in a gap
+    private DoublyLinkedList.Node<T> gapPrev; // live neighbours of the gap, when inGap
+    private DoublyLinkedList.Node<T> gapNext;
+
+    private T current;
+    private boolean inGap; // current was removed (or was inserted): the cursor stands where it was
+
+    private PlaybackContext(List<T> view, Function<T, K> keyOf, LazyView<K> lazy) {
+        this.view = view;
+        this.keyOf = keyOf;
+        this.lazy = lazy;
+    }
+
+    /** Wraps {@code items} without copying; it should be random access. */
+    public static <K, T> PlaybackContext<K, T> of(List<T> items, Function<T, K> keyOf) {
+        return new PlaybackContext<>(items, keyOf, null);
+    }
+
+    /** As {@link #of(List, Function)}, for a view whose rows arrive in the background; {@code rows} is usually {@code items}. */
+    public static <K, T> PlaybackContext<K, T> of(List<T> items, Function<T, K> keyOf, LazyView<K> rows) {
+        return new PlaybackContext<>(items, keyOf, rows);
+    }
+
+    /** Wraps a list of keys; elements are resolved only when the cursor reaches them. */
+    public static <K, T> PlaybackContext<K, T> ofKeys(List<K> keys, Function<K, T> resolver, Function<T, K> keyOf) {
+        return new PlaybackContext<>(new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return resolver.apply(keys.get(index));
+            }
+
+            @Override
+            public int size() {
+                return keys.size();
+            }
+        }, keyOf, null);
+    }
+
+    public static <K, T> PlaybackContext<K, T> empty(Function<T, K> keyOf) {
+        return new PlaybackContext<>(List.of(), keyOf, null);
+    }
+
+    public T current() {
+        return current;
+    }
+
+    public int size() {
+        return view != null ? view.size() + ahead.size() : linked.size();
+    }
+
+    /** True once an edit has copied the view into a linked list. */
+    public boolean isMaterialised() {
+        return linked != null;
+    }
+
+    /** Puts the cursor on {@code index} of the backing view (or on the index-th node once edited). */
+    public boolean moveTo(int index) {
+        if (view == null) {
+            DoublyLinkedList.Node<T> n = linked.getHead();
+            for (int i = 0; i < index && n != null; i++) {
+                n = n.next;
+            }
+            return setNode(n);
+        }
+        T value = index < 0 || index >= view.size() ? null : view.get(index);
+        if (value == null) {
+            return false;
+        }
+        pos = index;
+        current = value;
+        inGap = false;
+        return true;
+    }
+
+    /** Puts the cursor on the element with {@code key}; false (cursor unchanged) if absent. */
+    public boolean moveTo(K key) {
+        if (view == null) {
+            return setNode(linked.find(key));
+        }
+        syncView();
+        // "Back" usually lands next to where we are, so try the neighbours first
+        for (int i = pos - 1; i <= pos + 1; i++) {
+            if (i >= 0 && i < view.size() && hasKey(view.get(i), key)) {
+                return moveTo(i);
+            }
+        }
+        int i = indexOf(key);
+        return i >= 0 && moveTo(i);
+    }
+
+    /** Steps forward; returns the new current element, or null at the end (see {@link #whenReady}). */
+    public T next() {
+        if (view == null) {
+            return setNode(after()) ? current : null;
+        }
+        if (!ahead.isEmpty()) {
+            syncView(); // place the cursor while current is still the view's
+            current = ahead.pollFirst();
+            inGap = true;
+            return current;
+        }
+        syncView();
+        return moveTo(step(pos, 1)) ? current : null;
+    }
+
+    /** The element next() would return, without moving; null at the end. */
+    public T peekNext() {
+        if (view == null) {
+            DoublyLinkedList.Node<T> n = after();
+            return n != null ? n.value : null;
+        }
+        if (!ahead.isEmpty()) {
+            return ahead.peekFirst();
+        }
+        syncView();
+        int i = step(pos, 1);
+        return i >= 0 ? view.get(i) : null;
+    }
+
+    /** Steps back; returns the new current element, or null at the start (see {@link #whenReady}). */
+    public T previous() {
+        if (view == null) {
+            return setNode(before()) ? current : null;
+        }
+        syncView();
+        // In a gap, pos is the row before it
+        return moveTo(step(inGap ? pos + 1 : pos, -1)) ? current : null;
+    }
+
+    /**
+     * If the last step returned null only because the row it needs is still loading (a
+     * LazyView), runs {@code action} once it has arrived and returns true. False otherwise,
+     * e.g. at the end of the list.
+     */
+    public boolean whenReady(Runnable action) {
+        if (view == null || lazy == null || waitingFor < 0) {
+            return false;
+        }
+        lazy.whenLoaded(waitingFor, action);
+        return true;
+    }
+
+    /**
+     * Removes the element with {@code key}. If it is the current one, next() still continues after it.
+     * A LazyView is not copied: the caller removes the row from it, and the cursor follows.
+     */
+    public boolean remove(K key) {
+        if (view != null) {
+            syncView();
+            if (lazy != null) {
+                boolean inserted = ahead.removeIf(v -> key.equals(keyOf.apply(v)));
+                return inserted || indexOf(key) != -1;
+            }
+            if (indexOf(key) < 0) {
+                return false; // not in the backing list (or already gone): nothing to copy or unlink
+            }
+        }
+        materialise();
+        DoublyLinkedList.Node<T> n = linked.find(key);
+        if (n == null) {
+            return false;
+        }
+        if (n == node) {
+            node = null;
+            inGap = true;
+            gapPrev = n.prev;
+            gapNext = n.next;
+        } else if (inGap && n == gapPrev) {
+            gapPrev = n.prev;
+        } else if (inGap && n == gapNext) {
+            gapNext = n.next;
+        }
+        linked.unlink(n);
+        return true;
+    }
+
+    /** Inserts {@code value} right after the cursor (at the front if there is none), so it plays next. */
+    public void insertAfterCurrent(T value) {
+        if (view != null && lazy != null) {
+            ahead.addFirst(value); // a lazy view cannot be copied: play it next, then go on with the view
+            return;
+        }
+        materialise();
+        if (inGap) {
+            gapNext = linked.insertAfter(gapPrev, value);
+        } else {
+            linked.insertAfter(node, value);
+        }
+    }
+
+    // Neighbours of the cursor in linked mode, whether it is on a node or in a gap
+    private DoublyLinkedList.Node<T> after() {
+        return inGap ? gapNext : node != null ? node.next : null;
+    }
+
+    private DoublyLinkedList.Node<T> before() {
+        return inGap ? gapPrev : node != null ? node.prev : null;
+    }
+
+    private boolean setNode(DoublyLinkedList.Node<T> n) {
+        if (n == null) {
+            return false;
+        }
+        node = n;
+        current = n.value;
+        inGap = false;
+        gapPrev = null;
+        gapNext = null;
+        return true;
+    }
+
+    // Index of the first element past from in direction dir (1 or -1), over holes; -1 if
+    // none, PENDING if a row on its way comes first
+    private int step(int from, int dir) {
+        waitingFor = -1;
+        for (int i = from + dir; i >= 0 && i < view.size(); i += dir) {
+            if (view.get(i) != null) {
+                return i;
+            }
+            if (lazy != null && !lazy.isLoaded(i)) {
+                waitingFor = i;
+                return PENDING;
+            }
+        }
+        return -1;
+    }
+
+    // The backing list may have been re-sorted or shrunk since the last step
+    private void syncView() {
+        if (current == null || inGap || (pos < view.size() && hasKey(view.get(pos), keyOf.apply(current)))) {
+            return;
+        }
+        int i = indexOf(keyOf.apply(current));
+        if (i >= 0) {
+            pos = i;
+        } else if (i == -1) {
+            pos = Math.min(pos, view.size()) - 1; // current vanished: continue from its old slot
+            inGap = true;
+        }
+        // LazyView.UNKNOWN: stay put until the view can tell
+    }
+
+    private boolean hasKey(T value, K key) {
+        return value != null && key.equals(keyOf.apply(value));
+    }
+
+    // Index of key in the view; -1 if absent, LazyView.UNKNOWN if a lazy view cannot tell yet
+    private int indexOf(K key) {
+        if (lazy != null) {
+            int i = lazy.locate(key);
+            if (i >= 0 && i < view.size() && (hasKey(view.get(i), key) || !lazy.isLoaded(i))) {
+                return i;
+            }
+            return i == LazyView.UNKNOWN ? i : -1;
+        }
+        if (viewIndex != null && indexedSize == view.size()) {
+            Integer i = viewIndex.get(key);
+            if (i == null) {
+                return -1; // e.g. a history entry from an earlier context
+            }
+            if (hasKey(view.get(i), key)) {
+                return i;
+            }
+        }
+        // Not built yet or stale: build once, then lookups are O(1) until the view changes
+        viewIndex = new HashMap<>();
+        indexedSize = view.size();
+        for (int i = indexedSize - 1; i >= 0; i--) {
+            T value = view.get(i);
+            if (value != null) {
+                viewIndex.put(keyOf.apply(value), i); // first occurrence wins
+            }
+        }
+        Integer i = viewIndex.get(key);
+        return i != null ? i : -1;
+    }
+
+    private void materialise() {
+        if (view == null) {
+            return;
+        }
+        syncView();
+        linked = new IndexedLinkedList<>(keyOf);
+        node = null;
+        // After syncView, pos is the current element, or the slot before the gap it left
+        boolean onCurrent = current != null && !inGap && pos >= 0 && pos < view.size()
+                && hasKey(view.get(pos), keyOf.apply(current));
+        inGap = current != null && !onCurrent;
+        gapPrev = null;
+        gapNext = null;
+        for (int i = 0; i < view.size(); i++) {
+            T value = view.get(i);
+            if (value == null) {
+                continue; // a hole
+            }
+            DoublyLinkedList.Node<T> n = linked.append(value);
+            if (onCurrent && i == pos) {
+                node = n;
+            } else if (inGap && i <= pos) {
+                gapPrev = n;
+            } else if (inGap && gapNext == null) {
+                gapNext = n;
+            }
+        }
+        view = null;
+        viewIndex = null;
+    }
+}
@@ -0,0 +1,37 @@
+package com.vibe.ui;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+
+// Hands the results of background work back to the JavaFX application thread.
+final class FxThread {
+    private FxThread() {
+    }
+
+    /**
+     * Runs {@code onResult} on the FX thread once {@code f} succeeds. Failures are logged;
+     * a cancelled future (a superseded request) is ignored.
+     */
+    static <T> void then(CompletableFuture<T> f, Consumer<? super T> onResult) {
+        then(f, onResult, Throwable::printStackTrace);
+    }
+
+    /** As above, but a failure goes to {@code onError} (on the FX thread) with its cause unwrapped. */
+    static <T> void then(CompletableFuture<T> f, Consumer<? super T> onResult, Consumer<? super Throwable> onError) {
+        f.whenComplete((value, error) -> Platform.runLater(() -> {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            if (error != null) {
+                onError.accept(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                onResult.accept(value);
+            }
+        }));
+    }
+}
@@ -1,7 +1,7 @@
 package com.vibe.ui;
 
 import com.vibe.Main;
-import com.vibe.db.DatabaseManager;
+import com.vibe.db.AsyncDatabase;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
@@ -14,6 +14,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 public class LoginScene {
+    private final AsyncDatabase db = AsyncDatabase.getInstance();
 
     public Parent getView(Stage stage) {
         BorderPane root = new BorderPane();
@@ -42,6 +43,7 @@ public class LoginScene {
 
         Button loginBtn = new Button("Log In");
         loginBtn.setMaxWidth(300);
+        Button registerBtn = new Button("Register");
         loginBtn.setOnAction(e -> {
             String user = usernameInput.getText().trim();
             String pass = passwordInput.getText().trim();
@@ -51,16 +53,20 @@ public class LoginScene {
                 return;
             }
 
-            boolean success = DatabaseManager.loginUser(user, pass);
-            if (success) {
-                MainScene mainScene = new MainScene();
-                Main.setScene(new Scene(mainScene.getView(Main.getStage()), 1280, 800));
-            } else {
-                errorLabel.setText("Invalid credentials");
-            }
+            loginBtn.setDisable(true);
+            registerBtn.setDisable(true);
+            FxThread.then(db.loginUser(user, pass), success -> {
+                loginBtn.setDisable(false);
+                registerBtn.setDisable(false);
+                if (success) {
+                    MainScene mainScene = new MainScene();
+                    Main.setScene(new Scene(mainScene.getView(Main.getStage()), 1280, 800));
+                } else {
+                    errorLabel.setText("Invalid credentials");
+                }
+            }, error -> failed(error, loginBtn, registerBtn, errorLabel));
         });
 
-        Button registerBtn = new Button("Register");
         registerBtn.setMaxWidth(300);
         registerBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: #a78bfa;");
         registerBtn.setOnAction(e -> {
@@ -73,14 +79,19 @@ public class LoginScene {
                 return;
             }
 
-            boolean success = DatabaseManager.registerUser(user, pass);
-            if (success) {
-                errorLabel.setText("Registered! Please login.");
-                errorLabel.setStyle("-fx-text-fill: green;");
-            } else {
-                errorLabel.setText("User already exists");
-                errorLabel.setStyle("-fx-text-fill: red;");
-            }
+            loginBtn.setDisable(true);
+            registerBtn.setDisable(true);
+            FxThread.then(db.registerUser(user, pass), success -> {
+                loginBtn.setDisable(false);
+                registerBtn.setDisable(false);
+                if (success) {
+                    errorLabel.setText("Registered! Please login.");
+                    errorLabel.setStyle("-fx-text-fill: green;");
+                } else {
+                    errorLabel.setText("User already exists");
+                    errorLabel.setStyle("-fx-text-fill: red;");
+                }
+            }, error -> failed(error, loginBtn, registerBtn, errorLabel));
         });
 
         layout.getChildren().addAll(title, usernameInput, passwordInput, loginBtn, registerBtn, errorLabel);
@@ -88,4 +99,13 @@ public class LoginScene {
         root.setCenter(layout);
         return root;
     }
+
+    // The database call itself failed: say so and let the user try again
+    private static void failed(Throwable error, Button loginBtn, Button registerBtn, Label errorLabel) {
+        error.printStackTrace();
+        loginBtn.setDisable(false);
+        registerBtn.setDisable(false);
+        errorLabel.setText("Could not reach the database: " + error.getMessage());
+        errorLabel.setStyle("-fx-text-fill: red;");
+    }
 }
@@ -1,29 +1,77 @@
 package com.vibe.ui;
 
+import com.vibe.PlaybackClock;
 import com.vibe.PlayerController;
-import com.vibe.db.DatabaseManager;
+import com.vibe.audio.LoudnessScanner;
+import com.vibe.audio.WaveformCache;
+import com.vibe.db.AsyncDatabase;
+import com.vibe.db.DuplicateGroup;
+import com.vibe.db.TrackOrder;
+import com.vibe.library.LibraryDelta;
+import com.vibe.library.LibraryScanner;
+import com.vibe.library.LibrarySync;
+import com.vibe.library.LibraryWatcher;
 import com.vibe.model.Track;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
 import javafx.geometry.Pos;
 import javafx.scene.Parent;
 import javafx.scene.control.*;
-import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.*;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import com.vibe.model.Playlist;
 import javafx.util.Callback;
 
 public class MainScene {
 
     private PlayerController player = PlayerController.getInstance();
+    private WaveformCache waveforms = WaveformCache.getInstance();
+    private LoudnessScanner loudness = LoudnessScanner.getInstance();
+    private AsyncDatabase db = AsyncDatabase.getInstance(); // no SQL on the FX thread
 
     private TableView<Track> libraryTable;
+    private PagedTrackList libraryPages; // the table's items unless a search is showing
     private VBox libraryView;
 
+    // Folder import or rescan in progress (null when idle)
+    private Task<?> activeScan;
+    private Button importBtn;
+    private Button rescanBtn;
+    private Button cancelScanBtn;
+    private Label scanStatus;
+
+    // Library search: runs off the FX thread once typing pauses; only the latest query is shown.
+    // Results come a page at a time: the next one is fetched when the last row scrolls into view
+    private static final int SEARCH_PAGE = 500;
+    private String searchMore; // the query shown, while it may have more results
+    private TextField searchField;
+    private final PauseTransition searchDelay = new PauseTransition(javafx.util.Duration.millis(250));
+    private CompletableFuture<List<Track>> activeSearch;
+
+    // Live sync of imported folders (null if the OS refused a watch service)
+    private LibraryWatcher watcher;
+
     public Parent getView(Stage stage) {
         BorderPane root = new BorderPane();
 
@@ -130,6 +178,14 @@ public class MainScene {
         createLibraryView(root, stage);
         root.setCenter(libraryView);
 
+        try {
+            watcher = new LibraryWatcher(delta -> applyDelta(libraryTable.getItems(), delta));
+            watcher.start();
+            stage.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> watcher.close());
+        } catch (IOException e) {
+            System.err.println("Live library sync unavailable: " + e.getMessage());
+        }
+
         // --- Bottom Controls ---
         HBox controls = new HBox(20);
         controls.setPrefHeight(90);
@@ -161,8 +217,12 @@ public class MainScene {
         progressBox.setAlignment(Pos.CENTER);
         Slider progress = new Slider();
         progress.setPrefWidth(300);
+        progress.getStyleClass().add("waveform-slider");
+        WaveformView waveform = new WaveformView();
+        waveform.setPrefHeight(28);
+        StackPane seekBar = new StackPane(waveform, progress);
         Label timeLabel = new Label("0:00 / 0:00");
-        progressBox.getChildren().addAll(btns, progress, timeLabel);
+        progressBox.getChildren().addAll(btns, seekBar, timeLabel);
 
         // Volume
         HBox volumeBox = new HBox(10);
@@ -181,9 +241,14 @@ public class MainScene {
 
         // Listeners
         player.currentTrackProperty().addListener((obs, old, track) -> {
+            waveform.setWaveform(null);
             if (track != null) {
                 trackTitle.setText(track.getTitle());
                 trackArtist.setText(track.getArtist());
+                waveforms.request(track, peaks -> Platform.runLater(() -> {
+                    if (track == player.currentTrackProperty().get())
+                        waveform.setWaveform(peaks);
+                }));
             }
         });
 
@@ -191,12 +256,13 @@ public class MainScene {
             playBtn.setText(playing ? "Pause" : "Play");
         });
 
+        // currentTime is sampled at the clock rate; the label text only changes once a second
         player.currentTimeProperty().addListener((obs, old, time) -> {
             if (!progress.isValueChanging()) {
                 progress.setValue(time.doubleValue());
             }
-            timeLabel.setText(formatTime(time.doubleValue()) + " / " + formatTime(player.durationProperty().get()));
         });
+        timeLabel.textProperty().bind(player.timeTextProperty());
 
         player.durationProperty().addListener((obs, old, dur) -> {
             progress.setMax(dur.doubleValue());
@@ -252,48 +318,190 @@ public class MainScene {
     }
 
     private void refreshLibrary(TableView<Track> table) {
-        table.getItems().setAll(DatabaseManager.getAllTracks());
+        if (activeSearch != null) {
+            activeSearch.cancel(false); // its result is dropped; the query itself is short
+            activeSearch = null;
+        }
+        searchMore = null;
+        String query = searchField != null ? searchField.getText() : null;
+        if (query == null || query.isBlank()) {
+            if (libraryPages == null) {
+                libraryPages = PagedTrackList.open(TrackOrder.DEFAULT);
+            } else {
+                libraryPages.refresh();
+            }
+            if (table.getItems() != libraryPages) {
+                table.setItems(libraryPages);
+                table.sort(); // re-apply the column sort, which the pager does in SQL
+            }
+            return;
+        }
+
+        searchPage(table, query, null);
+    }
+
+    // Fetches the page of results after those in shown (null: the first page, which replaces the items)
+    private void searchPage(TableView<Track> table, String query, ObservableList<Track> shown) {
+        CompletableFuture<List<Track>> search = db.searchTracks(query, SEARCH_PAGE, shown == null ? 0 : shown.size());
+        activeSearch = search;
+        FxThread.then(search, found -> {
+            if (activeSearch == search) {
+                activeSearch = null;
+                searchMore = found.size() == SEARCH_PAGE ? query : null;
+                if (shown == null) {
+                    table.setItems(FXCollections.observableArrayList(found));
+                } else {
+                    shown.addAll(found);
+                }
+            }
+        });
     }
 
     private void handleImport(Parent root, TableView<Track> table) {
+        if (activeScan != null)
+            return;
+
         DirectoryChooser chooser = new DirectoryChooser();
         chooser.setTitle("Import Folder");
         File dir = chooser.showDialog(root.getScene().getWindow());
 
         if (dir != null) {
-            scanDirectory(dir);
-            refreshLibrary(table);
+            LibraryScanner scanner = new LibraryScanner(List.of(dir.toPath()));
+            scanner.setOnSucceeded(e -> {
+                finishScan(scanner.getStats().toString());
+                refreshLibrary(table);
+                waveforms.precomputeLibrary();
+                loudness.start();
+                if (watcher != null)
+                    watcher.addRoot(dir.toPath());
+            });
+            scanner.setOnCancelled(e -> {
+                finishScan(scanner.getStats().toString());
+                refreshLibrary(table);
+            });
+            startScan(scanner);
         }
     }
 
-    private void scanDirectory(File dir) {
-        File[] files = dir.listFiles();
-        if (files == null)
+    private void handleRescan(TableView<Track> table) {
+        if (activeScan != null)
             return;
 
-        for (File f : files) {
-            String name = f.getName().toLowerCase();
-            if (f.isDirectory()) {
-                scanDirectory(f);
-            } else if (name.endsWith(".mp3") || name.endsWith(".wav") || name.endsWith(".m4a")
-                    || name.endsWith(".flac")) {
-                System.out.println("Found track: " + f.getName());
-                Track t = new Track(
-                        UUID.randomUUID().toString(),
-                        f.getAbsolutePath(),
-                        f.getName(),
-                        "Unknown Artist",
-                        "Unknown Album",
-                        0);
-                DatabaseManager.addTrack(t);
+        LibrarySync sync = LibrarySync.forLibraryRoots();
+        sync.setOnSucceeded(e -> {
+            LibraryDelta delta = sync.getValue();
+            finishScan("Library synced: " + delta);
+            applyDelta(table.getItems(), delta);
+        });
+        sync.setOnCancelled(e -> finishScan("Rescan cancelled"));
+        startScan(sync);
+    }
+
+    private void handleMergeDuplicates(TableView<Track> table) {
+        FxThread.then(db.getDuplicateGroups(), groups -> {
+            if (groups.isEmpty()) {
+                new Alert(Alert.AlertType.INFORMATION, "No duplicate tracks found.").showAndWait();
+                return;
+            }
+            int copies = 0;
+            for (DuplicateGroup g : groups)
+                copies += g.getTracks().size() - 1;
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION,
+                    copies + " duplicate copies of " + groups.size() + " tracks found. "
+                            + "Merge them into the first imported copy? Playlists keep their songs; files are not deleted.",
+                    ButtonType.OK, ButtonType.CANCEL);
+            Optional<ButtonType> res = confirm.showAndWait();
+            if (res.isPresent() && res.get() == ButtonType.OK) {
+                FxThread.then(db.mergeAllDuplicates(), merged -> {
+                    scanStatus.setText(merged + " duplicates merged");
+                    scanStatus.setVisible(true);
+                    refreshLibrary(table);
+                });
             }
+        });
+    }
+
+    private void startScan(Task<?> task) {
+        activeScan = task;
+        scanStatus.textProperty().bind(task.messageProperty());
+        scanStatus.setVisible(true);
+        cancelScanBtn.setVisible(true);
+        importBtn.setDisable(true);
+        rescanBtn.setDisable(true);
+        task.setOnFailed(e -> {
+            task.getException().printStackTrace();
+            finishScan("Scan failed: " + task.getException().getMessage());
+        });
+
+        Thread t = new Thread(task, "library-scan");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void finishScan(String status) {
+        scanStatus.textProperty().unbind();
+        scanStatus.setText(status);
+        cancelScanBtn.setVisible(false);
+        importBtn.setDisable(false);
+        rescanBtn.setDisable(false);
+        activeScan = null;
+    }
+
+    private void applyDelta(List<Track> items, LibraryDelta delta) {
+        if (delta.isEmpty())
+            return;
+        if (items instanceof PagedTrackList pages) {
+            pages.refresh(); // rows are read from the database anyway
+        } else {
+            patchItems(items, delta);
+        }
+        waveforms.precompute(delta.getAdded());
+        waveforms.precompute(delta.getUpdated());
+        loudness.start();
+    }
+
+    // Patch the visible rows in place instead of reloading the whole table
+    private void patchItems(List<Track> items, LibraryDelta delta) {
+        Map<String, Track> updated = new HashMap<>();
+        for (Track t : delta.getUpdated())
+            updated.put(t.getId(), t);
+        Set<String> removed = new HashSet<>(delta.getRemoved());
+
+        for (ListIterator<Track> it = items.listIterator(); it.hasNext();) {
+            Track t = it.next();
+            Track u = updated.get(t.getId());
+            if (u != null)
+                it.set(u);
         }
+        if (!removed.isEmpty())
+            items.removeIf(t -> removed.contains(t.getId()));
+        items.addAll(delta.getAdded());
     }
 
     private String formatTime(double seconds) {
-        int m = (int) seconds / 60;
-        int s = (int) seconds % 60;
-        return String.format("%d:%02d", m, s);
+        return PlaybackClock.format(seconds);
+    }
+
+    // Reads the cell straight from the getter (PropertyValueFactory looks it up reflectively
+    // per cell); a row is null while the paged library catches up with a deletion
+    private static <T> Callback<TableColumn.CellDataFeatures<Track, T>, ObservableValue<T>> cellValue(
+            Function<Track, T> getter) {
+        return c -> c.getValue() == null ? null : new ReadOnlyObjectWrapper<>(getter.apply(c.getValue()));
+    }
+
+    // Sorts on the stored seconds, displays m:ss
+    private TableColumn<Track, Number> lengthColumn() {
+        TableColumn<Track, Number> lengthCol = new TableColumn<>("Length");
+        lengthCol.setCellValueFactory(cellValue(t -> t.getDuration()));
+        lengthCol.setPrefWidth(70);
+        lengthCol.setCellFactory(col -> new TableCell<>() {
+            @Override
+            protected void updateItem(Number seconds, boolean empty) {
+                super.updateItem(seconds, empty);
+                setText(empty || seconds == null || seconds.longValue() <= 0 ? null : formatTime(seconds.doubleValue()));
+            }
+        });
+        return lengthCol;
     }
 
     private void createLibraryView(BorderPane root, Stage stage) {
@@ -306,47 +514,106 @@ public class MainScene {
         Label pageTitle = new Label("Library");
         pageTitle.setStyle("-fx-font-size: 32px; -fx-font-weight: bold;");
 
-        Button importBtn = new Button("Import Folder");
+        importBtn = new Button("Import Folder");
         importBtn.setOnAction(e -> handleImport(root, libraryTable));
 
-        header.getChildren().addAll(pageTitle, importBtn);
+        cancelScanBtn = new Button("Cancel");
+        cancelScanBtn.setVisible(false);
+        cancelScanBtn.setOnAction(e -> {
+            if (activeScan != null)
+                activeScan.cancel();
+        });
+
+        scanStatus = new Label();
+        scanStatus.setStyle("-fx-text-fill: #a1a1aa;");
+        scanStatus.setVisible(false);
+
+        header.setAlignment(Pos.CENTER_LEFT);
+        rescanBtn = new Button("Rescan");
+        rescanBtn.setOnAction(e -> handleRescan(libraryTable));
+
+        Button dedupBtn = new Button("Merge Duplicates");
+        dedupBtn.setOnAction(e -> handleMergeDuplicates(libraryTable));
+
+        searchField = new TextField();
+        searchField.setPromptText("Search title, artist, album, file");
+        searchField.setPrefWidth(260);
+        searchDelay.setOnFinished(e -> refreshLibrary(libraryTable));
+        searchField.textProperty().addListener((obs, old, text) -> searchDelay.playFromStart());
+        searchField.setOnAction(e -> {
+            searchDelay.stop();
+            refreshLibrary(libraryTable);
+        });
+
+        header.getChildren().addAll(pageTitle, importBtn, rescanBtn, dedupBtn, cancelScanBtn, scanStatus);
 
         setupTableColumns(libraryTable);
 
         refreshLibrary(libraryTable);
+        waveforms.precomputeLibrary();
+        loudness.start();
 
         libraryTable.setRowFactory(tv -> {
             TableRow<Track> row = new TableRow<>();
+            row.itemProperty().addListener((obs, old, track) -> {
+                ObservableList<Track> items = libraryTable.getItems();
+                if (track != null && searchMore != null && activeSearch == null
+                        && row.getIndex() == items.size() - 1) {
+                    searchPage(libraryTable, searchMore, items);
+                }
+            });
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && (!row.isEmpty())) {
-                    Track rowData = row.getItem();
-                    player.setPlaylistContext(libraryTable.getItems(), rowData);
+                    if (libraryTable.getItems() instanceof PagedTrackList pages)
+                        player.setPlaylistContext(pages, row.getIndex(), pages);
+                    else
+                        player.setPlaylistContext(libraryTable.getItems(), row.getIndex());
                 }
             });
             return row;
         });
 
-        libraryView.getChildren().addAll(header, libraryTable);
+        libraryView.getChildren().addAll(header, searchField, libraryTable);
     }
 
     private void setupTableColumns(TableView<Track> table) {
         TableColumn<Track, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
+        titleCol.setCellValueFactory(cellValue(Track::getTitle));
         titleCol.setPrefWidth(200);
 
         TableColumn<Track, String> artistCol = new TableColumn<>("Artist");
-        artistCol.setCellValueFactory(new PropertyValueFactory<>("artist"));
+        artistCol.setCellValueFactory(cellValue(Track::getArtist));
         artistCol.setPrefWidth(150);
 
         TableColumn<Track, String> albumCol = new TableColumn<>("Album");
-        albumCol.setCellValueFactory(new PropertyValueFactory<>("album"));
+        albumCol.setCellValueFactory(cellValue(Track::getAlbum));
         albumCol.setPrefWidth(150);
 
-        table.getColumns().addAll(titleCol, artistCol, albumCol);
+        TableColumn<Track, Number> lengthCol = lengthColumn();
+        table.getColumns().addAll(List.of(titleCol, artistCol, albumCol, lengthCol));
+
+        // The paged library sorts in the database, or in the background by several columns
+        // (shift-click); the keys say which column each header is
+        titleCol.setUserData(TrackOrder.Key.TITLE);
+        artistCol.setUserData(TrackOrder.Key.ARTIST);
+        albumCol.setUserData(TrackOrder.Key.ALBUM);
+        lengthCol.setUserData(TrackOrder.Key.DURATION);
+        table.setSortPolicy(t -> {
+            if (!(t.getItems() instanceof PagedTrackList pages))
+                return TableView.DEFAULT_SORT_POLICY.call(t);
+            List<TrackOrder> keys = new ArrayList<>();
+            for (TableColumn<Track, ?> col : t.getSortOrder()) {
+                keys.add(new TrackOrder((TrackOrder.Key) col.getUserData(),
+                        col.getSortType() == TableColumn.SortType.DESCENDING));
+            }
+            pages.setSort(keys);
+            return true;
+        });
 
         // Context Menu Column
         TableColumn<Track, Void> actionCol = new TableColumn<>("");
         actionCol.setPrefWidth(50);
+        actionCol.setSortable(false);
         Callback<TableColumn<Track, Void>, TableCell<Track, Void>> cellFactory = new Callback<>() {
             @Override
             public TableCell<Track, Void> call(final TableColumn<Track, Void> param) {
@@ -376,21 +643,28 @@ public class MainScene {
                             confirm.setHeaderText(null);
                             Optional<ButtonType> result = confirm.showAndWait();
                             if (result.isPresent() && result.get() == ButtonType.OK) {
-                                boolean success = DatabaseManager.deleteTrack(track.getId());
-                                if (success) {
-                                    getTableView().getItems().remove(track);
-                                    Alert info = new Alert(Alert.AlertType.INFORMATION);
-                                    info.setTitle("Success");
-                                    info.setHeaderText(null);
-                                    info.setContentText("Track deleted successfully.");
-                                    info.showAndWait();
-                                } else {
-                                    Alert error = new Alert(Alert.AlertType.ERROR);
-                                    error.setTitle("Error");
-                                    error.setHeaderText(null);
-                                    error.setContentText("Failed to delete track.");
-                                    error.showAndWait();
-                                }
+                                TableView<Track> table = getTableView();
+                                FxThread.then(db.deleteTrack(track.getId()), success -> {
+                                    if (success) {
+                                        // While the context may still be a view over these rows
+                                        player.removeFromContext(track);
+                                        if (table.getItems() instanceof PagedTrackList pages)
+                                            pages.refresh();
+                                        else
+                                            table.getItems().remove(track);
+                                        Alert info = new Alert(Alert.AlertType.INFORMATION);
+                                        info.setTitle("Success");
+                                        info.setHeaderText(null);
+                                        info.setContentText("Track deleted successfully.");
+                                        info.showAndWait();
+                                    } else {
+                                        Alert error = new Alert(Alert.AlertType.ERROR);
+                                        error.setTitle("Error");
+                                        error.setHeaderText(null);
+                                        error.setContentText("Failed to delete track.");
+                                        error.showAndWait();
+                                    }
+                                });
                             }
                         });
                         btn.getItems().addAll(createItem, addItem, deleteItem);
@@ -414,7 +688,7 @@ public class MainScene {
         actionCol.setCellFactory(cellFactory);
         table.getColumns().add(actionCol);
 
-        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
     }
 
     private void showLibrary(BorderPane root) {
@@ -431,140 +705,184 @@ public class MainScene {
         Label pageTitle = new Label("Playlists");
         pageTitle.setStyle("-fx-font-size: 32px; -fx-font-weight: bold;");
 
-        VBox container = new VBox(12);
-        container.setFillWidth(true);
-
-        for (Playlist p : DatabaseManager.getAllPlaylists()) {
-            VBox card = new VBox(8);
-            card.setStyle(
-                    "-fx-padding: 12; -fx-background-color: #0b0b0d; -fx-background-radius: 8; -fx-border-radius: 8;");
-            card.setMaxWidth(Double.MAX_VALUE);
+        ListView<Playlist> list = new ListView<>();
+        list.getStyleClass().add("playlist-cards");
+        list.setFocusTraversable(false);
+        VBox.setVgrow(list, Priority.ALWAYS);
+        PlaylistCards cards = new PlaylistCards(list, root);
+        list.setCellFactory(v -> cards.new Card());
+        FxThread.then(db.getAllPlaylists(), list.getItems()::setAll);
 
-            HBox header = new HBox(10);
-            header.setAlignment(Pos.CENTER_LEFT);
-            header.setMaxWidth(Double.MAX_VALUE);
-
-            Label name = new Label(p.getName());
-            name.setStyle("-fx-font-size: 16px; -fx-text-fill: white; -fx-font-weight: bold;");
-            name.setMaxWidth(Double.MAX_VALUE);
-            HBox.setHgrow(name, Priority.ALWAYS);
+        playlistsView.getChildren().addAll(pageTitle, list);
+        root.setCenter(playlistsView);
+    }
 
-            Region spacer = new Region();
-            HBox.setHgrow(spacer, Priority.ALWAYS);
+    // The Playlists page as a virtualized list: cards exist only for the rows on screen and
+    // are reused while scrolling. Song counts are fetched for a card when it first shows,
+    // together with the next COUNT_PREFETCH cards. Only the one expanded card has a table;
+    // its songs are loaded on expanding and let go of on collapsing.
+    private class PlaylistCards {
+        static final int COUNT_PREFETCH = 20;
+
+        private final ListView<Playlist> list;
+        private final BorderPane root;
+        private final Map<String, Integer> counts = new HashMap<>();
+        private final Set<String> countsPending = new HashSet<>();
+        private String expandedId;
+        private VBox expanded; // table and actions of the expanded card
+
+        PlaylistCards(ListView<Playlist> list, BorderPane root) {
+            this.list = list;
+            this.root = root;
+        }
 
-            // Delete button
-            Button deleteBtn = new Button("Delete");
-            deleteBtn.setStyle("-fx-background-color: #7f1d1d; -fx-text-fill: white; -fx-font-size: 12px;");
+        private void fetchCounts(int from) {
+            List<String> ids = new ArrayList<>();
+            int to = Math.min(list.getItems().size(), from + 1 + COUNT_PREFETCH);
+            for (int i = Math.max(0, from); i < to; i++) {
+                String id = list.getItems().get(i).getId();
+                if (!counts.containsKey(id) && countsPending.add(id))
+                    ids.add(id);
+            }
+            if (ids.isEmpty())
+                return;
+            FxThread.then(db.getPlaylistSongCounts(ids), found -> {
+                countsPending.removeAll(ids);
+                for (String id : ids)
+                    counts.put(id, found.getOrDefault(id, 0));
+                redraw(ids);
+            });
+        }
 
-            // Drop-down caret button embedded in the card
-            Button caretBtn = new Button("\u25BE"); // down triangle
-            caretBtn.setStyle(
-                    "-fx-background-color: transparent; -fx-text-fill: #a1a1aa; -fx-font-size: 14px; -fx-padding: 2 6 2 6; -fx-background-radius: 6;");
-            caretBtn.setRotate(0);
-            caretBtn.setFocusTraversable(false);
+        // Re-renders just the cards of these playlists (list.refresh() rebuilds every visible cell)
+        private void redraw(Collection<String> ids) {
+            ObservableList<Playlist> items = list.getItems();
+            for (int i = 0; i < items.size(); i++) {
+                if (ids.contains(items.get(i).getId()))
+                    items.set(i, items.get(i));
+            }
+        }
 
-            header.getChildren().addAll(name, spacer, deleteBtn, caretBtn);
-            card.getChildren().add(header);
+        private void toggle(Playlist p) {
+            String previous = expandedId;
+            boolean opening = !p.getId().equals(expandedId);
+            expandedId = null;
+            expanded = null; // the previous card's rows go with it
+            if (opening) {
+                expandedId = p.getId();
+                expanded = expandedContent(p);
+            }
+            redraw(previous == null || previous.equals(p.getId()) ? List.of(p.getId()) : List.of(p.getId(), previous));
+        }
 
-            // Expanded area (hidden by default)
-            VBox expanded = new VBox(8);
-            expanded.setStyle("-fx-padding: 6 0 0 0;");
+        private VBox expandedContent(Playlist p) {
+            VBox box = new VBox(8);
+            box.setStyle("-fx-padding: 6 0 0 0;");
             TableView<Track> table = new TableView<>();
             table.setMaxHeight(200);
+            table.setPrefHeight(200);
             setupPlaylistTableColumns(table, p.getId());
-            table.getItems().setAll(DatabaseManager.getTracksForPlaylist(p.getId()));
-            table.setVisible(false);
-            table.setManaged(false);
+            FxThread.then(db.getTracksForPlaylist(p.getId()), tracks -> {
+                if (!p.getId().equals(expandedId))
+                    return; // collapsed meanwhile
+                table.getItems().setAll(tracks);
+                counts.put(p.getId(), tracks.size());
+                // Songs removed from the table come off the count too
+                table.getItems().addListener((javafx.collections.ListChangeListener<Track>) c -> {
+                    counts.put(p.getId(), table.getItems().size());
+                    redraw(Set.of(p.getId()));
+                });
+                redraw(Set.of(p.getId()));
+            });
 
             HBox actions = new HBox(8);
             Button openFull = new Button("Open full view");
             Button closeBtn = new Button("Close");
             openFull.setOnAction(ev -> showPlaylistTracks(p, root));
-            closeBtn.setOnAction(ev -> {
-                table.setVisible(false);
-                table.setManaged(false);
-                // rotate caret back
-                javafx.animation.RotateTransition rt = new javafx.animation.RotateTransition(
-                        javafx.util.Duration.millis(180), caretBtn);
-                rt.setToAngle(0);
-                rt.play();
-            });
+            closeBtn.setOnAction(ev -> toggle(p));
             actions.getChildren().addAll(openFull, closeBtn);
 
-            expanded.getChildren().addAll(table, actions);
-            card.getChildren().add(expanded);
+            box.getChildren().addAll(table, actions);
+            return box;
+        }
 
-            // Delete action
-            deleteBtn.setOnAction(ev -> {
-                Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete playlist '" + p.getName() + "'?",
-                        ButtonType.OK, ButtonType.CANCEL);
-                Optional<ButtonType> res = confirm.showAndWait();
-                if (res.isPresent() && res.get() == ButtonType.OK) {
-                    boolean ok = DatabaseManager.deletePlaylist(p.getId());
+        private void delete(Playlist p) {
+            Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete playlist '" + p.getName() + "'?",
+                    ButtonType.OK, ButtonType.CANCEL);
+            Optional<ButtonType> res = confirm.showAndWait();
+            if (res.isPresent() && res.get() == ButtonType.OK) {
+                FxThread.then(db.deletePlaylist(p.getId()), ok -> {
                     if (ok) {
-                        // refresh the playlists view
-                        showPlaylists(root);
+                        if (p.getId().equals(expandedId)) {
+                            expandedId = null;
+                            expanded = null;
+                        }
+                        counts.remove(p.getId());
+                        list.getItems().remove(p);
                     } else {
                         Alert err = new Alert(Alert.AlertType.ERROR, "Failed to delete playlist");
                         err.showAndWait();
                     }
-                }
-            });
+                });
+            }
+        }
 
-            // Toggle only when caret button is clicked (not whole header)
-            caretBtn.setOnAction(e -> {
-                boolean opening = !table.isVisible();
-
-                // Collapse any other expanded cards and reset their carets
-                for (javafx.scene.Node n : container.getChildren()) {
-                    if (n instanceof VBox) {
-                        VBox other = (VBox) n;
-                        if (other != card && other.getChildren().size() > 1) {
-                            javafx.scene.Node maybeTable = other.getChildren().get(1).lookup(".table-view");
-                            if (maybeTable instanceof TableView) {
-                                TableView<?> otherTable = (TableView<?>) maybeTable;
-                                otherTable.setVisible(false);
-                                otherTable.setManaged(false);
-                                javafx.scene.Node otherCaret = ((HBox) other.getChildren().get(0)).getChildren().get(3);
-                                if (otherCaret instanceof Button) {
-                                    javafx.animation.RotateTransition rto = new javafx.animation.RotateTransition(
-                                            javafx.util.Duration.millis(180), (Button) otherCaret);
-                                    rto.setToAngle(0);
-                                    rto.play();
-                                }
-                            }
-                        }
-                    }
-                }
+        class Card extends ListCell<Playlist> {
+            private final VBox card = new VBox(8);
+            private final HBox header = new HBox(10);
+            private final Label name = new Label();
+            private final Label count = new Label();
+            private final Button caretBtn = new Button("\u25BE"); // down triangle
 
-                if (opening) {
-                    table.getItems().setAll(DatabaseManager.getTracksForPlaylist(p.getId()));
-                    table.setVisible(true);
-                    table.setManaged(true);
-                    javafx.animation.RotateTransition rt = new javafx.animation.RotateTransition(
-                            javafx.util.Duration.millis(180), caretBtn);
-                    rt.setToAngle(180);
-                    rt.play();
-                } else {
-                    table.setVisible(false);
-                    table.setManaged(false);
-                    javafx.animation.RotateTransition rt = new javafx.animation.RotateTransition(
-                            javafx.util.Duration.millis(180), caretBtn);
-                    rt.setToAngle(0);
-                    rt.play();
-                }
-            });
+            Card() {
+                card.setStyle(
+                        "-fx-padding: 12; -fx-background-color: #0b0b0d; -fx-background-radius: 8; -fx-border-radius: 8;");
+                card.setMaxWidth(Double.MAX_VALUE);
 
-            container.getChildren().add(card);
-        }
+                header.setAlignment(Pos.CENTER_LEFT);
+                header.setMaxWidth(Double.MAX_VALUE);
 
-        ScrollPane scroll = new ScrollPane(container);
-        scroll.setFitToWidth(true);
-        scroll.setPrefViewportHeight(420);
-        scroll.setStyle("-fx-background-color: transparent; -fx-padding: 4;");
+                name.setStyle("-fx-font-size: 16px; -fx-text-fill: white; -fx-font-weight: bold;");
+                count.setStyle("-fx-text-fill: #9a9aa5;");
 
-        playlistsView.getChildren().addAll(pageTitle, scroll);
-        root.setCenter(playlistsView);
+                Region spacer = new Region();
+                HBox.setHgrow(spacer, Priority.ALWAYS);
+
+                Button deleteBtn = new Button("Delete");
+                deleteBtn.setStyle("-fx-background-color: #7f1d1d; -fx-text-fill: white; -fx-font-size: 12px;");
+                deleteBtn.setOnAction(ev -> delete(getItem()));
+
+                // Toggle only when caret button is clicked (not whole header)
+                caretBtn.setStyle(
+                        "-fx-background-color: transparent; -fx-text-fill: #a1a1aa; -fx-font-size: 14px; -fx-padding: 2 6 2 6; -fx-background-radius: 6;");
+                caretBtn.setFocusTraversable(false);
+                caretBtn.setOnAction(ev -> toggle(getItem()));
+
+                header.getChildren().addAll(name, count, spacer, deleteBtn, caretBtn);
+                card.getChildren().add(header);
+            }
+
+            @Override
+            protected void updateItem(Playlist p, boolean empty) {
+                super.updateItem(p, empty);
+                if (empty || p == null) {
+                    setGraphic(null);
+                    return;
+                }
+                name.setText(p.getName());
+                Integer n = counts.get(p.getId());
+                count.setText(n == null ? "" : n == 1 ? "1 song" : n + " songs");
+                if (n == null)
+                    fetchCounts(getIndex());
+                boolean open = p.getId().equals(expandedId) && expanded != null;
+                caretBtn.setRotate(open ? 180 : 0);
+                if (open)
+                    card.getChildren().setAll(header, expanded);
+                else
+                    card.getChildren().setAll(header);
+                setGraphic(card);
+            }
+        }
     }
 
     private void showPlaylistTracks(Playlist playlist, BorderPane root) {
@@ -582,14 +900,24 @@ public class MainScene {
 
         TableView<Track> table = new TableView<>();
         setupPlaylistTableColumns(table, playlist.getId());
-        table.getItems().setAll(DatabaseManager.getTracksForPlaylist(playlist.getId()));
+
+        Label summary = new Label();
+        summary.setStyle("-fx-text-fill: #9a9aa5;");
+        header.getChildren().add(summary);
+        FxThread.then(db.getTracksForPlaylist(playlist.getId()), tracks -> {
+            table.getItems().setAll(tracks);
+            long totalSeconds = 0;
+            for (Track t : tracks) {
+                totalSeconds += t.getDuration();
+            }
+            summary.setText(tracks.size() + " songs, " + formatTime(totalSeconds));
+        });
 
         table.setRowFactory(tv -> {
             TableRow<Track> row = new TableRow<>();
             row.setOnMouseClicked(event -> {
                 if (event.getClickCount() == 2 && (!row.isEmpty())) {
-                    Track rowData = row.getItem();
-                    player.setPlaylistContext(table.getItems(), rowData);
+                    player.setPlaylistContext(table.getItems(), row.getIndex());
                 }
             });
             return row;
@@ -600,53 +928,56 @@ public class MainScene {
     }
 
     private void rebuildPlaylistDropdown(VBox playlistDropdown, BorderPane root) {
-        playlistDropdown.getChildren().clear();
-        for (Playlist pl : DatabaseManager.getAllPlaylists()) {
-            HBox item = new HBox(8);
-            item.setAlignment(Pos.CENTER_LEFT);
-
-            Button plBtn = new Button(pl.getName());
-            plBtn.setMaxWidth(Double.MAX_VALUE);
-            plBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: white; -fx-alignment: center-left;");
-            HBox.setHgrow(plBtn, Priority.ALWAYS);
-            plBtn.setOnAction(ev -> {
-                // Open playlist in main content but keep dropdown visible so items don't
-                // disappear when clicked
-                showPlaylistTracks(pl, root);
-
-                // Update selection visual: clear others and highlight this one
-                for (javafx.scene.Node node : playlistDropdown.getChildren()) {
-                    if (node instanceof HBox) {
-                        HBox h = (HBox) node;
-                        if (!h.getChildren().isEmpty() && h.getChildren().get(0) instanceof Button) {
-                            ((Button) h.getChildren().get(0)).setStyle(
-                                    "-fx-background-color: transparent; -fx-text-fill: white; -fx-alignment: center-left;");
+        FxThread.then(db.getAllPlaylists(), playlists -> {
+            playlistDropdown.getChildren().clear();
+            for (Playlist pl : playlists) {
+                HBox item = new HBox(8);
+                item.setAlignment(Pos.CENTER_LEFT);
+
+                Button plBtn = new Button(pl.getName());
+                plBtn.setMaxWidth(Double.MAX_VALUE);
+                plBtn.setStyle("-fx-background-color: transparent; -fx-text-fill: white; -fx-alignment: center-left;");
+                HBox.setHgrow(plBtn, Priority.ALWAYS);
+                plBtn.setOnAction(ev -> {
+                    // Open playlist in main content but keep dropdown visible so items don't
+                    // disappear when clicked
+                    showPlaylistTracks(pl, root);
+
+                    // Update selection visual: clear others and highlight this one
+                    for (javafx.scene.Node node : playlistDropdown.getChildren()) {
+                        if (node instanceof HBox) {
+                            HBox h = (HBox) node;
+                            if (!h.getChildren().isEmpty() && h.getChildren().get(0) instanceof Button) {
+                                ((Button) h.getChildren().get(0)).setStyle(
+                                        "-fx-background-color: transparent; -fx-text-fill: white; -fx-alignment: center-left;");
+                            }
                         }
                     }
-                }
-                plBtn.setStyle("-fx-background-color: #1f2937; -fx-text-fill: white; -fx-alignment: center-left;");
-            });
+                    plBtn.setStyle("-fx-background-color: #1f2937; -fx-text-fill: white; -fx-alignment: center-left;");
+                });
 
-            Button del = new Button("Delete");
-            del.setStyle("-fx-background-color: #7f1d1d; -fx-text-fill: white; -fx-font-size: 11px;");
-            del.setOnAction(ev -> {
-                Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete playlist '" + pl.getName() + "'?",
-                        ButtonType.OK, ButtonType.CANCEL);
-                Optional<ButtonType> res = confirm.showAndWait();
-                if (res.isPresent() && res.get() == ButtonType.OK) {
-                    boolean ok = DatabaseManager.deletePlaylist(pl.getId());
-                    if (ok) {
-                        rebuildPlaylistDropdown(playlistDropdown, root);
-                    } else {
-                        Alert err = new Alert(Alert.AlertType.ERROR, "Failed to delete playlist");
-                        err.showAndWait();
+                Button del = new Button("Delete");
+                del.setStyle("-fx-background-color: #7f1d1d; -fx-text-fill: white; -fx-font-size: 11px;");
+                del.setOnAction(ev -> {
+                    Alert confirm = new Alert(Alert.AlertType.CONFIRMATION, "Delete playlist '" + pl.getName() + "'?",
+                            ButtonType.OK, ButtonType.CANCEL);
+                    Optional<ButtonType> res = confirm.showAndWait();
+                    if (res.isPresent() && res.get() == ButtonType.OK) {
+                        FxThread.then(db.deletePlaylist(pl.getId()), ok -> {
+                            if (ok) {
+                                rebuildPlaylistDropdown(playlistDropdown, root);
+                            } else {
+                                Alert err = new Alert(Alert.AlertType.ERROR, "Failed to delete playlist");
+                                err.showAndWait();
+                            }
+                        });
                     }
-                }
-            });
+                });
 
-            item.getChildren().addAll(plBtn, del);
-            playlistDropdown.getChildren().add(item);
-        }
+                item.getChildren().addAll(plBtn, del);
+                playlistDropdown.getChildren().add(item);
+            }
+        });
     }
 
     private void showCreatePlaylistDialog(Track track) {
@@ -660,38 +991,36 @@ public class MainScene {
             if (name.trim().isEmpty())
                 return;
 
-            if (DatabaseManager.checkPlaylistExists(name)) {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setHeaderText(null);
-                alert.setContentText("Playlist '" + name + "' already exists.");
-                alert.showAndWait();
-                return;
-            }
-
             Playlist newPlaylist = new Playlist(name);
-            if (DatabaseManager.createPlaylist(newPlaylist)) {
-                DatabaseManager.addTrackToPlaylist(newPlaylist.getId(), track.getId());
+            FxThread.then(db.createPlaylist(newPlaylist, track), created -> {
+                if (!created) {
+                    Alert alert = new Alert(Alert.AlertType.ERROR);
+                    alert.setTitle("Error");
+                    alert.setHeaderText(null);
+                    alert.setContentText("Playlist '" + name + "' already exists.");
+                    alert.showAndWait();
+                    return;
+                }
                 Alert alert = new Alert(Alert.AlertType.INFORMATION);
                 alert.setTitle("Success");
                 alert.setHeaderText(null);
                 alert.setContentText("Song added to the playlist: " + name);
                 alert.showAndWait();
-            }
+            });
         });
     }
 
     private void setupPlaylistTableColumns(TableView<Track> table, String playlistId) {
         TableColumn<Track, String> titleCol = new TableColumn<>("Title");
-        titleCol.setCellValueFactory(new PropertyValueFactory<>("title"));
+        titleCol.setCellValueFactory(cellValue(Track::getTitle));
         titleCol.setPrefWidth(200);
 
         TableColumn<Track, String> artistCol = new TableColumn<>("Artist");
-        artistCol.setCellValueFactory(new PropertyValueFactory<>("artist"));
+        artistCol.setCellValueFactory(cellValue(Track::getArtist));
         artistCol.setPrefWidth(150);
 
         TableColumn<Track, String> albumCol = new TableColumn<>("Album");
-        albumCol.setCellValueFactory(new PropertyValueFactory<>("album"));
+        albumCol.setCellValueFactory(cellValue(Track::getAlbum));
         albumCol.setPrefWidth(150);
 
         TableColumn<Track, Void> actionCol = new TableColumn<>("");
@@ -705,13 +1034,15 @@ public class MainScene {
                         removeBtn.setStyle("-fx-background-color: #7f1d1d; -fx-text-fill: white;");
                         removeBtn.setOnAction(event -> {
                             Track t = getTableView().getItems().get(getIndex());
-                            boolean ok = DatabaseManager.removeTrackFromPlaylist(playlistId, t.getId());
-                            if (ok) {
-                                getTableView().getItems().remove(t);
-                            } else {
-                                Alert err = new Alert(Alert.AlertType.ERROR, "Failed to remove track from playlist");
-                                err.showAndWait();
-                            }
+                            TableView<Track> table = getTableView();
+                            FxThread.then(db.removeTrackFromPlaylist(playlistId, t.getId()), ok -> {
+                                if (ok) {
+                                    table.getItems().remove(t);
+                                } else {
+                                    Alert err = new Alert(Alert.AlertType.ERROR, "Failed to remove track from playlist");
+                                    err.showAndWait();
+                                }
+                            });
                         });
                     }
 
@@ -729,8 +1060,8 @@ public class MainScene {
         };
         actionCol.setCellFactory(cellFactory);
 
-        table.getColumns().addAll(titleCol, artistCol, albumCol, actionCol);
-        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        table.getColumns().addAll(List.of(titleCol, artistCol, albumCol, lengthColumn(), actionCol));
+        table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
     }
 
     private void showAddToPlaylistDialog(Track track) {
@@ -742,7 +1073,7 @@ public class MainScene {
         dialog.getDialogPane().getButtonTypes().addAll(addBtnType, ButtonType.CANCEL);
 
         ListView<Playlist> listView = new ListView<>();
-        listView.getItems().addAll(DatabaseManager.getAllPlaylists());
+        FxThread.then(db.getAllPlaylists(), listView.getItems()::addAll);
         listView.setPrefHeight(200);
         listView.setPrefWidth(300);
 
@@ -757,12 +1088,13 @@ public class MainScene {
 
         Optional<Playlist> result = dialog.showAndWait();
         result.ifPresent(playlist -> {
-            DatabaseManager.addTrackToPlaylist(playlist.getId(), track.getId());
-            Alert alert = new Alert(Alert.AlertType.INFORMATION);
-            alert.setTitle("Success");
-            alert.setHeaderText(null);
-            alert.setContentText("Song added to the playlist: " + playlist.getName());
-            alert.showAndWait();
+            FxThread.then(db.addTrackToPlaylist(playlist.getId(), track.getId()), done -> {
+                Alert alert = new Alert(Alert.AlertType.INFORMATION);
+                alert.setTitle("Success");
+                alert.setHeaderText(null);
+                alert.setContentText("Song added to the playlist: " + playlist.getName());
+                alert.showAndWait();
+            });
         });
     }
 }
@@ -0,0 +1,410 @@
+package com.vibe.ui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.vibe.db.AsyncDatabase;
+import com.vibe.db.DatabaseManager;
+import com.vibe.db.LibrarySnapshot;
+import com.vibe.db.SortedLibrary;
+import com.vibe.db.TrackOrder;
+import com.vibe.db.TrackPage;
+import com.vibe.model.Track;
+import com.vibe.structures.PlaybackContext;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+// The library as a lazily loaded list for the TableView.
+// Nothing here queries on the FX thread: the row count, the pages and position lookups
+// all go through AsyncDatabase. A row whose page has not arrived reads as null (an empty
+// placeholder row); when the page arrives its rows are reported replaced. Pages are
+// fetched by key from where the previous page ended. Where every page starts is indexed
+// in the background after each refresh; a jump before that seeks through the order's
+// index on the reader. Pages scrolled away from are dropped, so memory and first paint
+// do not grow with the library.
+// In the default order the rows come from the LibrarySnapshot on disk while it matches
+// the database's library version, so opening the library needs no query at all; the
+// version is checked in the background and the list refreshes if it was stale.
+// A sort on several columns has no index to page by: it is built in the background as a
+// SortedLibrary, and the list keeps its current order until it is ready, then switches
+// over in one change.
+// As a PlaybackContext.LazyView, playback can step through it without waiting on pages.
+// Read-only: call refresh() after the database changed, setOrder() to re-sort.
+public class PagedTrackList extends ObservableListBase<Track> implements PlaybackContext.LazyView<String> {
+    static final int PAGE_SIZE = 200;
+    static final int MAX_PAGES = 16;
+
+    // A page as read on a reader, with the cursor it was read from
+    private static final class Loaded {
+        final TrackPage.Cursor start;
+        final List<Track> tracks;
+        final TrackPage.Cursor next;
+
+        Loaded(TrackPage.Cursor start, List<Track> tracks, TrackPage.Cursor next) {
+            this.start = start;
+            this.tracks = tracks;
+            this.next = next;
+        }
+    }
+
+    // What refresh() found: the snapshot to serve from, if it is current, and the row count
+    private static final class Counted {
+        final LibrarySnapshot snapshot;
+        final int size;
+
+        Counted(LibrarySnapshot snapshot, int size) {
+            this.snapshot = snapshot;
+            this.size = size;
+        }
+    }
+
+    private final AsyncDatabase db = AsyncDatabase.getInstance();
+    private TrackOrder order;
+    private int size;
+    private final Map<Integer, List<Track>> pages = new LinkedHashMap<>(MAX_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Track>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+    private final Map<Integer, TrackPage.Cursor> starts = new HashMap<>(); // where page p begins (p > 0)
+    private final Set<Integer> loading = new HashSet<>(); // pages asked for that have not arrived
+    private final Map<Integer, List<Runnable>> waiting = new HashMap<>(); // whenLoaded() actions, by page
+    private final Map<String, Integer> positions = new HashMap<>(); // looked-up ids; UNKNOWN while in flight
+    private LibrarySnapshot snapshot; // serves the pages instead of SQL, when set
+    private SortedLibrary sorted; // serves the pages while a multi-column sort is shown
+    private List<TrackOrder> sortKeys = List.of(); // the multi-column sort asked for, if any
+    private CompletableFuture<SortedLibrary> pendingSort; // only the latest one is shown
+    private CompletableFuture<Counted> pendingCount; // likewise
+    private int generation; // bumped whenever the loaded pages are dropped
+
+    private PagedTrackList(TrackOrder order) {
+        this.order = order;
+        // Trusted until the background check in refresh() says otherwise
+        this.snapshot = order.equals(TrackOrder.DEFAULT) ? LibrarySnapshot.current() : null;
+        this.size = snapshot != null ? snapshot.size() : 0;
+    }
+
+    /** The library in {@code order}. Rows show once counted; from a current snapshot, at once. */
+    public static PagedTrackList open(TrackOrder order) {
+        PagedTrackList list = new PagedTrackList(order);
+        list.refresh();
+        return list;
+    }
+
+    public TrackOrder getOrder() {
+        return order;
+    }
+
+    public void setOrder(TrackOrder order) {
+        setSort(List.of(order));
+    }
+
+    /**
+     * Sorts by {@code keys}, the first deciding most (empty: insertion order). One key is
+     * read straight from its index; more are sorted in the background and shown when done.
+     */
+    public void setSort(List<TrackOrder> keys) {
+        if (keys.size() <= 1) {
+            TrackOrder order = keys.isEmpty() ? TrackOrder.DEFAULT : keys.get(0);
+            boolean wasSorted = sorted != null || !sortKeys.isEmpty();
+            cancelSort();
+            sortKeys = List.of();
+            if (wasSorted || !order.equals(this.order)) {
+                // Rows of the old order must not mix with pages read in the new one
+                this.order = order;
+                sorted = null;
+                snapshot = null;
+                dropPages();
+                changed(size);
+                refresh();
+            }
+            return;
+        }
+        if (keys.equals(sortKeys)) {
+            return;
+        }
+        sortKeys = List.copyOf(keys);
+        startSort();
+    }
+
+    private void startSort() {
+        cancelSort();
+        List<TrackOrder> keys = sortKeys;
+        CompletableFuture<SortedLibrary> sort = db.sortLibrary(keys);
+        pendingSort = sort;
+        FxThread.then(sort, result -> {
+            if (pendingSort != sort) {
+                return;
+            }
+            pendingSort = null;
+            pendingCount = null; // a count for the order before is of no use now
+            int oldSize = size;
+            sorted = result;
+            order = keys.get(0);
+            snapshot = null;
+            size = result.size();
+            dropPages();
+            changed(oldSize);
+        });
+    }
+
+    private void cancelSort() {
+        if (pendingSort != null) {
+            pendingSort.cancel(false);
+            pendingSort = null;
+        }
+    }
+
+    /**
+     * Re-counts in the background, then forgets every loaded page; the table re-reads what
+     * it shows. The rows shown stay until the count is in.
+     */
+    public void refresh() {
+        if (!sortKeys.isEmpty()) {
+            startSort(); // re-sorted in the background; the order shown stays until then
+            if (sorted != null) {
+                // ...but its rows are read again, so edits show and deleted rows come back empty
+                dropPages();
+                changed(size);
+                return;
+            }
+        }
+        TrackOrder o = order;
+        CompletableFuture<Counted> count = db.read("countLibrary", () -> {
+            long version = DatabaseManager.getLibraryVersion();
+            LibrarySnapshot.rebuildIfStale(version);
+            LibrarySnapshot s = o.equals(TrackOrder.DEFAULT) ? LibrarySnapshot.current() : null;
+            return s != null && s.getVersion() == version
+                    ? new Counted(s, s.size())
+                    : new Counted(null, DatabaseManager.countTracks());
+        });
+        pendingCount = count;
+        FxThread.then(count, c -> {
+            if (pendingCount != count) {
+                return; // refreshed or re-sorted since
+            }
+            pendingCount = null;
+            if (c.snapshot != null && c.snapshot == snapshot && c.size == size) {
+                return; // the snapshot shown is still current
+            }
+            int oldSize = size;
+            snapshot = c.snapshot;
+            size = c.size;
+            dropPages();
+            indexPages();
+            changed(oldSize);
+        });
+    }
+
+    /**
+     * The track at {@code index}; null while its page is loading (the page is asked for,
+     * and its rows are reported replaced when it arrives), or if the library shrank since
+     * the last refresh.
+     */
+    @Override
+    public Track get(int index) {
+        Objects.checkIndex(index, size);
+        int p = index / PAGE_SIZE;
+        List<Track> page = pages.get(p);
+        if (page == null) {
+            if (snapshot == null) {
+                load(p);
+                return null;
+            }
+            page = snapshotPage(p);
+        }
+        int i = index % PAGE_SIZE;
+        return i < page.size() ? page.get(i) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Answers from the loaded pages, or from a lookup an earlier call started; -1 until
+     * that is in (scanning instead would load every page).
+     */
+    @Override
+    public int indexOf(Object o) {
+        return o instanceof Track t ? Math.max(-1, locate(t.getId())) : -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /** Position of the track with {@code id} in the current order; looked up in the background if not loaded. */
+    @Override
+    public int locate(String id) {
+        for (Map.Entry<Integer, List<Track>> e : pages.entrySet()) {
+            List<Track> page = e.getValue();
+            for (int i = 0; i < page.size(); i++) {
+                Track t = page.get(i);
+                if (t != null && t.getId().equals(id)) {
+                    return e.getKey() * PAGE_SIZE + i;
+                }
+            }
+        }
+        Integer known = positions.get(id);
+        if (known != null) {
+            return known < size ? known : -1;
+        }
+        positions.put(id, UNKNOWN);
+        int gen = generation;
+        TrackOrder o = order;
+        SortedLibrary s = sorted;
+        FxThread.then(db.read("getTrackPosition", () -> s != null ? s.indexOfId(id) : DatabaseManager.getTrackPosition(o, id)),
+                i -> {
+                    if (gen == generation) {
+                        positions.put(id, i);
+                    }
+                }, e -> {
+                    if (gen == generation) {
+                        positions.remove(id);
+                    }
+                    e.printStackTrace();
+                });
+        return UNKNOWN;
+    }
+
+    @Override
+    public boolean isLoaded(int index) {
+        return index < 0 || index >= size || snapshot != null || pages.containsKey(index / PAGE_SIZE);
+    }
+
+    @Override
+    public void whenLoaded(int index, Runnable action) {
+        if (isLoaded(index)) {
+            Platform.runLater(action);
+            return;
+        }
+        int p = index / PAGE_SIZE;
+        waiting.computeIfAbsent(p, k -> new ArrayList<>()).add(action);
+        load(p);
+    }
+
+    private void dropPages() {
+        pages.clear();
+        starts.clear();
+        loading.clear();
+        positions.clear();
+        generation++;
+    }
+
+    // Reports every row replaced (the old ones are not kept, so as nulls), then lets
+    // anything waiting on a page look again, at the new rows
+    private void changed(int oldSize) {
+        if (oldSize != 0 || size != 0) {
+            beginChange();
+            nextReplace(0, size, Collections.nCopies(oldSize, null));
+            endChange();
+        }
+        if (!waiting.isEmpty()) {
+            List<Runnable> actions = new ArrayList<>();
+            waiting.values().forEach(actions::addAll);
+            waiting.clear();
+            actions.forEach(Runnable::run);
+        }
+    }
+
+    // Reads where every page starts, off the FX thread, so a jump need not seek
+    private void indexPages() {
+        if (sorted != null || snapshot != null || size <= PAGE_SIZE) {
+            return;
+        }
+        int gen = generation;
+        TrackOrder o = order;
+        FxThread.then(db.read("getPageStarts", () -> DatabaseManager.getPageStarts(o, PAGE_SIZE)), index -> {
+            if (gen != generation) {
+                return; // refreshed or re-sorted since
+            }
+            for (int p = 1; p < index.size(); p++) {
+                starts.putIfAbsent(p, index.get(p));
+            }
+        });
+    }
+
+    private List<Track> snapshotPage(int p) {
+        int from = p * PAGE_SIZE;
+        int to = Math.min(size, from + PAGE_SIZE);
+        List<Track> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(snapshot.get(i));
+        }
+        pages.put(p, page);
+        return page;
+    }
+
+    // Asks for page p on a reader, once; it is shown when it arrives unless the pages were dropped meanwhile
+    private void load(int p) {
+        if (!loading.add(p)) {
+            return;
+        }
+        int gen = generation;
+        CompletableFuture<Loaded> page;
+        if (sorted != null) {
+            SortedLibrary s = sorted;
+            page = db.read("getSortedPage",
+                    () -> new Loaded(null, s.getPage(p * PAGE_SIZE, (p + 1) * PAGE_SIZE), null));
+        } else {
+            TrackOrder o = order;
+            TrackPage.Cursor known = starts.get(p);
+            page = db.read("getTrackPage", () -> {
+                TrackPage.Cursor start = known;
+                if (p > 0 && start == null) {
+                    // Not indexed yet: seek through the order's index
+                    start = DatabaseManager.getCursorBefore(o, p * PAGE_SIZE);
+                    if (start == null) {
+                        return new Loaded(null, List.of(), null);
+                    }
+                }
+                TrackPage read = DatabaseManager.getTrackPage(o, start, PAGE_SIZE);
+                return new Loaded(start, read.getTracks(), read.getNext());
+            });
+        }
+        FxThread.then(page, loaded -> {
+            if (gen == generation) {
+                loading.remove(p);
+                arrived(p, loaded);
+            }
+        }, e -> {
+            if (gen == generation) {
+                loading.remove(p); // asked for again next time it is shown
+            }
+            e.printStackTrace();
+        });
+    }
+
+    private void arrived(int p, Loaded page) {
+        pages.put(p, page.tracks);
+        if (p > 0 && page.start != null) {
+            starts.putIfAbsent(p, page.start);
+        }
+        if (page.tracks.size() == PAGE_SIZE && page.next != null) {
+            starts.put(p + 1, page.next);
+        }
+        int from = p * PAGE_SIZE;
+        int to = Math.min(size, from + PAGE_SIZE);
+        if (from < to) {
+            beginChange();
+            nextReplace(from, to, Collections.nCopies(to - from, null)); // the placeholders
+            endChange();
+        }
+        List<Runnable> actions = waiting.remove(p);
+        if (actions != null) {
+            actions.forEach(Runnable::run);
+        }
+    }
+}
@@ -1,124 +1,173 @@
 package com.vibe.ui;
 
-import javafx.collections.ObservableList;
+import javafx.application.Platform;
 import javafx.event.EventHandler;
 import javafx.event.EventType;
 import javafx.scene.Cursor;
-import javafx.scene.Node;
-import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.stage.Stage;
 
+// Lets the undecorated window be resized by dragging its edges.
+// One event filter per stage, moved along when the stage switches scenes. A filter sees
+// every mouse event on its way down to the nodes, so no node needs a handler of its
+// own, and calling addResizeListener() again adds nothing. Drags only record where the
+// pointer is; the window is resized once per pulse, however many drags arrived since.
 public class ResizeHelper {
+    private static final Object KEY = ResizeHelper.class;
 
+    /** Enables edge resizing for {@code stage}. Safe to call more than once. */
     public static void addResizeListener(Stage stage) {
-        ResizeListener listener = new ResizeListener(stage);
-        stage.getScene().addEventHandler(MouseEvent.MOUSE_MOVED, listener);
-        stage.getScene().addEventHandler(MouseEvent.MOUSE_PRESSED, listener);
-        stage.getScene().addEventHandler(MouseEvent.MOUSE_DRAGGED, listener);
-        stage.getScene().addEventHandler(MouseEvent.MOUSE_EXITED, listener);
-        stage.getScene().addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, listener);
-        
-        ObservableList<Node> children = stage.getScene().getRoot().getChildrenUnmodifiable();
-        for (Node child : children) {
-            addListenerDeeply(child, listener);
-        }
-    }
-
-    public static void addListenerDeeply(Node node, EventHandler<MouseEvent> listener) {
-        node.addEventHandler(MouseEvent.MOUSE_MOVED, listener);
-        node.addEventHandler(MouseEvent.MOUSE_PRESSED, listener);
-        node.addEventHandler(MouseEvent.MOUSE_DRAGGED, listener);
-        node.addEventHandler(MouseEvent.MOUSE_EXITED, listener);
-        node.addEventHandler(MouseEvent.MOUSE_EXITED_TARGET, listener);
-        if (node instanceof Parent) {
-            Parent parent = (Parent) node;
-            ObservableList<Node> children = parent.getChildrenUnmodifiable();
-            for (Node child : children) {
-                addListenerDeeply(child, listener);
-            }
+        if (stage.getProperties().containsKey(KEY)) {
+            return;
         }
+        ResizeListener listener = new ResizeListener(stage);
+        stage.getProperties().put(KEY, listener);
+        stage.sceneProperty().addListener((obs, old, scene) -> {
+            listener.detach(old);
+            listener.attach(scene);
+        });
+        listener.attach(stage.getScene());
     }
 
     static class ResizeListener implements EventHandler<MouseEvent> {
-        private Stage stage;
-        private Cursor cursorEvent = Cursor.DEFAULT;
-        private int border = 4;
-        private double startX = 0;
-        private double startY = 0;
+        private final Stage stage;
+        private final int border = 4;
+        private final Runnable applyResize = this::apply;
+        private Scene scene;
+        private Cursor edge; // edge under the pointer (or being dragged); null inside the window
 
-        public ResizeListener(Stage stage) {
+        // Drag in progress: where it started, and where the window should be now
+        private boolean resizing;
+        private boolean pending;
+        private double pressX, pressY;
+        private double startX, startY, startWidth, startHeight;
+        private double x, y, width, height;
+
+        ResizeListener(Stage stage) {
             this.stage = stage;
         }
 
-        @Override
-        public void handle(MouseEvent mouseEvent) {
-            EventType<? extends MouseEvent> mouseEventType = mouseEvent.getEventType();
-            Scene scene = stage.getScene();
-
-            double mouseEventX = mouseEvent.getSceneX();
-            double mouseEventY = mouseEvent.getSceneY();
-            double sceneWidth = scene.getWidth();
-            double sceneHeight = scene.getHeight();
+        void attach(Scene s) {
+            if (s != null) {
+                s.addEventFilter(MouseEvent.ANY, this);
+                scene = s;
+            }
+        }
 
-            if (MouseEvent.MOUSE_MOVED.equals(mouseEventType)) {
-                if (mouseEventX < border && mouseEventY < border) {
-                    cursorEvent = Cursor.NW_RESIZE;
-                } else if (mouseEventX < border && mouseEventY > sceneHeight - border) {
-                    cursorEvent = Cursor.SW_RESIZE;
-                } else if (mouseEventX > sceneWidth - border && mouseEventY < border) {
-                    cursorEvent = Cursor.NE_RESIZE;
-                } else if (mouseEventX > sceneWidth - border && mouseEventY > sceneHeight - border) {
-                    cursorEvent = Cursor.SE_RESIZE;
-                } else if (mouseEventX < border) {
-                    cursorEvent = Cursor.W_RESIZE;
-                } else if (mouseEventX > sceneWidth - border) {
-                    cursorEvent = Cursor.E_RESIZE;
-                } else if (mouseEventY < border) {
-                    cursorEvent = Cursor.N_RESIZE;
-                } else if (mouseEventY > sceneHeight - border) {
-                    cursorEvent = Cursor.S_RESIZE;
-                } else {
-                    cursorEvent = Cursor.DEFAULT;
+        void detach(Scene s) {
+            if (s != null) {
+                s.removeEventFilter(MouseEvent.ANY, this);
+                s.removePreLayoutPulseListener(applyResize);
+                if (edge != null) {
+                    s.setCursor(Cursor.DEFAULT);
                 }
-                scene.setCursor(cursorEvent);
-            } else if (MouseEvent.MOUSE_EXITED.equals(mouseEventType) || MouseEvent.MOUSE_EXITED_TARGET.equals(mouseEventType)) {
-                scene.setCursor(Cursor.DEFAULT);
-            } else if (MouseEvent.MOUSE_PRESSED.equals(mouseEventType)) {
-                startX = stage.getWidth() - mouseEventX;
-                startY = stage.getHeight() - mouseEventY;
-            } else if (MouseEvent.MOUSE_DRAGGED.equals(mouseEventType)) {
-                if (!Cursor.DEFAULT.equals(cursorEvent)) {
-                    if (!Cursor.W_RESIZE.equals(cursorEvent) && !Cursor.E_RESIZE.equals(cursorEvent)) {
-                        double minHeight = stage.getMinHeight() > (border * 2) ? stage.getMinHeight() : (border * 2);
-                        if (Cursor.NW_RESIZE.equals(cursorEvent) || Cursor.N_RESIZE.equals(cursorEvent) || Cursor.NE_RESIZE.equals(cursorEvent)) {
-                            if (stage.getHeight() > minHeight || mouseEventY < 0) {
-                                stage.setHeight(stage.getY() - mouseEvent.getScreenY() + stage.getHeight());
-                                stage.setY(mouseEvent.getScreenY());
-                            }
-                        } else {
-                            if (stage.getHeight() > minHeight || mouseEventY + startY - stage.getHeight() > 0) {
-                                stage.setHeight(mouseEventY + startY);
-                            }
-                        }
-                    }
+            }
+            resizing = false;
+            pending = false;
+            edge = null;
+        }
 
-                    if (!Cursor.N_RESIZE.equals(cursorEvent) && !Cursor.S_RESIZE.equals(cursorEvent)) {
-                        double minWidth = stage.getMinWidth() > (border * 2) ? stage.getMinWidth() : (border * 2);
-                        if (Cursor.NW_RESIZE.equals(cursorEvent) || Cursor.W_RESIZE.equals(cursorEvent) || Cursor.SW_RESIZE.equals(cursorEvent)) {
-                            if (stage.getWidth() > minWidth || mouseEventX < 0) {
-                                stage.setWidth(stage.getX() - mouseEvent.getScreenX() + stage.getWidth());
-                                stage.setX(mouseEvent.getScreenX());
-                            }
-                        } else {
-                            if (stage.getWidth() > minWidth || mouseEventX + startX - stage.getWidth() > 0) {
-                                stage.setWidth(mouseEventX + startX);
-                            }
-                        }
-                    }
+        @Override
+        public void handle(MouseEvent e) {
+            EventType<? extends MouseEvent> type = e.getEventType();
+            if (type == MouseEvent.MOUSE_MOVED) {
+                if (!resizing) {
+                    setEdge(hitTest(e.getSceneX(), e.getSceneY()));
+                }
+            } else if (type == MouseEvent.MOUSE_EXITED) {
+                // The pointer left the window itself (children's exits arrive as MOUSE_EXITED_TARGET)
+                if (!resizing) {
+                    setEdge(null);
+                }
+            } else if (type == MouseEvent.MOUSE_PRESSED) {
+                if (edge != null && e.getButton() == MouseButton.PRIMARY) {
+                    resizing = true;
+                    pressX = e.getScreenX();
+                    pressY = e.getScreenY();
+                    startX = x = stage.getX();
+                    startY = y = stage.getY();
+                    startWidth = width = stage.getWidth();
+                    startHeight = height = stage.getHeight();
+                    scene.addPreLayoutPulseListener(applyResize);
+                    e.consume();
                 }
+            } else if (type == MouseEvent.MOUSE_DRAGGED) {
+                if (resizing) {
+                    track(e.getScreenX() - pressX, e.getScreenY() - pressY);
+                    e.consume();
+                }
+            } else if (type == MouseEvent.MOUSE_RELEASED) {
+                if (resizing) {
+                    apply();
+                    resizing = false;
+                    scene.removePreLayoutPulseListener(applyResize);
+                    setEdge(hitTest(e.getSceneX(), e.getSceneY()));
+                    e.consume();
+                }
+            } else if (resizing && type == MouseEvent.MOUSE_CLICKED) {
+                e.consume();
+            }
+        }
+
+        private Cursor hitTest(double sx, double sy) {
+            if (stage.isMaximized() || stage.isFullScreen()) {
+                return null;
+            }
+            double w = scene.getWidth();
+            double h = scene.getHeight();
+            boolean left = sx < border, right = sx > w - border;
+            boolean top = sy < border, bottom = sy > h - border;
+            if (top && left) return Cursor.NW_RESIZE;
+            if (bottom && left) return Cursor.SW_RESIZE;
+            if (top && right) return Cursor.NE_RESIZE;
+            if (bottom && right) return Cursor.SE_RESIZE;
+            if (left) return Cursor.W_RESIZE;
+            if (right) return Cursor.E_RESIZE;
+            if (top) return Cursor.N_RESIZE;
+            if (bottom) return Cursor.S_RESIZE;
+            return null;
+        }
+
+        private void setEdge(Cursor c) {
+            if (c != edge) {
+                edge = c;
+                scene.setCursor(c != null ? c : Cursor.DEFAULT);
+            }
+        }
+
+        // Works out the window bounds for a drag of (dx, dy) from the press; applied on the next pulse
+        private void track(double dx, double dy) {
+            double minWidth = Math.max(stage.getMinWidth(), border * 2);
+            double minHeight = Math.max(stage.getMinHeight(), border * 2);
+            if (edge == Cursor.W_RESIZE || edge == Cursor.NW_RESIZE || edge == Cursor.SW_RESIZE) {
+                width = Math.max(minWidth, startWidth - dx);
+                x = startX + startWidth - width; // the right edge stays put
+            } else if (edge == Cursor.E_RESIZE || edge == Cursor.NE_RESIZE || edge == Cursor.SE_RESIZE) {
+                width = Math.max(minWidth, startWidth + dx);
+            }
+            if (edge == Cursor.N_RESIZE || edge == Cursor.NW_RESIZE || edge == Cursor.NE_RESIZE) {
+                height = Math.max(minHeight, startHeight - dy);
+                y = startY + startHeight - height;
+            } else if (edge == Cursor.S_RESIZE || edge == Cursor.SW_RESIZE || edge == Cursor.SE_RESIZE) {
+                height = Math.max(minHeight, startHeight + dy);
+            }
+            if (!pending) {
+                pending = true;
+                Platform.requestNextPulse();
+            }
+        }
+
+        private void apply() {
+            if (!pending) {
+                return;
             }
+            pending = false;
+            if (x != stage.getX()) stage.setX(x);
+            if (y != stage.getY()) stage.setY(y);
+            if (width != stage.getWidth()) stage.setWidth(width);
+            if (height != stage.getHeight()) stage.setHeight(height);
         }
     }
 }
@@ -0,0 +1,66 @@
+package com.vibe.ui;
+
+import com.vibe.audio.Waveform;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+// Draws a track's peaks as a mirrored bar strip; sits behind the seek slider.
+// Redraws only when the waveform or the width changes, never while playing.
+public final class WaveformView extends Region {
+    private static final Color FILL = Color.rgb(139, 92, 246, 0.35);
+
+    private final Canvas canvas = new Canvas();
+    private Waveform waveform;
+
+    public WaveformView() {
+        getChildren().add(canvas);
+        setMouseTransparent(true);
+        setMinWidth(0);
+    }
+
+    /** Shows {@code w}; null clears the strip. Call on the FX thread. */
+    public void setWaveform(Waveform w) {
+        waveform = w;
+        draw();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double w = getWidth();
+        double h = getHeight();
+        if (canvas.getWidth() != w || canvas.getHeight() != h) {
+            canvas.setWidth(w);
+            canvas.setHeight(h);
+            draw();
+        }
+    }
+
+    private void draw() {
+        GraphicsContext g = canvas.getGraphicsContext2D();
+        double w = canvas.getWidth();
+        double h = canvas.getHeight();
+        g.clearRect(0, 0, w, h);
+        if (waveform == null || waveform.size() == 0 || w < 1) {
+            return;
+        }
+        // One bar per pixel column, covering the pairs that fall into it
+        int pairs = waveform.size();
+        int columns = (int) w;
+        double mid = h / 2;
+        g.setFill(FILL);
+        for (int x = 0; x < columns; x++) {
+            int from = (int) ((long) x * pairs / columns);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * pairs / columns));
+            float lo = 0;
+            float hi = 0;
+            for (int i = from; i < to && i < pairs; i++) {
+                lo = Math.min(lo, waveform.min(i));
+                hi = Math.max(hi, waveform.max(i));
+            }
+            double top = mid - hi * mid;
+            g.fillRect(x, top, 1, Math.max(1, (hi - lo) * mid));
+        }
+    }
+}
@@ -2,6 +2,7 @@ module com.vibe {
     requires javafx.controls;
     requires javafx.media;
     requires java.sql;
+    requires java.desktop; // javax.sound.sampled, for PCM decoding
     requires org.xerial.sqlitejdbc;
 
     opens com.vibe to javafx.fxml;
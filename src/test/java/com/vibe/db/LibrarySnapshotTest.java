@@ -0,0 +1,125 @@
+package com.vibe.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.vibe.model.Track;
+
+class LibrarySnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    private Path write(LibrarySnapshot.Writer w, int generation) throws IOException {
+        Path file = dir.resolve(LibrarySnapshot.PREFIX + generation + LibrarySnapshot.SUFFIX);
+        w.writeTo(file);
+        return file;
+    }
+
+    private static LibrarySnapshot.Writer oneRow(long version, String title) {
+        LibrarySnapshot.Writer w = new LibrarySnapshot.Writer(version);
+        w.add("t", "/m/" + title + ".mp3", title, null, null, 1, 0, 0, null);
+        return w;
+    }
+
+    @Test
+    void rowsRoundTrip() throws IOException {
+        String uuid = UUID.randomUUID().toString();
+        LibrarySnapshot.Writer w = new LibrarySnapshot.Writer(42);
+        w.add(uuid, "/music/Artist/song.mp3", "Song", "Artist", "Album", 215, 3, 1999, "Rock");
+        w.add("track-2", "C:\\music\\Artist\\other.flac", "Ünïcode ♪", "Artist", "Album", 60, 4, 1999, "Rock");
+        w.add(uuid.toUpperCase(), "bare.wav", null, null, null, 0, 0, 0, null);
+        write(w, 0);
+
+        LibrarySnapshot s = LibrarySnapshot.loadNewest(dir);
+
+        assertEquals(42, s.getVersion());
+        assertEquals(3, s.size());
+
+        Track a = s.get(0);
+        assertEquals(uuid, a.getId());
+        assertEquals("/music/Artist/song.mp3", a.getFilepath());
+        assertEquals("Song", a.getTitle());
+        assertEquals("Artist", a.getArtist());
+        assertEquals("Album", a.getAlbum());
+        assertEquals(215, a.getDuration());
+        assertEquals(3, a.getTrackNumber());
+        assertEquals(1999, a.getYear());
+        assertEquals("Rock", a.getGenre());
+
+        Track b = s.get(1);
+        assertEquals("track-2", b.getId());
+        assertEquals("C:\\music\\Artist\\other.flac", b.getFilepath());
+        assertEquals("Ünïcode ♪", b.getTitle());
+        assertEquals("Artist", b.getArtist());
+
+        Track c = s.get(2);
+        assertEquals(uuid.toUpperCase(), c.getId()); // not canonical, so kept as given
+        assertEquals("bare.wav", c.getFilepath());
+        assertNull(c.getTitle());
+        assertNull(c.getArtist());
+        assertNull(c.getGenre());
+
+        assertThrows(IndexOutOfBoundsException.class, () -> s.get(3));
+    }
+
+    @Test
+    void emptyLibraryRoundTrips() throws IOException {
+        write(new LibrarySnapshot.Writer(7), 0);
+        LibrarySnapshot s = LibrarySnapshot.loadNewest(dir);
+        assertEquals(7, s.getVersion());
+        assertEquals(0, s.size());
+    }
+
+    @Test
+    void newestGenerationWinsAndOthersAreDeleted() throws IOException {
+        Path old = write(oneRow(1, "old"), 1);
+        write(oneRow(2, "new"), 12); // numeric, not name, order
+        Files.writeString(dir.resolve(LibrarySnapshot.PREFIX + "13.tmp"), "interrupted");
+
+        LibrarySnapshot s = LibrarySnapshot.loadNewest(dir);
+
+        assertEquals(2, s.getVersion());
+        assertEquals("new", s.get(0).getTitle());
+        assertFalse(Files.exists(old));
+        assertFalse(Files.exists(dir.resolve(LibrarySnapshot.PREFIX + "13.tmp")));
+    }
+
+    @Test
+    void unreadableNewestFallsBackToAnOlderOne() throws IOException {
+        write(oneRow(1, "good"), 1);
+        Path bad = write(oneRow(2, "bad"), 2);
+        byte[] b = Files.readAllBytes(bad);
+        ByteBuffer.wrap(b).putInt(4, LibrarySnapshot.FORMAT + 1); // written by some other build
+        Files.write(bad, b);
+        Path cut = write(oneRow(3, "cut"), 3);
+        Files.write(cut, Arrays.copyOf(Files.readAllBytes(cut), 40));
+
+        LibrarySnapshot s = LibrarySnapshot.loadNewest(dir);
+
+        assertEquals(1, s.getVersion());
+        assertEquals("good", s.get(0).getTitle());
+    }
+
+    @Test
+    void nothingToLoad() throws IOException {
+        assertNull(LibrarySnapshot.loadNewest(dir.resolve("missing")));
+        Files.writeString(dir.resolve(LibrarySnapshot.PREFIX + "x" + LibrarySnapshot.SUFFIX), "junk");
+        Files.writeString(dir.resolve(LibrarySnapshot.PREFIX + "0" + LibrarySnapshot.SUFFIX), "junk");
+        assertNull(LibrarySnapshot.loadNewest(dir));
+        assertTrue(Files.exists(dir.resolve(LibrarySnapshot.PREFIX + "x" + LibrarySnapshot.SUFFIX)));
+    }
+}
@@ -0,0 +1,147 @@
+package com.vibe.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SchemaMigrationsTest {
+
+    @TempDir
+    Path dir;
+
+    private Connection open() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("test.db"));
+    }
+
+    private static int userVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static Set<String> columns(Connection conn, String table) throws SQLException {
+        Set<String> names = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                names.add(rs.getString("name"));
+            }
+        }
+        return names;
+    }
+
+    private static List<String> strings(Connection conn, String sql) throws SQLException {
+        List<String> out = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+                ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                out.add(rs.getString(1));
+            }
+        }
+        return out;
+    }
+
+    @Test
+    void emptyDatabaseGetsTheLatestSchema() throws SQLException {
+        try (Connection conn = open()) {
+            SchemaMigrations.migrate(conn);
+
+            assertEquals(SchemaMigrations.latestVersion(), userVersion(conn));
+            assertTrue(columns(conn, "tracks").containsAll(
+                    List.of("id", "filepath", "seq", "track_no", "content_hash", "album_gain")));
+            assertEquals(Set.of("playlist_id", "track_id", "position"), columns(conn, "playlist_songs"));
+            assertEquals(List.of("1"), strings(conn, "SELECT count(*) FROM library_meta"));
+        }
+    }
+
+    // A library from before versioning: the original tables, with none of the later columns
+    @Test
+    void unversionedDatabaseKeepsItsData() throws SQLException {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE tracks (id TEXT PRIMARY KEY, filepath TEXT UNIQUE, " +
+                    "title TEXT, artist TEXT, album TEXT, duration INTEGER)");
+            stmt.execute("CREATE TABLE playlists (id TEXT PRIMARY KEY, name TEXT UNIQUE)");
+            stmt.execute("CREATE TABLE playlist_songs (playlist_id TEXT, track_id TEXT)");
+            stmt.execute("INSERT INTO tracks VALUES ('t1', '/music/a.mp3', 'Alpha', 'X', 'One', 100)");
+            stmt.execute("INSERT INTO tracks VALUES ('t2', 'C:\\music\\b.mp3', 'Beta', 'Y', 'Two', 200)");
+            stmt.execute("INSERT INTO playlists VALUES ('p', 'Mix')");
+            stmt.execute("INSERT INTO playlist_songs VALUES ('p', 't2')");
+            stmt.execute("INSERT INTO playlist_songs VALUES ('p', 't1')");
+            stmt.execute("INSERT INTO playlist_songs VALUES ('p', 't2')"); // stray repeat
+            stmt.execute("INSERT INTO playlist_songs VALUES (NULL, 't1')");
+
+            SchemaMigrations.migrate(conn);
+
+            assertEquals(SchemaMigrations.latestVersion(), userVersion(conn));
+            assertEquals(List.of("t1:1", "t2:2"),
+                    strings(conn, "SELECT id || ':' || seq FROM tracks ORDER BY seq"));
+            assertEquals(List.of("t2:" + SchemaMigrations.POSITION_GAP, "t1:" + 2 * SchemaMigrations.POSITION_GAP),
+                    strings(conn, "SELECT track_id || ':' || position FROM playlist_songs ORDER BY position"));
+
+            // Existing rows were indexed for search, by file name too, and new ones follow
+            assertEquals(List.of("t2"), strings(conn, "SELECT t.id FROM tracks_fts f " +
+                    "JOIN tracks t ON t.seq = f.rowid WHERE tracks_fts MATCH 'filename:b'"));
+            stmt.execute("INSERT INTO tracks(id, filepath, title) VALUES ('t3', '/music/c.mp3', 'Gamma')");
+            assertEquals(List.of("t3"), strings(conn, "SELECT t.id FROM tracks_fts f " +
+                    "JOIN tracks t ON t.seq = f.rowid WHERE tracks_fts MATCH 'gamma'"));
+        }
+    }
+
+    @Test
+    void libraryVersionFollowsVisibleChanges() throws SQLException {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            SchemaMigrations.migrate(conn);
+            String before = strings(conn, "SELECT version FROM library_meta").get(0);
+
+            stmt.execute("INSERT INTO tracks(id, filepath, title) VALUES ('t1', '/a.mp3', 'A')");
+            String inserted = strings(conn, "SELECT version FROM library_meta").get(0);
+            stmt.execute("UPDATE tracks SET loudness = -14 WHERE id = 't1'"); // not shown in the table
+
+            assertEquals(Long.parseLong(before) + 1, Long.parseLong(inserted));
+            assertEquals(List.of(inserted), strings(conn, "SELECT version FROM library_meta"));
+        }
+    }
+
+    @Test
+    void migratingTwiceChangesNothing() throws SQLException {
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            SchemaMigrations.migrate(conn);
+            stmt.execute("INSERT INTO tracks(id, filepath, title) VALUES ('t1', '/a.mp3', 'A')");
+            List<String> version = strings(conn, "SELECT version FROM library_meta");
+
+            SchemaMigrations.migrate(conn);
+
+            assertEquals(SchemaMigrations.latestVersion(), userVersion(conn));
+            assertEquals(version, strings(conn, "SELECT version FROM library_meta"));
+            assertEquals(List.of("t1"), strings(conn, "SELECT id FROM tracks"));
+        }
+    }
+
+    @Test
+    void newerDatabaseIsLeftAlone() throws SQLException {
+        int newer = SchemaMigrations.latestVersion() + 1;
+        try (Connection conn = open(); Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA user_version = " + newer);
+
+            SchemaMigrations.migrate(conn);
+
+            assertEquals(newer, userVersion(conn));
+            assertFalse(columns(conn, "tracks").contains("id"));
+        }
+    }
+}
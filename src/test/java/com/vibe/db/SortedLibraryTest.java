@@ -0,0 +1,167 @@
+package com.vibe.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SortedLibraryTest {
+
+    private static final TrackOrder TITLE = new TrackOrder(TrackOrder.Key.TITLE, false);
+    private static final TrackOrder ARTIST = new TrackOrder(TrackOrder.Key.ARTIST, false);
+    private static final TrackOrder ARTIST_DESC = new TrackOrder(TrackOrder.Key.ARTIST, true);
+    private static final TrackOrder DURATION = new TrackOrder(TrackOrder.Key.DURATION, false);
+    private static final TrackOrder DURATION_DESC = new TrackOrder(TrackOrder.Key.DURATION, true);
+
+    // Rows get rowids 1, 2, 3, ...; each row gives one value per key
+    private static SortedLibrary.Columns columns(Object[]... rows) {
+        long[] rowids = new long[rows.length];
+        Object[][] values = new Object[rows.length == 0 ? 0 : rows[0].length][rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            rowids[i] = i + 1;
+            for (int k = 0; k < values.length; k++) {
+                values[k][i] = rows[i][k];
+            }
+        }
+        return new SortedLibrary.Columns(9, rowids, values);
+    }
+
+    // The rowids in sorted order, read back through the position index
+    private static List<Long> order(SortedLibrary s, SortedLibrary.Columns c) {
+        Long[] out = new Long[s.size()];
+        for (long rowid : c.rowids) {
+            out[s.indexOfRowid(rowid)] = rowid;
+        }
+        return Arrays.asList(out);
+    }
+
+    private static Object[] row(Object... values) {
+        return values;
+    }
+
+    @Test
+    void firstKeyDecidesThenSecondThenInsertion() {
+        SortedLibrary.Columns c = columns(
+                row("B", "x"),
+                row("A", "z"),
+                row("B", "a"),
+                row("A", "z"),
+                row("A", "m"));
+        SortedLibrary s = SortedLibrary.sort(List.of(ARTIST, TITLE), c);
+
+        assertEquals(List.of(5L, 2L, 4L, 3L, 1L), order(s, c));
+        assertEquals(9, s.getVersion());
+        assertEquals(List.of(ARTIST, TITLE), s.getKeys());
+    }
+
+    @Test
+    void descendingKeysReverseOnlyThemselves() {
+        SortedLibrary.Columns c = columns(
+                row("a", 10L),
+                row("b", 30L),
+                row("a", 20L),
+                row("b", 30L),
+                row("c", 5L));
+
+        assertEquals(List.of(5L, 2L, 4L, 1L, 3L), order(SortedLibrary.sort(List.of(ARTIST_DESC, DURATION), c), c));
+        assertEquals(List.of(3L, 1L, 2L, 4L, 5L), order(SortedLibrary.sort(List.of(ARTIST, DURATION_DESC), c), c));
+    }
+
+    @Test
+    void nocaseFoldsAsciiLettersOnly() {
+        SortedLibrary.Columns c = columns(
+                row("b"),
+                row("é"),
+                row("B"),
+                row("É"),
+                row((Object) null),
+                row("a"));
+
+        // "" < a < b = B (insertion order) < É (U+00C9) < é (U+00E9)
+        assertEquals(List.of(5L, 6L, 1L, 3L, 4L, 2L), order(SortedLibrary.sort(List.of(TITLE), c), c));
+    }
+
+    @Test
+    void textComparesByCodePoint() {
+        SortedLibrary.Columns c = columns(
+                row("🎵 notes"), // U+1F3B5, a surrogate pair
+                row("ﬁne"), // U+FB01, above the surrogates in UTF-16
+                row("z"));
+
+        assertEquals(List.of(3L, 2L, 1L), order(SortedLibrary.sort(List.of(TITLE), c), c));
+        assertEquals(-1, Integer.signum(SortedLibrary.CODE_POINT_ORDER.compare("ﬁ", "🎵")));
+    }
+
+    @Test
+    void unknownRowidIsNotFound() {
+        SortedLibrary.Columns c = columns(row("a"), row("b"));
+        SortedLibrary s = SortedLibrary.sort(List.of(TITLE), c);
+        assertEquals(-1, s.indexOfRowid(3));
+        assertEquals(-1, s.indexOfRowid(0));
+    }
+
+    @Test
+    void emptyLibrary() {
+        SortedLibrary.Columns c = new SortedLibrary.Columns(1, new long[0], new Object[][] { new Object[0] });
+        SortedLibrary s = SortedLibrary.sort(List.of(TITLE), c);
+        assertEquals(0, s.size());
+        assertEquals(-1, s.indexOfRowid(1));
+    }
+
+    // The in-memory sort has to agree with the order the page indexes give in SQL
+    @Test
+    void agreesWithSqlite() throws SQLException {
+        String[] titles = { "Zebra", "apple", "Apple", "Äpfel", "äpfel", null, "",
+                "🎵", "ﬁ", "ß", "SS", "ss", "a b", "a-b", "Ab", "10", "9", "İ", "i" };
+        String[] artists = { "b", "B", "a", null, "é", "A" };
+        List<TrackOrder.Key> fields = List.of(TrackOrder.Key.TITLE, TrackOrder.Key.ARTIST, TrackOrder.Key.DURATION);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            rows.add(row(titles[(i * 7) % titles.length], artists[(i * 5) % artists.length], (long) ((i * 13) % 11)));
+        }
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+                Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE tracks (title TEXT, artist TEXT, duration INTEGER)");
+            try (PreparedStatement insert = conn.prepareStatement("INSERT INTO tracks VALUES (?, ?, ?)")) {
+                for (Object[] r : rows) {
+                    for (int k = 0; k < 3; k++) {
+                        insert.setObject(k + 1, r[k]);
+                    }
+                    insert.executeUpdate();
+                }
+            }
+            List<List<TrackOrder>> sorts = List.of(
+                    List.of(TITLE),
+                    List.of(ARTIST, TITLE),
+                    List.of(ARTIST_DESC, DURATION, TITLE),
+                    List.of(DURATION_DESC, ARTIST));
+            for (List<TrackOrder> keys : sorts) {
+                StringBuilder sql = new StringBuilder("SELECT rowid FROM tracks ORDER BY ");
+                for (TrackOrder k : keys) {
+                    sql.append(k.getKey().expr).append(k.isDescending() ? " DESC, " : ", ");
+                }
+                sql.append("rowid");
+                SortedLibrary.Columns c = columns(rows.stream()
+                        .map(r -> keys.stream().map(k -> r[fields.indexOf(k.getKey())]).toArray())
+                        .toArray(Object[][]::new));
+                List<Long> expected = new ArrayList<>();
+                try (ResultSet rs = stmt.executeQuery(sql.toString())) {
+                    while (rs.next()) {
+                        expected.add(rs.getLong(1));
+                    }
+                }
+                assertEquals(expected, order(SortedLibrary.sort(keys, c), c));
+            }
+        }
+    }
+}
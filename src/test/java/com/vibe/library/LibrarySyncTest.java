@@ -0,0 +1,127 @@
+package com.vibe.library;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.vibe.model.FileState;
+
+class LibrarySyncTest {
+
+    @TempDir
+    Path root;
+
+    private static DirectoryWalker.FoundFile found(String path, long size, long fingerprint) {
+        DirectoryWalker.FoundFile f = new DirectoryWalker.FoundFile(Path.of(path), null);
+        f.state = new FileState(null, path, size, 0, fingerprint);
+        return f;
+    }
+
+    private static Map<String, FileState> known(FileState... states) {
+        Map<String, FileState> m = new HashMap<>();
+        for (FileState s : states) {
+            m.put(s.getFilepath(), s);
+        }
+        return m;
+    }
+
+    @Test
+    void moveKeepsTheTrackId() {
+        LibraryDelta delta = new LibraryDelta();
+        Map<String, FileState> missing = known(new FileState("t1", "/music/old.mp3", 100, 0, 42));
+
+        LibrarySync.resolveMoves(delta, List.of(found("/music/new.mp3", 100, 42)), missing);
+
+        assertTrue(delta.getAdded().isEmpty());
+        assertTrue(delta.getRemoved().isEmpty());
+        assertEquals("t1", delta.getUpdated().get(0).getId());
+        assertEquals("/music/new.mp3", delta.getUpdatedStates().get(0).getFilepath());
+        assertTrue(missing.isEmpty());
+    }
+
+    @Test
+    void sameFingerprintDifferentSizeIsNotAMove() {
+        LibraryDelta delta = new LibraryDelta();
+        Map<String, FileState> missing = known(new FileState("t1", "/music/old.mp3", 100, 0, 42));
+
+        LibrarySync.resolveMoves(delta, List.of(found("/music/new.mp3", 101, 42)), missing);
+
+        assertEquals(1, delta.getAdded().size());
+        assertEquals(List.of("t1"), delta.getRemoved());
+        assertTrue(delta.getUpdated().isEmpty());
+    }
+
+    @Test
+    void unknownFingerprintIsNeverPaired() {
+        LibraryDelta delta = new LibraryDelta();
+        Map<String, FileState> missing = known(new FileState("t1", "/music/old.mp3", 100, 0, 0));
+
+        LibrarySync.resolveMoves(delta, List.of(found("/music/new.mp3", 100, 0)), missing);
+
+        assertEquals(1, delta.getAdded().size());
+        assertEquals(List.of("t1"), delta.getRemoved());
+    }
+
+    @Test
+    void unlistedDirectoryKeepsItsTracks() throws Exception {
+        Path a = Files.createDirectories(root.resolve("a"));
+        Path b = Files.createDirectories(root.resolve("b"));
+        Files.write(a.resolve("one.mp3"), new byte[16]);
+        Files.write(b.resolve("two.mp3"), new byte[16]);
+
+        String one = a.resolve("one.mp3").toAbsolutePath().toString();
+        String gone = a.resolve("gone.mp3").toAbsolutePath().toString();
+        String two = b.resolve("two.mp3").toAbsolutePath().toString();
+        String nested = b.resolve("deep/three.mp3").toAbsolutePath().toString();
+        Map<String, FileState> known = known(
+                new FileState("one", one, 16, 0, 1),
+                new FileState("gone", gone, 16, 0, 2),
+                new FileState("two", two, 16, 0, 3),
+                new FileState("three", nested, 16, 0, 4));
+
+        List<DirectoryWalker.FoundFile> newFiles = new ArrayList<>();
+        Set<Path> unlisted;
+        try (DirectoryWalker walker = new DirectoryWalker(List.of(root), 2, new ScanStats(), () -> false,
+                f -> false) {
+            @Override
+            DirectoryStream<Path> list(Path dir) throws IOException {
+                if (dir.equals(b)) {
+                    throw new IOException("simulated listing failure");
+                }
+                return super.list(dir);
+            }
+        }) {
+            walker.start();
+            while (true) {
+                DirectoryWalker.FoundFile f = walker.poll(100);
+                if (f == null && walker.isFinished()) {
+                    break;
+                }
+                if (f != null && known.remove(f.path.toAbsolutePath().toString()) == null) {
+                    newFiles.add(f);
+                }
+            }
+            unlisted = walker.getFailedDirectories();
+        }
+
+        assertEquals(Set.of(b.toAbsolutePath()), unlisted);
+        LibrarySync.forgetUnlisted(known, unlisted);
+        LibraryDelta delta = new LibraryDelta();
+        LibrarySync.resolveMoves(delta, newFiles, known);
+
+        assertEquals(List.of("gone"), delta.getRemoved());
+        assertTrue(delta.getAdded().isEmpty());
+    }
+}
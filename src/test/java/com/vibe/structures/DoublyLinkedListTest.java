@@ -0,0 +1,128 @@
+package com.vibe.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class DoublyLinkedListTest {
+
+    // Walks both ways so a broken prev or next link shows up
+    private static <T> List<T> walk(DoublyLinkedList<T> list) {
+        List<T> forward = new ArrayList<>();
+        for (DoublyLinkedList.Node<T> n = list.getHead(); n != null; n = n.next) {
+            forward.add(n.value);
+        }
+        List<T> backward = new ArrayList<>();
+        for (DoublyLinkedList.Node<T> n = list.getTail(); n != null; n = n.prev) {
+            backward.add(0, n.value);
+        }
+        assertEquals(forward, backward);
+        assertEquals(forward.size(), list.size());
+        return forward;
+    }
+
+    @Test
+    void insertAfterMiddleHeadAndTail() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        DoublyLinkedList.Node<String> a = list.append("a");
+        DoublyLinkedList.Node<String> c = list.append("c");
+        list.insertAfter(a, "b");
+        list.insertAfter(null, "start");
+        list.insertAfter(c, "end");
+        assertEquals(List.of("start", "a", "b", "c", "end"), walk(list));
+    }
+
+    @Test
+    void unlinkClearsTheNode() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        list.append("a");
+        DoublyLinkedList.Node<String> b = list.append("b");
+        list.append("c");
+
+        list.unlink(b);
+
+        assertEquals(List.of("a", "c"), walk(list));
+        assertFalse(list.isLinked(b));
+        assertNull(b.prev);
+        assertNull(b.next);
+    }
+
+    @Test
+    void insertAfterUnlinkedNodeIsRejected() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        list.append("a");
+        DoublyLinkedList.Node<String> b = list.append("b");
+        list.append("c");
+        list.unlink(b);
+
+        assertThrows(IllegalArgumentException.class, () -> list.insertAfter(b, "d"));
+        assertEquals(List.of("a", "c"), walk(list));
+    }
+
+    @Test
+    void unlinkTwiceIsRejected() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        DoublyLinkedList.Node<String> a = list.append("a");
+        list.append("b");
+        list.unlink(a);
+
+        assertThrows(IllegalArgumentException.class, () -> list.unlink(a));
+        assertEquals(List.of("b"), walk(list));
+    }
+
+    @Test
+    void nodeOfAnotherListIsRejected() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        DoublyLinkedList<String> other = new DoublyLinkedList<>();
+        list.append("a");
+        DoublyLinkedList.Node<String> x = other.append("x");
+
+        assertThrows(IllegalArgumentException.class, () -> list.insertAfter(x, "y"));
+        assertThrows(IllegalArgumentException.class, () -> list.unlink(x));
+        assertEquals(List.of("a"), walk(list));
+        assertEquals(List.of("x"), walk(other));
+    }
+
+    @Test
+    void unlinkHeadAndTailThenInsert() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        DoublyLinkedList.Node<String> a = list.append("a");
+        DoublyLinkedList.Node<String> b = list.append("b");
+        DoublyLinkedList.Node<String> c = list.append("c");
+        list.unlink(a);
+        list.unlink(c);
+        list.insertAfter(b, "d");
+        list.insertAfter(null, "z");
+        assertEquals(List.of("z", "b", "d"), walk(list));
+    }
+
+    @Test
+    void clearUnlinksEveryNode() {
+        DoublyLinkedList<String> list = new DoublyLinkedList<>();
+        DoublyLinkedList.Node<String> a = list.append("a");
+        list.append("b");
+        list.clear();
+
+        assertTrue(walk(list).isEmpty());
+        assertFalse(list.isLinked(a));
+        assertThrows(IllegalArgumentException.class, () -> list.insertAfter(a, "c"));
+    }
+
+    @Test
+    void indexedListForgetsUnlinkedNodes() {
+        IndexedLinkedList<String, String> list = new IndexedLinkedList<>(s -> s);
+        list.append("a");
+        list.append("b");
+        assertTrue(list.remove("a"));
+        assertFalse(list.contains("a"));
+        assertFalse(list.remove("a"));
+        assertEquals(List.of("b"), walk(list));
+    }
+}
@@ -0,0 +1,129 @@
+package com.vibe.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryStackTest {
+
+    @TempDir
+    Path dir;
+
+    private static String id(int n) {
+        return new UUID(0, n).toString();
+    }
+
+    @Test
+    void popsInReverseOrder() {
+        HistoryStack h = new HistoryStack(10, null);
+        h.push(id(1), 100);
+        h.push(id(2), 200);
+
+        assertEquals(id(2), h.peek());
+        assertEquals(200, h.peekTimestamp());
+        assertEquals(id(2), h.pop());
+        assertEquals(id(1), h.pop());
+        assertNull(h.pop());
+        assertTrue(h.isEmpty());
+        assertEquals(0, h.peekTimestamp());
+    }
+
+    @Test
+    void fullRingDropsTheOldest() {
+        HistoryStack h = new HistoryStack(3, null);
+        for (int i = 1; i <= 5; i++) {
+            h.push(id(i), i);
+        }
+
+        assertEquals(3, h.size());
+        assertEquals(id(5), h.pop());
+        assertEquals(id(4), h.pop());
+        assertEquals(id(3), h.pop());
+        assertNull(h.pop());
+    }
+
+    @Test
+    void pushAfterPopReusesTheSlot() {
+        HistoryStack h = new HistoryStack(2, null);
+        h.push(id(1), 1);
+        h.push(id(2), 2);
+        h.pop();
+        h.push(id(3), 3);
+        h.push(id(4), 4); // evicts 1
+
+        assertEquals(id(4), h.pop());
+        assertEquals(id(3), h.pop());
+        assertNull(h.pop());
+    }
+
+    @Test
+    void nonUuidIdsAreKeptAsIs() {
+        HistoryStack h = new HistoryStack(4, null);
+        String upper = id(7).toUpperCase();
+        h.push("track-1", 1);
+        h.push(id(2), 2);
+        h.push(upper, 3); // not canonical, so must come back unchanged
+        h.push(null, 4); // ignored
+
+        assertEquals(3, h.size());
+        assertEquals(upper, h.pop());
+        assertEquals(id(2), h.pop());
+        assertEquals("track-1", h.pop());
+    }
+
+    @Test
+    void slotOfARawIdCanHoldAUuidLater() {
+        HistoryStack h = new HistoryStack(1, null);
+        h.push("track-1", 1);
+        h.push(id(2), 2);
+        assertEquals(id(2), h.pop());
+    }
+
+    @Test
+    void evictedEntriesAreSpilled() throws Exception {
+        Path spill = dir.resolve("history.tsv");
+        try (HistoryStack h = new HistoryStack(2, spill)) {
+            h.push(id(1), 10);
+            h.push("track-2", 20);
+            h.push(id(3), 30); // evicts 1
+            h.push(id(4), 40); // evicts track-2
+            assertEquals(id(4), h.pop());
+            assertEquals(id(3), h.pop());
+        }
+
+        assertEquals(List.of("10\t" + id(1), "20\ttrack-2"), Files.readAllLines(spill, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void nothingIsSpilledUntilFull() {
+        Path spill = dir.resolve("history.tsv");
+        try (HistoryStack h = new HistoryStack(2, spill)) {
+            h.push(id(1), 10);
+            h.push(id(2), 20);
+        }
+        assertFalse(Files.exists(spill));
+    }
+
+    @Test
+    void clearEmptiesTheStack() {
+        HistoryStack h = new HistoryStack(2, null);
+        h.push("track-1", 1);
+        h.push(id(2), 2);
+        h.clear();
+
+        assertTrue(h.isEmpty());
+        assertNull(h.peek());
+        h.push(id(3), 3);
+        assertEquals(id(3), h.pop());
+    }
+}
@@ -0,0 +1,282 @@
+package com.vibe.structures;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+class PlaybackContextTest {
+
+    private static PlaybackContext<String, String> context(String... items) {
+        return PlaybackContext.of(new ArrayList<>(List.of(items)), Function.identity());
+    }
+
+    // Remaining order from the cursor onwards
+    private static List<String> drain(PlaybackContext<String, String> ctx) {
+        List<String> out = new ArrayList<>();
+        for (String s = ctx.next(); s != null; s = ctx.next()) {
+            out.add(s);
+        }
+        return out;
+    }
+
+    @Test
+    void stepsOverTheView() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c");
+        assertTrue(ctx.moveTo(0));
+        assertEquals("b", ctx.peekNext());
+        assertEquals(List.of("b", "c"), drain(ctx));
+        assertEquals("b", ctx.previous());
+    }
+
+    @Test
+    void removingCurrentContinuesAfterIt() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c", "d");
+        ctx.moveTo("b");
+        assertTrue(ctx.remove("b"));
+
+        assertEquals("b", ctx.current());
+        assertEquals("c", ctx.peekNext());
+        assertEquals(List.of("c", "d"), drain(ctx));
+        assertEquals(3, ctx.size());
+    }
+
+    @Test
+    void previousAfterRemovingCurrent() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c");
+        ctx.moveTo("b");
+        ctx.remove("b");
+        assertEquals("a", ctx.previous());
+        assertEquals("c", ctx.next());
+    }
+
+    @Test
+    void removingCurrentThenItsSuccessor() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c", "d");
+        ctx.moveTo("b");
+        ctx.remove("b");
+        ctx.remove("c");
+
+        assertEquals(List.of("d"), drain(ctx));
+    }
+
+    @Test
+    void removingCurrentThenItsPredecessor() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c");
+        ctx.moveTo("b");
+        ctx.remove("b");
+        ctx.remove("a");
+
+        assertNull(ctx.previous());
+        assertEquals("c", ctx.next());
+    }
+
+    @Test
+    void removingANeighbourOfCurrent() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c", "d");
+        ctx.moveTo("b");
+        ctx.remove("c");
+        ctx.remove("a");
+
+        assertEquals("d", ctx.peekNext());
+        assertEquals(List.of("d"), drain(ctx));
+        assertEquals("b", ctx.previous());
+        assertNull(ctx.previous());
+    }
+
+    @Test
+    void insertAfterCurrentPlaysNext() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c");
+        ctx.moveTo("a");
+        ctx.insertAfterCurrent("x");
+        assertEquals(List.of("x", "b", "c"), drain(ctx));
+        assertEquals(4, ctx.size());
+    }
+
+    @Test
+    void insertAfterRemovedCurrent() {
+        PlaybackContext<String, String> ctx = context("a", "b", "c");
+        ctx.moveTo("b");
+        ctx.remove("b");
+        ctx.insertAfterCurrent("x");
+        ctx.insertAfterCurrent("y");
+
+        assertEquals(4, ctx.size());
+        assertEquals(List.of("y", "x", "c"), drain(ctx));
+        assertEquals("x", ctx.previous());
+        assertEquals("y", ctx.previous());
+        assertEquals("a", ctx.previous());
+    }
+
+    @Test
+    void insertAfterRemovedFirstElement() {
+        PlaybackContext<String, String> ctx = context("a", "b");
+        ctx.moveTo("a");
+        ctx.remove("a");
+        ctx.insertAfterCurrent("x");
+
+        assertEquals(List.of("x", "b"), drain(ctx));
+    }
+
+    @Test
+    void insertWithoutCursorGoesToFront() {
+        PlaybackContext<String, String> ctx = context("a", "b");
+        ctx.insertAfterCurrent("x");
+        assertTrue(ctx.moveTo(0));
+        assertEquals("x", ctx.current());
+    }
+
+    @Test
+    void currentVanishedFromTheView() {
+        List<String> rows = new ArrayList<>(List.of("a", "b", "c", "d"));
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity());
+        ctx.moveTo("b");
+        rows.remove("b");
+
+        assertEquals("c", ctx.peekNext());
+        assertEquals("c", ctx.peekNext());
+        assertEquals("a", ctx.previous());
+        assertEquals("c", ctx.next());
+        ctx.previous();
+        ctx.insertAfterCurrent("x");
+        assertEquals(List.of("x", "c", "d"), drain(ctx));
+    }
+
+    @Test
+    void viewStepsOverHoles() {
+        List<String> rows = new ArrayList<>(List.of("a", "b", "c"));
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity());
+        ctx.moveTo("a");
+        rows.set(1, null);
+        assertEquals(List.of("c"), drain(ctx));
+    }
+
+    // Rows arrive when load() is called; until then they read as null and are not loaded
+    private static final class Lazy extends AbstractList<String> implements PlaybackContext.LazyView<String> {
+        final List<String> rows;
+        final Set<Integer> loaded = new HashSet<>();
+        final Map<Integer, Runnable> waiting = new HashMap<>();
+        final Set<String> unknown = new HashSet<>(); // ids locate() cannot place yet
+
+        Lazy(String... rows) {
+            this.rows = new ArrayList<>(Arrays.asList(rows));
+        }
+
+        void load(int... indexes) {
+            for (int i : indexes) {
+                loaded.add(i);
+                Runnable r = waiting.remove(i);
+                if (r != null) {
+                    r.run();
+                }
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            return loaded.contains(index) ? rows.get(index) : null;
+        }
+
+        @Override
+        public int size() {
+            return rows.size();
+        }
+
+        @Override
+        public int locate(String key) {
+            return unknown.contains(key) ? UNKNOWN : rows.indexOf(key);
+        }
+
+        @Override
+        public boolean isLoaded(int index) {
+            return loaded.contains(index);
+        }
+
+        @Override
+        public void whenLoaded(int index, Runnable action) {
+            waiting.put(index, action);
+        }
+    }
+
+    @Test
+    void lazyViewWaitsForRowsOnTheirWay() {
+        Lazy rows = new Lazy("a", "b", "c");
+        rows.load(0);
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity(), rows);
+        assertTrue(ctx.moveTo(0));
+
+        assertNull(ctx.next());
+        List<String> played = new ArrayList<>();
+        assertTrue(ctx.whenReady(() -> played.add(ctx.next())));
+        rows.load(1);
+        assertEquals(List.of("b"), played);
+    }
+
+    @Test
+    void lazyViewStepsOverLoadedHoles() {
+        Lazy rows = new Lazy("a", null, "c");
+        rows.load(0, 1, 2);
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity(), rows);
+        ctx.moveTo(0);
+        assertEquals("c", ctx.next());
+        assertNull(ctx.next());
+        assertFalse(ctx.whenReady(() -> { }));
+    }
+
+    @Test
+    void lazyViewKeepsTheCursorWhileLocating() {
+        Lazy rows = new Lazy("a", "b", "c", "d");
+        rows.load(0, 1, 2, 3);
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity(), rows);
+        ctx.moveTo(1);
+
+        // Re-sorted underneath: b moved to the end, and the view cannot say where yet
+        rows.rows.clear();
+        rows.rows.addAll(List.of("a", "c", "d", "b"));
+        rows.unknown.add("b");
+        assertEquals("d", ctx.peekNext());
+
+        rows.unknown.clear();
+        assertNull(ctx.next()); // b is last now
+    }
+
+    @Test
+    void lazyViewRemoveIsNotCopied() {
+        Lazy rows = new Lazy("a", "b", "c");
+        rows.load(0, 1, 2);
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity(), rows);
+        ctx.moveTo(1);
+
+        assertTrue(ctx.remove("b"));
+        assertFalse(ctx.isMaterialised());
+        rows.rows.remove("b"); // the caller updates the backing list
+        rows.loaded.remove(2);
+        assertEquals("c", ctx.next());
+    }
+
+    @Test
+    void lazyViewInsertPlaysNext() {
+        Lazy rows = new Lazy("a", "b");
+        rows.load(0, 1);
+        PlaybackContext<String, String> ctx = PlaybackContext.of(rows, Function.identity(), rows);
+        ctx.moveTo(0);
+        ctx.insertAfterCurrent("x");
+
+        assertFalse(ctx.isMaterialised());
+        assertEquals(3, ctx.size());
+        assertEquals("x", ctx.peekNext());
+        assertEquals(List.of("x", "b"), drain(ctx));
+    }
+}